@@ -1,13 +1,22 @@
 package sk.lkce.minesweeper;
 
 import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.AbstractAction;
 import javax.swing.Action;
-import javax.swing.ButtonGroup;
 import javax.swing.DefaultButtonModel;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JDialog;
@@ -16,9 +25,13 @@ import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
 import javax.swing.UnsupportedLookAndFeelException;
 
+import sk.lkce.minesweeper.diagnostics.EdtWatchdog;
 import sk.lkce.minesweeper.gui.AboutDialog;
+import sk.lkce.minesweeper.gui.BestTimesDialog;
+import sk.lkce.minesweeper.gui.CustomFieldDialog;
 import sk.lkce.minesweeper.gui.GameController;
 import sk.lkce.minesweeper.gui.GameOptions;
 import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
@@ -26,6 +39,15 @@ import sk.lkce.minesweeper.gui.GameView;
 import sk.lkce.minesweeper.gui.ResourceLoader;
 import sk.lkce.minesweeper.gui.ResourceLoadingException;
 import sk.lkce.minesweeper.gui.SoundPlayer;
+import sk.lkce.minesweeper.http.HttpApi;
+import sk.lkce.minesweeper.metrics.Gauge;
+import sk.lkce.minesweeper.metrics.InputLatencyMonitor;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.server.GameServer;
+import sk.lkce.minesweeper.server.LoadTest;
+import sk.lkce.minesweeper.stats.GameStatistics;
+import sk.lkce.minesweeper.stats.HistoryStatistics;
+import sk.lkce.minesweeper.tui.TerminalGame;
 
 /**
  * Entry class of the application. Contains also inner action classes.
@@ -37,8 +59,10 @@ public class MinesweeperMain {
 	 */
 	enum MenuAction {
 		NEW_GAME("New game"), BEGINNER("Beginner"), INTERMEDIATE("Intermediate"), EXPERT(
-				"Expert"), QUESTION_MARKS("Marks (?)"), SOUND("Sound"), EXIT(
-				"Exit");
+				"Expert"), CUSTOM("Custom..."), QUESTION_MARKS("Marks (?)"), SOUND("Sound"), EXIT(
+				"Exit"), ZOOM_IN("Zoom in"), ZOOM_OUT("Zoom out"), ACTUAL_SIZE(
+				"Actual size"), LATENCY_OVERLAY("Latency overlay"), BEST_TIMES(
+				"Best times...");
 
 		private final String name;
 
@@ -53,20 +77,139 @@ public class MinesweeperMain {
 	};
 
 	private final String TITLE = "Minesweeper";
+	/** The delay of the event dispatch thread reported as a stall. */
+	private static final long STALL_THRESHOLD_MILLIS = 200;
 	private JMenuBar menuBar;
 	private GameController gameController;
 	private GameOptions options;
 	private JFrame frame;
 	private SoundPlayer soundPlayer;
+	private GameView gamePane;
 	private Map<MenuAction, Action> actions = new HashMap<>();
 
 	/**
 	 * Default constructor.
 	 */
 	public MinesweeperMain() {
+		final long startTime = System.nanoTime();
+		InputLatencyMonitor.getInstance().registerMBean();
+		MetricsRegistry.getInstance().registerMBean();
+		EdtWatchdog watchdog = new EdtWatchdog(STALL_THRESHOLD_MILLIS);
+		watchdog.registerMBean();
+		watchdog.start();
+		GameStatistics.getInstance(); // Opened in the background.
+
+		// Images, sounds and the look and feel are loaded in parallel. The
+		// window is shown as soon as the images are ready, the sounds may
+		// finish loading after that.
+		ExecutorService startupExecutor = createStartupExecutor();
+		soundPlayer = new SoundPlayer();
+		soundPlayer.initialize(startupExecutor);
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
 
-		// TODO review it
+			@Override
+			public void run() {
+				soundPlayer.close();
+			}
+		}, "sound-close"));
+		Future<?> lookAndFeelTask = startupExecutor.submit(new Runnable() {
+
+			@Override
+			public void run() {
+				setLookAndFeel();
+			}
+		});
 
+		try {
+			ResourceLoader.getInstance().initialize(startupExecutor);
+			lookAndFeelTask.get();
+		} catch (ResourceLoadingException e) {
+			e.printStackTrace();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		startupExecutor.shutdown();
+
+		SwingUtilities.invokeLater(new Runnable() {
+
+			@Override
+			public void run() {
+				createGame();
+				frame.addWindowListener(new WindowAdapter() {
+
+					@Override
+					public void windowOpened(WindowEvent e) {
+						final long millis = TimeUnit.NANOSECONDS.toMillis(System
+								.nanoTime() - startTime);
+						MetricsRegistry.getInstance().gauge("startup.firstFrameMillis",
+								new Gauge() {
+
+									@Override
+									public long getValue() {
+										return millis;
+									}
+								});
+					}
+				});
+				frame.setLocationRelativeTo(null);
+				frame.setVisible(true);
+			}
+		});
+	}
+
+	public static void main(String[] args) {
+		if (args.length > 0 && args[0].equals(TerminalGame.ARGUMENT)) {
+			TerminalGame.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals(GameServer.ARGUMENT)) {
+			GameServer.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals(LoadTest.ARGUMENT)) {
+			LoadTest.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals(HttpApi.ARGUMENT)) {
+			HttpApi.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		if (args.length > 0 && args[0].equals(HistoryStatistics.ARGUMENT)) {
+			HistoryStatistics.main(Arrays.copyOfRange(args, 1, args.length));
+			return;
+		}
+		new MinesweeperMain();
+	}
+
+	/**
+	 * Creates the executor for loading of the resources during the start-up.
+	 * A new daemon thread is created for each concurrently running task so the
+	 * start-up time is bound by the slowest resource rather than by the number
+	 * of resources. Idle threads die shortly after the start-up is over.
+	 * 
+	 * @return start-up executor
+	 */
+	private ExecutorService createStartupExecutor() {
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+
+			private int count;
+
+			@Override
+			public synchronized Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "startup-" + ++count);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Sets the system look and feel, or the GTK one if the system look and
+	 * feel is the default cross-platform one.
+	 */
+	private void setLookAndFeel() {
 		try {
 			String lookAndFeel = javax.swing.UIManager
 					.getSystemLookAndFeelClassName();
@@ -91,19 +234,6 @@ public class MinesweeperMain {
 			// TODO Auto-generated catch block
 			e.printStackTrace();
 		}
-		try {
-			ResourceLoader.getInstance().initialize();
-		} catch (ResourceLoadingException e) {
-			e.printStackTrace();
-		}
-
-		createGame();
-		frame.setLocationRelativeTo(null);
-		frame.setVisible(true);
-	}
-
-	public static void main(String[] args) {
-		new MinesweeperMain();
 	}
 
 	/**
@@ -112,14 +242,7 @@ public class MinesweeperMain {
 	private void createGame() {
 
 		options = new GameOptions();
-		GameView gamePane = new GameView();
-		soundPlayer = new SoundPlayer();
-		try {
-			soundPlayer.initialize();
-		} catch (ResourceLoadingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		gamePane = new GameView();
 		gameController = new GameController(options, gamePane, soundPlayer);
 
 		actions = createActions();
@@ -128,7 +251,6 @@ public class MinesweeperMain {
 		frame = new JFrame();
 		frame.setTitle(TITLE);
 		frame.setIconImage(ResourceLoader.getInstance().getApplicationIcon());
-		frame.setResizable(false);
 		frame.setJMenuBar(menuBar);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		// window.setSize(WIDTH, HEIGHT);
@@ -157,13 +279,36 @@ public class MinesweeperMain {
 				MenuAction.INTERMEDIATE.getName(), Difficulty.MEDIUM));
 		result.put(MenuAction.EXPERT,
 				new NewGameAction(MenuAction.EXPERT.getName(), Difficulty.HARD));
+		result.put(MenuAction.CUSTOM,
+				new CustomGameAction(MenuAction.CUSTOM.getName()));
 		result.put(MenuAction.QUESTION_MARKS, new ToggleQuestionMarksAction(
 				MenuAction.QUESTION_MARKS.getName()));
 		result.put(MenuAction.SOUND,
 				new ToggleSoundAction(MenuAction.SOUND.getName()));
+		result.put(MenuAction.BEST_TIMES,
+				new ShowBestTimesAction(MenuAction.BEST_TIMES.getName()));
 		result.put(MenuAction.EXIT,
 				new ExitGameAction(MenuAction.EXIT.getName()));
 
+		ZoomAction zoomIn = new ZoomAction(MenuAction.ZOOM_IN);
+		zoomIn.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(
+				KeyEvent.VK_EQUALS, InputEvent.CTRL_DOWN_MASK));
+		result.put(MenuAction.ZOOM_IN, zoomIn);
+		ZoomAction zoomOut = new ZoomAction(MenuAction.ZOOM_OUT);
+		zoomOut.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(
+				KeyEvent.VK_MINUS, InputEvent.CTRL_DOWN_MASK));
+		result.put(MenuAction.ZOOM_OUT, zoomOut);
+		ZoomAction actualSize = new ZoomAction(MenuAction.ACTUAL_SIZE);
+		actualSize.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke(
+				KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK));
+		result.put(MenuAction.ACTUAL_SIZE, actualSize);
+
+		ToggleLatencyOverlayAction latencyOverlay = new ToggleLatencyOverlayAction(
+				MenuAction.LATENCY_OVERLAY.getName());
+		latencyOverlay.putValue(Action.ACCELERATOR_KEY,
+				KeyStroke.getKeyStroke(KeyEvent.VK_F12, 0));
+		result.put(MenuAction.LATENCY_OVERLAY, latencyOverlay);
+
 		return result;
 	}
 
@@ -180,30 +325,12 @@ public class MinesweeperMain {
 		gameMenu.add(actions.get(MenuAction.NEW_GAME));
 		gameMenu.addSeparator();
 
-		ButtonGroup group = new ButtonGroup();
-
-		JRadioButtonMenuItem beginner = new JRadioButtonMenuItem(
-				actions.get(MenuAction.BEGINNER));
-		group.add(beginner);
-		gameMenu.add(beginner);
-
-		JRadioButtonMenuItem intermediate = new JRadioButtonMenuItem(
-				actions.get(MenuAction.INTERMEDIATE));
-		group.add(intermediate);
-		gameMenu.add(intermediate);
-
-		JRadioButtonMenuItem expert = new JRadioButtonMenuItem(
-				actions.get(MenuAction.EXPERT));
-		group.add(expert);
-		gameMenu.add(expert);
-
-		// Based on the set difficulty, set the selected item in menu.
-		if (options.getDifficulty() == Difficulty.EASY)
-			beginner.setSelected(true);
-		else if (options.getDifficulty() == Difficulty.MEDIUM)
-			intermediate.setSelected(true);
-		else if (options.getDifficulty() == Difficulty.HARD)
-			expert.setSelected(true);
+		// The selected item follows the set difficulty, so a cancelled custom
+		// field leaves the previous item selected.
+		gameMenu.add(createDifficultyItem(MenuAction.BEGINNER, Difficulty.EASY));
+		gameMenu.add(createDifficultyItem(MenuAction.INTERMEDIATE, Difficulty.MEDIUM));
+		gameMenu.add(createDifficultyItem(MenuAction.EXPERT, Difficulty.HARD));
+		gameMenu.add(createDifficultyItem(MenuAction.CUSTOM, null));
 
 		gameMenu.addSeparator();
 
@@ -230,9 +357,31 @@ public class MinesweeperMain {
 
 		gameMenu.addSeparator();
 
+		gameMenu.add(actions.get(MenuAction.BEST_TIMES));
+
+		gameMenu.addSeparator();
+
 		gameMenu.add(actions.get(MenuAction.EXIT));
 
 		resultMenuBar.add(gameMenu);
+
+		JMenu viewMenu = new JMenu("View");
+		viewMenu.add(actions.get(MenuAction.ZOOM_IN));
+		viewMenu.add(actions.get(MenuAction.ZOOM_OUT));
+		viewMenu.add(actions.get(MenuAction.ACTUAL_SIZE));
+		viewMenu.addSeparator();
+
+		JCheckBoxMenuItem latencyOverlay = new JCheckBoxMenuItem(
+				actions.get(MenuAction.LATENCY_OVERLAY));
+		latencyOverlay.setModel(new DefaultButtonModel() {
+			@Override
+			public boolean isSelected() {
+				return gamePane.isLatencyOverlayVisible();
+			}
+		});
+		viewMenu.add(latencyOverlay);
+		resultMenuBar.add(viewMenu);
+
 		JMenu helpMenu = new JMenu("Help");
 		helpMenu.add(new ShowAboutAction());
 
@@ -241,6 +390,27 @@ public class MinesweeperMain {
 		return resultMenuBar;
 	}
 
+	/**
+	 * Creates a menu item which is selected when a given difficulty is set.
+	 * 
+	 * @param action the action of the item
+	 * @param difficulty the difficulty or <code>null</code> for a custom field
+	 * @return the menu item
+	 */
+	@SuppressWarnings("serial")
+	private JRadioButtonMenuItem createDifficultyItem(MenuAction action,
+			final Difficulty difficulty) {
+		JRadioButtonMenuItem item = new JRadioButtonMenuItem(
+				actions.get(action));
+		item.setModel(new DefaultButtonModel() {
+			@Override
+			public boolean isSelected() {
+				return options.getDifficulty() == difficulty;
+			}
+		});
+		return item;
+	}
+
 	/**
 	 * An action which starts a new game.
 	 */
@@ -271,6 +441,30 @@ public class MinesweeperMain {
 
 	}
 
+	/**
+	 * An action which asks for a custom size of the mine-field and starts a new
+	 * game with it.
+	 */
+	@SuppressWarnings("serial")
+	private class CustomGameAction extends AbstractAction {
+
+		public CustomGameAction(String name) {
+			super(name);
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			CustomFieldDialog dialog = new CustomFieldDialog(frame, options);
+			dialog.setVisible(true);
+			if (!dialog.isAccepted())
+				return;
+
+			gameController.startNewGame();
+			frame.pack();
+		}
+
+	}
+
 	/**
 	 * An action which either turns off or on the question mark feature of the
 	 * game based on whether this feature is on or off.
@@ -305,6 +499,66 @@ public class MinesweeperMain {
 		}
 	}
 
+	/**
+	 * An action which either shows or hides the overlay with the input latencies
+	 * based on whether it is hidden or shown.
+	 */
+	@SuppressWarnings("serial")
+	private class ToggleLatencyOverlayAction extends AbstractAction {
+
+		public ToggleLatencyOverlayAction(String name) {
+			super(name);
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			gamePane.setLatencyOverlayVisible(!gamePane.isLatencyOverlayVisible());
+		}
+	}
+
+	/**
+	 * An action which zooms the mine-field in or out or back to its actual
+	 * size.
+	 */
+	@SuppressWarnings("serial")
+	private class ZoomAction extends AbstractAction {
+
+		private final MenuAction type;
+
+		public ZoomAction(MenuAction type) {
+			super(type.getName());
+			this.type = type;
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			if (type == MenuAction.ZOOM_IN)
+				gamePane.zoomIn();
+			else if (type == MenuAction.ZOOM_OUT)
+				gamePane.zoomOut();
+			else
+				gamePane.resetZoom();
+		}
+	}
+
+	/**
+	 * An action which shows the dialog with the best times and the totals of
+	 * the played games.
+	 */
+	@SuppressWarnings("serial")
+	private class ShowBestTimesAction extends AbstractAction {
+
+		public ShowBestTimesAction(String name) {
+			super(name);
+		}
+
+		@Override
+		public void actionPerformed(ActionEvent e) {
+			JDialog dialog = new BestTimesDialog(frame);
+			dialog.setVisible(true);
+		}
+	}
+
 	/**
 	 * An action which terminates the execution of the application.
 	 */
@@ -0,0 +1,32 @@
+package sk.lkce.minesweeper.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event of a stall of the event dispatch thread detected
+ * by the {@link EdtWatchdog}. The event carries no stack trace of its own, which
+ * would be the stack of the watchdog; the stack of the stalled event dispatch
+ * thread is recorded as text in {@link #edtStack}.
+ */
+@Name("sk.lkce.minesweeper.EdtStall")
+@Label("EDT Stall")
+@Category({"Minesweeper", "Diagnostics"})
+@Description("The event dispatch thread did not service a heartbeat in time")
+@StackTrace(false)
+class EdtStallEvent extends jdk.jfr.Event {
+
+    @Label("Stall Duration")
+    @Timespan(Timespan.NANOSECONDS)
+    long stallDuration;
+
+    @Label("Subsystem")
+    String subsystem;
+
+    @Label("EDT Stack")
+    String edtStack;
+}
@@ -0,0 +1,205 @@
+package sk.lkce.minesweeper.diagnostics;
+
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import sk.lkce.minesweeper.metrics.LatencyHistogram;
+import sk.lkce.minesweeper.metrics.LatencySummary;
+
+/**
+ * A watchdog detecting stalls of the event dispatch thread. The watchdog thread
+ * regularly posts a heartbeat to the event queue. If the heartbeat is not serviced
+ * within the stall threshold, the stack of the event dispatch thread is captured,
+ * as it most likely shows the code responsible for the stall. When the heartbeat is
+ * finally serviced, the stall is:
+ * <ul>
+ *  <li>recorded in a histogram of stall durations,</li>
+ *  <li>attributed to a {@link Subsystem} based on the captured stack,</li>
+ *  <li>emitted as a flight recorder event, see {@link EdtStallEvent} and {@link JfrCategory#WATCHDOG},</li>
+ *  <li>reported to the standard error output.</li>
+ * </ul>
+ * The recorded stalls are available via JMX once {@link #registerMBean()} is invoked.
+ */
+public class EdtWatchdog implements EdtWatchdogMXBean {
+
+    private static final String MBEAN_NAME = "sk.lkce.minesweeper:type=EdtWatchdog";
+    private static final long HEARTBEAT_INTERVAL_MILLIS = 100;
+    private static final int MAX_REPORTED_FRAMES = 20;
+
+    private final long stallThresholdMillis;
+    private final LatencyHistogram stalls = new LatencyHistogram();
+    private final AtomicLongArray subsystemStalls = new AtomicLongArray(Subsystem.values().length);
+    private volatile String lastStallStack = "";
+    private volatile Thread dispatchThread;
+    private Thread thread;
+
+    /**
+     * Constructs a watchdog.
+     * @param stallThresholdMillis the minimal delay of a heartbeat in milliseconds
+     * which is considered a stall
+     */
+    public EdtWatchdog(long stallThresholdMillis){
+        this.stallThresholdMillis = stallThresholdMillis;
+    }
+
+    /**
+     * Starts the watchdog thread.
+     */
+    public synchronized void start(){
+        if (thread != null)
+            return;
+        thread = new Thread(new Runnable(){
+
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "edt-watchdog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the watchdog thread.
+     */
+    public synchronized void stop(){
+        if (thread == null)
+            return;
+        thread.interrupt();
+        thread = null;
+    }
+
+    /**
+     * Registers the watchdog in the platform MBean server.
+     */
+    public void registerMBean(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the histogram of the stall durations.
+     * @return the histogram of durations in nanoseconds
+     */
+    public LatencyHistogram getStallHistogram(){
+        return stalls;
+    }
+
+    @Override
+    public long getStallThresholdMillis() {
+        return stallThresholdMillis;
+    }
+
+    @Override
+    public LatencySummary getStalls() {
+        return LatencySummary.of(stalls);
+    }
+
+    @Override
+    public Map<String, Long> getStallsBySubsystem() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Subsystem subsystem : Subsystem.values())
+            result.put(subsystem.name(), subsystemStalls.get(subsystem.ordinal()));
+        return result;
+    }
+
+    @Override
+    public String getLastStallStack() {
+        return lastStallStack;
+    }
+
+    @Override
+    public void reset() {
+        stalls.reset();
+        for (int i = 0; i < subsystemStalls.length(); i++)
+            subsystemStalls.set(i, 0);
+        lastStallStack = "";
+    }
+
+    /**
+     * The loop of the watchdog thread. Posts heartbeats until interrupted.
+     */
+    private void watch(){
+        try {
+            while (!Thread.currentThread().isInterrupted()){
+                heartbeat();
+                Thread.sleep(HEARTBEAT_INTERVAL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            //Stopped.
+        }
+    }
+
+    /**
+     * Posts a single heartbeat and waits until it is serviced. If it is not serviced within
+     * the threshold, the stack of the event dispatch thread is captured.
+     */
+    private void heartbeat() throws InterruptedException{
+        final CountDownLatch serviced = new CountDownLatch(1);
+        final long[] servicedAt = new long[1];
+        long postedAt = System.nanoTime();
+        EventQueue.invokeLater(new Runnable(){
+
+            @Override
+            public void run() {
+                dispatchThread = Thread.currentThread();
+                servicedAt[0] = System.nanoTime();
+                serviced.countDown();
+            }
+        });
+
+        if (serviced.await(stallThresholdMillis, TimeUnit.MILLISECONDS))
+            return;
+
+        Thread edt = dispatchThread;
+        StackTraceElement[] stack = edt != null ? edt.getStackTrace() : new StackTraceElement[0];
+        serviced.await();
+        stallDetected(servicedAt[0] - postedAt, stack);
+    }
+
+    /**
+     * Records a stall of a given duration with a given stack captured during the stall.
+     */
+    private void stallDetected(long duration, StackTraceElement[] stack){
+        Subsystem subsystem = Subsystem.of(stack);
+        String stackText = formatStack(stack);
+
+        stalls.record(duration);
+        subsystemStalls.incrementAndGet(subsystem.ordinal());
+        lastStallStack = stackText;
+
+        EdtStallEvent event = new EdtStallEvent();
+        if (JfrCategory.WATCHDOG.isEnabled() && event.shouldCommit()){
+            event.stallDuration = duration;
+            event.subsystem = subsystem.name();
+            event.edtStack = stackText;
+            event.commit();
+        }
+
+        System.err.println("EDT stalled for " + TimeUnit.NANOSECONDS.toMillis(duration) + " ms in "
+                + subsystem + ":\n" + stackText);
+    }
+
+    /**
+     * Formats the top frames of a stack, one frame per line.
+     */
+    private static String formatStack(StackTraceElement[] stack){
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(stack.length, MAX_REPORTED_FRAMES); i++)
+            sb.append("\tat ").append(stack[i]).append('\n');
+        if (stack.length > MAX_REPORTED_FRAMES)
+            sb.append("\t... ").append(stack.length - MAX_REPORTED_FRAMES).append(" more\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package sk.lkce.minesweeper.diagnostics;
+
+import java.util.Map;
+
+import sk.lkce.minesweeper.metrics.LatencySummary;
+
+/**
+ * The management interface of the {@link EdtWatchdog}.
+ */
+public interface EdtWatchdogMXBean {
+
+    /**
+     * Returns the minimal duration of a heartbeat delay which is considered a stall.
+     * @return the threshold in milliseconds
+     */
+    long getStallThresholdMillis();
+
+    /**
+     * Returns the summary of the durations of the stalls.
+     * @return the stall summary
+     */
+    LatencySummary getStalls();
+
+    /**
+     * Returns the number of stalls attributed to each subsystem.
+     * @return the number of stalls by the subsystem name
+     */
+    Map<String, Long> getStallsBySubsystem();
+
+    /**
+     * Returns the stack of the event dispatch thread captured during the last stall.
+     * @return the stack or an empty string if there was no stall
+     */
+    String getLastStallStack();
+
+    /**
+     * Discards the recorded stalls.
+     */
+    void reset();
+}
@@ -0,0 +1,49 @@
+package sk.lkce.minesweeper.diagnostics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Categories of the flight recorder events of the game. A category can be switched
+ * off so that its events are never committed, even if the recording enables them.
+ * <br><br>
+ * The categories are selected by the system property {@value #PROPERTY} containing
+ * a comma separated list of category names, e.g. <code>-Dminesweeper.jfr=engine,audio</code>.
+ * The value <code>none</code> switches all the categories off. If the property is
+ * not set, all the categories are on.
+ */
+public enum JfrCategory {
+
+    /** Board generation, reveals, flags and game over. */
+    ENGINE,
+    /** Loading of images and sounds. */
+    RESOURCES,
+    /** Playback of sounds. */
+    AUDIO,
+    /** Stalls of the event dispatch thread. */
+    WATCHDOG;
+
+    /** The system property selecting the categories. */
+    public static final String PROPERTY = "minesweeper.jfr";
+
+    private final boolean enabled;
+
+    private JfrCategory(){
+        String property = System.getProperty(PROPERTY);
+        if (property == null)
+            enabled = true;
+        else{
+            List<String> names = Arrays.asList(property.toLowerCase(Locale.ROOT).split("\\s*,\\s*"));
+            enabled = names.contains(name().toLowerCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * Determines whether the events of this category are switched on.
+     * @return <code>true</code> if the events are switched on
+     */
+    public boolean isEnabled(){
+        return enabled;
+    }
+}
@@ -0,0 +1,55 @@
+package sk.lkce.minesweeper.diagnostics;
+
+/**
+ * Subsystems of the application a stall of the event dispatch thread can be
+ * attributed to. The attribution is based on the stack of the thread captured
+ * during the stall, see {@link #of(StackTraceElement[])}.
+ */
+public enum Subsystem {
+
+    /** The game model, e.g. a large flood-fill. */
+    MODEL,
+    /** Loading of images and sounds. */
+    RESOURCES,
+    /** Playing sounds. */
+    AUDIO,
+    /** Layout of the components. */
+    LAYOUT,
+    /** Painting of the components. */
+    PAINTING,
+    /** Other code of the game views and the controller. */
+    VIEW,
+    /** Anything else, including an idle thread. */
+    OTHER;
+
+    private static final String PACKAGE = "sk.lkce.minesweeper.";
+
+    /**
+     * Attributes a stack to a subsystem. The stack is searched from its top
+     * and the first frame recognized as a part of a subsystem decides.
+     * @param stack the stack, the top frame first
+     * @return the subsystem
+     */
+    public static Subsystem of(StackTraceElement[] stack){
+        for (StackTraceElement frame : stack){
+            String className = frame.getClassName();
+            String methodName = frame.getMethodName();
+            if (className.startsWith(PACKAGE + "model."))
+                return MODEL;
+            if (className.startsWith("javax.imageio.") || className.startsWith(PACKAGE + "gui.Resource"))
+                return RESOURCES;
+            if (className.startsWith("javax.sound.") || className.startsWith(PACKAGE + "gui.SoundPlayer")
+                    || className.startsWith(PACKAGE + "gui.ClipPool"))
+                return AUDIO;
+            if (methodName.equals("doLayout") || methodName.equals("validateTree") 
+                    || methodName.equals("layoutContainer"))
+                return LAYOUT;
+            if (methodName.startsWith("paint") && (className.startsWith("javax.swing.") 
+                    || className.startsWith(PACKAGE)))
+                return PAINTING;
+            if (className.startsWith(PACKAGE))
+                return VIEW;
+        }
+        return OTHER;
+    }
+}
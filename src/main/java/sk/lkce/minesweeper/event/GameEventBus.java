@@ -0,0 +1,164 @@
+package sk.lkce.minesweeper.event;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+import sk.lkce.minesweeper.metrics.InputSample;
+import sk.lkce.minesweeper.model.CellChanges;
+
+/**
+ * An event bus between the game model and its views. The events are not delivered
+ * one by one as they are published but accumulated into a {@link GameEvents} batch which
+ * is dispatched to the listeners at most once per display frame. A burst of events,
+ * for example the cells revealed by a move followed by the flags set on the mines
+ * when the game is won, therefore causes a single update of the views.
+ * <br><br>
+ * The first events after a quiet period are dispatched right away, so merging
+ * does not delay the response to a single click.
+ * <br><br>
+ * The events can be published from any thread. The listeners are always
+ * invoked on the event dispatch thread, in the order they were added.
+ */
+public class GameEventBus {
+
+    /** The minimal interval between two dispatches in milliseconds. */
+    private static final int FRAME_INTERVAL = 16;
+
+    private final List<GameEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final Timer timer;
+    private GameEvents pending;
+    private long lastDispatch;
+
+    /**
+     * Constructs an event bus.
+     */
+    public GameEventBus(){
+        timer = new Timer(FRAME_INTERVAL, new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                dispatch();
+            }
+        });
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Adds a listener.
+     * @param listener the listener
+     */
+    public void addListener(GameEventListener listener){
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     * @param listener the listener
+     */
+    public void removeListener(GameEventListener listener){
+        listeners.remove(listener);
+    }
+
+    /**
+     * Publishes changes of cells.
+     * @param changes the changes
+     */
+    public synchronized void cellsChanged(CellChanges changes){
+        pendingEvents().addCellChanges(changes);
+    }
+
+    /**
+     * Publishes that the result of an input of the player is contained in the cell
+     * changes published so far, so that the latency of the input can be measured.
+     * @param sample the sample of the input
+     */
+    public synchronized void inputHandled(InputSample sample){
+        pendingEvents().addInputSample(sample);
+    }
+
+    /**
+     * Publishes a change of the number of flags left.
+     * @param flagCount the number of flags left
+     */
+    public synchronized void flagCountChanged(int flagCount){
+        pendingEvents().setFlagCount(flagCount);
+    }
+
+    /**
+     * Publishes a change of the game time.
+     * @param time the game time in seconds
+     */
+    public synchronized void timeChanged(int time){
+        pendingEvents().setTime(time);
+    }
+
+    /**
+     * Publishes a change of the game state.
+     * @param gameState the new game state
+     */
+    public synchronized void gameStateChanged(GameState gameState){
+        pendingEvents().setGameState(gameState);
+    }
+
+    /**
+     * Drops all the events which have not been dispatched yet.
+     */
+    public synchronized void clear(){
+        pending = null;
+    }
+
+    /**
+     * Returns the batch the published events are added to. If there is no such batch,
+     * a new one is created and its dispatch is scheduled.
+     */
+    private GameEvents pendingEvents(){
+        if (pending == null){
+            pending = new GameEvents();
+            SwingUtilities.invokeLater(new Runnable(){
+
+                @Override
+                public void run() {
+                    scheduleDispatch();
+                }
+            });
+        }
+        return pending;
+    }
+
+    /**
+     * Dispatches the pending events now if the last dispatch was at least a frame ago,
+     * otherwise at the start of the next frame.
+     */
+    private void scheduleDispatch(){
+        long sinceLast = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastDispatch);
+        if (sinceLast >= FRAME_INTERVAL)
+            dispatch();
+        else if (!timer.isRunning()){
+            timer.setInitialDelay((int) (FRAME_INTERVAL - sinceLast));
+            timer.restart();
+        }
+    }
+
+    /**
+     * Dispatches the pending events to all the listeners.
+     */
+    private void dispatch(){
+        GameEvents events;
+        synchronized (this){
+            events = pending;
+            pending = null;
+        }
+        if (events == null) //Cleared in the meantime.
+            return;
+
+        lastDispatch = System.nanoTime();
+        for (GameEventListener listener : listeners)
+            listener.eventsDispatched(events);
+    }
+}
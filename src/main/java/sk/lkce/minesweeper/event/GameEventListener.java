@@ -0,0 +1,14 @@
+package sk.lkce.minesweeper.event;
+
+/**
+ * A subscriber of the {@link GameEventBus}.
+ */
+public interface GameEventListener {
+
+    /**
+     * Invoked on the event dispatch thread with all the events published
+     * since the previous invocation.
+     * @param events the merged events
+     */
+    void eventsDispatched(GameEvents events);
+}
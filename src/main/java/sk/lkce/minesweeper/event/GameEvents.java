@@ -0,0 +1,82 @@
+package sk.lkce.minesweeper.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import sk.lkce.minesweeper.metrics.InputSample;
+import sk.lkce.minesweeper.model.CellChanges;
+
+/**
+ * A batch of game events published during a single display frame and merged
+ * into one. The cell changes are kept in the order they were published; of the
+ * counters and the game state only the last published value is kept.
+ */
+public class GameEvents {
+
+    private final List<CellChanges> cellChanges = new ArrayList<>();
+    private final List<InputSample> inputSamples = new ArrayList<>();
+    private Integer flagCount;
+    private Integer time;
+    private GameState gameState;
+
+    /**
+     * Returns the cell changes in the order they were published.
+     * @return the cell changes, empty if no cell has changed
+     */
+    public List<CellChanges> getCellChanges(){
+        return Collections.unmodifiableList(cellChanges);
+    }
+
+    /**
+     * Returns the samples of the inputs whose results are contained in the cell changes.
+     * @return the input samples, empty if none
+     */
+    public List<InputSample> getInputSamples(){
+        return Collections.unmodifiableList(inputSamples);
+    }
+
+    /**
+     * Returns the last published number of flags left.
+     * @return the number of flags left or <code>null</code> if it has not changed
+     */
+    public Integer getFlagCount(){
+        return flagCount;
+    }
+
+    /**
+     * Returns the last published game time in seconds.
+     * @return the game time or <code>null</code> if it has not changed
+     */
+    public Integer getTime(){
+        return time;
+    }
+
+    /**
+     * Returns the last published game state.
+     * @return the game state or <code>null</code> if it has not changed
+     */
+    public GameState getGameState(){
+        return gameState;
+    }
+
+    void addCellChanges(CellChanges changes){
+        cellChanges.add(changes);
+    }
+
+    void addInputSample(InputSample sample){
+        inputSamples.add(sample);
+    }
+
+    void setFlagCount(int flagCount){
+        this.flagCount = flagCount;
+    }
+
+    void setTime(int time){
+        this.time = time;
+    }
+
+    void setGameState(GameState gameState){
+        this.gameState = gameState;
+    }
+}
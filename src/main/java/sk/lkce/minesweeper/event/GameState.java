@@ -0,0 +1,16 @@
+package sk.lkce.minesweeper.event;
+
+/**
+ * The state of a game as announced by the {@link GameEventBus}.
+ */
+public enum GameState {
+
+    /** A new game has been set up, no cell has been revealed yet. */
+    NEW,
+    /** The first cell has been revealed and the game clock runs. */
+    RUNNING,
+    /** All the cells without mine have been revealed. */
+    WON,
+    /** A mine has been hit. */
+    LOST
+}
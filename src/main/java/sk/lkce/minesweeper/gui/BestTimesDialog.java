@@ -0,0 +1,119 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Frame;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JTabbedPane;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+import sk.lkce.minesweeper.stats.GameRecord;
+import sk.lkce.minesweeper.stats.GameStatistics;
+import sk.lkce.minesweeper.stats.GameSummary;
+import sk.lkce.minesweeper.stats.GameTotals;
+
+/**
+ * A modal dialog which shows the best times and the totals of the games of each
+ * difficulty. The statistics are read from their index, so the dialog opens in
+ * the same time however many games have been played. The percentiles of the times
+ * are estimated from the summary of the whole history.
+ */
+@SuppressWarnings("serial")
+public class BestTimesDialog extends JDialog {
+
+	private final static int HEIGHT = 360;
+	private final static int WIDTH = 420;
+
+	public BestTimesDialog(Frame frame) {
+		super(frame, true);
+		setup();
+		setLocationRelativeTo(frame);
+		setTitle("Best times");
+		this.setSize(WIDTH, HEIGHT);
+	}
+
+	/**
+	 * Creates and adds all the dialog components.
+	 */
+	private void setup() {
+		JTabbedPane tabs = new JTabbedPane();
+		GameStatistics statistics = GameStatistics.getInstance();
+		tabs.addTab("Beginner", createPanel(statistics, Difficulty.EASY));
+		tabs.addTab("Intermediate", createPanel(statistics, Difficulty.MEDIUM));
+		tabs.addTab("Expert", createPanel(statistics, Difficulty.HARD));
+		tabs.addTab("Custom", createPanel(statistics, null));
+
+		JButton button = new JButton("Ok");
+		button.setPreferredSize(new Dimension(50, 20));
+		button.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				BestTimesDialog.this.dispose();
+			}
+
+		});
+
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.add(button);
+
+		add(tabs);
+		add(buttonPanel, BorderLayout.SOUTH);
+	}
+
+	/**
+	 * Creates the panel with the totals and the best times of a difficulty.
+	 */
+	private JPanel createPanel(GameStatistics statistics, Difficulty difficulty) {
+		GameTotals totals = statistics.getTotals(difficulty);
+		GameSummary summary = statistics.getSummary(difficulty);
+		List<GameRecord> bestTimes = statistics.getBestTimes(difficulty);
+		DateFormat dateFormat = DateFormat.getDateInstance(DateFormat.SHORT);
+
+		StringBuilder text = new StringBuilder("<html>");
+		text.append(String.format(Locale.ROOT, "Played %d, won %d (%.0f %%)<br>",
+				totals.getPlayed(), totals.getWon(), totals.getWinRate() * 100));
+		if (totals.getWon() > 0)
+			text.append(String.format(Locale.ROOT,
+					"Average time %.1f s, 3BV/s %.2f, efficiency %.0f %%<br>",
+					totals.getAverageWinMillis() / 1000, totals.getBoardValuePerSecond(),
+					totals.getEfficiency() * 100));
+		if (summary.getWon() > 0)
+			text.append(String.format(Locale.ROOT,
+					"Median time %.1f s, 90th percentile %.1f s, median 3BV/s %.2f<br>",
+					summary.getMillisQuantile(0.5) / 1000, summary.getMillisQuantile(0.9) / 1000,
+					summary.getBoardValuePerSecondQuantile(0.5)));
+		text.append("<br>");
+
+		if (bestTimes.isEmpty()) {
+			text.append("No game won yet.");
+		} else {
+			text.append("<table><tr><th></th><th>Time</th><th>3BV</th><th>Clicks</th><th>Date</th></tr>");
+			for (int i = 0; i < bestTimes.size(); i++) {
+				GameRecord record = bestTimes.get(i);
+				text.append(String.format(Locale.ROOT,
+						"<tr><td>%d.</td><td>%.3f s</td><td>%d</td><td>%d</td><td>%s</td></tr>",
+						i + 1, record.getMillis() / 1000.0, record.getBoardValue(), record.getClicks(),
+						dateFormat.format(new Date(record.getFinishedAt()))));
+			}
+			text.append("</table>");
+		}
+		text.append("</html>");
+
+		JPanel panel = new JPanel(new BorderLayout());
+		panel.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+		panel.add(new JLabel(text.toString()), BorderLayout.NORTH);
+		return panel;
+	}
+}
@@ -0,0 +1,74 @@
+package sk.lkce.minesweeper.gui;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream reading from a byte buffer. The stream supports marking
+ * and its reads never block.
+ * 
+ * @see ResourceCache
+ */
+class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private int mark;
+    
+    /**
+     * Constructs a stream reading a given buffer from its current position
+     * up to its limit. The stream takes over the buffer position. 
+     * @param buffer the buffer to be read
+     */
+    ByteBufferInputStream(ByteBuffer buffer){
+        this.buffer = buffer;
+        this.mark = buffer.position();
+    }
+    
+    @Override
+    public int read(){
+        if (!buffer.hasRemaining())
+            return -1;
+        return buffer.get() & 0xFF;
+    }
+    
+    @Override
+    public int read(byte[] b, int off, int len){
+        if (len == 0)
+            return 0;
+        if (!buffer.hasRemaining())
+            return -1;
+    	
+        int count = Math.min(len, buffer.remaining());
+        buffer.get(b, off, count);
+        return count;
+    }
+    
+    @Override
+    public long skip(long n){
+        if (n <= 0)
+            return 0;
+        int count = (int) Math.min(n, buffer.remaining());
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+    
+    @Override
+    public int available(){
+        return buffer.remaining();
+    }
+    
+    @Override
+    public boolean markSupported(){
+        return true;
+    }
+    
+    @Override
+    public synchronized void mark(int readlimit){
+        mark = buffer.position();
+    }
+    
+    @Override
+    public synchronized void reset(){
+        buffer.position(mark);
+    }
+}
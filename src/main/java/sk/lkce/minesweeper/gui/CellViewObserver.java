@@ -21,4 +21,11 @@ public interface CellViewObserver {
 	 */
     void rightButtonActivated(Coordinate coordinate);
 
+	/**
+	 * Invoked when a middle mouse button action has been
+	 * activated on a cell view with a given coordinate.
+	 * @param coordinate coordinate of the cell view's cell
+	 */
+    void middleButtonActivated(Coordinate coordinate);
+
 }
@@ -0,0 +1,108 @@
+package sk.lkce.minesweeper.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.Clip;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * A pool of pre-opened audio clips playing one sound. The sound is decoded
+ * only once into PCM data which is shared by all the clips of the pool.
+ * <br><br>
+ * Having more than one clip allows the sound to be started again while its
+ * previous playback has not finished yet. Clips of different pools are mixed
+ * by the audio system so different sounds can overlap.
+ * <br><br>
+ * The pool is not thread-safe and is intended to be used from a single audio
+ * thread.
+ * 
+ * @see SoundPlayer
+ */
+class ClipPool {
+
+    private static final int BUFFER_SIZE = 4096;
+    
+    private final Clip[] clips;
+    private int next;
+    
+    /**
+     * Constructs a clip pool for a sound decoded from a given stream.
+     * @param stream stream with the sound in any format supported by the audio system
+     * @param size the number of clips in the pool
+     * @throws IOException if the stream could not be read
+     * @throws UnsupportedAudioFileException if the sound format is not supported
+     * @throws LineUnavailableException if a clip could not be opened
+     */
+    ClipPool(InputStream stream, int size) 
+            throws IOException, UnsupportedAudioFileException, LineUnavailableException{
+        AudioInputStream audioStream = decode(AudioSystem.getAudioInputStream(stream));
+        AudioFormat format = audioStream.getFormat();
+        byte[] data;
+        try{
+            data = readFully(audioStream);
+        }finally{
+            audioStream.close();
+        }
+    	
+        clips = new Clip[size];
+        for (int i = 0; i < size; i++){
+            clips[i] = AudioSystem.getClip();
+            clips[i].open(format, data, 0, data.length);
+        }
+    }
+    
+    /**
+     * Plays the sound from the beginning on the clip which has been started
+     * the longest time ago.
+     */
+    void play(){
+        Clip clip = clips[next];
+        next = (next + 1) % clips.length;
+    	
+        clip.stop();
+        clip.setFramePosition(0);
+        clip.start();
+    }
+    
+    /**
+     * Closes all the clips of this pool.
+     */
+    void close(){
+        for (Clip clip : clips)
+            clip.close();
+    }
+    
+    /**
+     * Returns a stream decoding a given stream to the PCM encoding if the 
+     * stream is not already PCM encoded.
+     */
+    private static AudioInputStream decode(AudioInputStream stream){
+        AudioFormat format = stream.getFormat();
+        if (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED
+                || format.getEncoding() == AudioFormat.Encoding.PCM_UNSIGNED)
+            return stream;
+    	
+        AudioFormat pcmFormat = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED,
+                format.getSampleRate(), 16, format.getChannels(), 
+                format.getChannels() * 2, format.getSampleRate(), false);
+        return AudioSystem.getAudioInputStream(pcmFormat, stream);
+    }
+    
+    /**
+     * Reads the whole content of a stream.
+     */
+    private static byte[] readFully(InputStream stream) throws IOException{
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = stream.read(buffer)) != -1)
+            out.write(buffer, 0, read);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,110 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.Frame;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JSpinner;
+import javax.swing.SpinnerNumberModel;
+
+/**
+ * A modal dialog which sets a custom size and number of mines of the mine-field
+ * in the game options. The mine-field may have up to {@link GameOptions#MAX_SIDE}
+ * columns and rows.
+ */
+@SuppressWarnings("serial")
+public class CustomFieldDialog extends JDialog {
+
+	private final static int HEIGHT = 170;
+	private final static int WIDTH = 250;
+
+	private final GameOptions options;
+	private JSpinner columns;
+	private JSpinner rows;
+	private JSpinner mines;
+	private boolean accepted;
+
+	public CustomFieldDialog(Frame frame, GameOptions options) {
+		super(frame, true);
+		this.options = options;
+		setup();
+		setLocationRelativeTo(frame);
+		setTitle("Custom field");
+		this.setSize(WIDTH, HEIGHT);
+	}
+
+	/**
+	 * Determines if the custom field was set by the dialog.
+	 * @return <code>true</code> if the options were changed, <code>false</code> if the dialog was cancelled
+	 */
+	public boolean isAccepted() {
+		return accepted;
+	}
+
+	/**
+	 * Creates and adds all the dialog components.
+	 */
+	private void setup() {
+		columns = new JSpinner(new SpinnerNumberModel(options.getColumCount(), 1, GameOptions.MAX_SIDE, 1));
+		rows = new JSpinner(new SpinnerNumberModel(options.getRowCount(), 1, GameOptions.MAX_SIDE, 1));
+		mines = new JSpinner(new SpinnerNumberModel(options.getMineCount(), 1,
+				GameOptions.MAX_SIDE * GameOptions.MAX_SIDE - 1, 1));
+
+		JPanel fields = new JPanel(new GridLayout(3, 2, 8, 4));
+		fields.setBorder(BorderFactory.createEmptyBorder(8, 8, 8, 8));
+		fields.add(new JLabel("Width:"));
+		fields.add(columns);
+		fields.add(new JLabel("Height:"));
+		fields.add(rows);
+		fields.add(new JLabel("Mines:"));
+		fields.add(mines);
+
+		JButton ok = new JButton("Ok");
+		ok.setPreferredSize(new Dimension(80, 20));
+		ok.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				try {
+					options.setCustom((Integer) columns.getValue(), (Integer) rows.getValue(),
+							(Integer) mines.getValue());
+				} catch (IllegalArgumentException ex) {
+					JOptionPane.showMessageDialog(CustomFieldDialog.this, ex.getMessage(),
+							"Custom field", JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				accepted = true;
+				CustomFieldDialog.this.dispose();
+			}
+
+		});
+
+		JButton cancel = new JButton("Cancel");
+		cancel.setPreferredSize(new Dimension(80, 20));
+		cancel.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				CustomFieldDialog.this.dispose();
+			}
+
+		});
+
+		JPanel buttonPanel = new JPanel();
+		buttonPanel.add(ok);
+		buttonPanel.add(cancel);
+
+		add(fields);
+		add(buttonPanel, BorderLayout.SOUTH);
+	}
+
+}
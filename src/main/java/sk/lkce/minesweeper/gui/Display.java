@@ -1,83 +1,86 @@
 package sk.lkce.minesweeper.gui;
 
-import java.awt.GridLayout;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
 
-import javax.swing.Icon;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
+import javax.swing.JComponent;
 
 import sk.lkce.minesweeper.gui.ResourceLoader.ImageSetResource;
 
 /**
  * A Swing display  which shows a 3 digit number.
  * The display copies the Windows XP Minesweeper display look. 
+ * <br><br>
+ * The digits are painted directly from a glyph strip shared by all the
+ * displays. Setting a new number repaints only the digits which changed
+ * and requires neither new components nor a layout pass.
  * @see Display
  * @see FaceButton
  */
 @SuppressWarnings("serial")
-public class Display extends JPanel{
+public class Display extends JComponent{
 
     private static final int DIGIT_COUNT = 3;
-    private JLabel[] labels = new JLabel[DIGIT_COUNT];
-    private Icon[] numbers = ResourceLoader.getInstance().createIconSet(ImageSetResource.DISPLAY_NUMBERS,13);
+    private static final int DIGIT_WIDTH = 13;
+    private static final int MAX = 999;
+    private static final int MIN = -99;
+    /** Index of the minus sign glyph in the strip. Glyphs 0 - 9 are the digits. */
+    private static final int MINUS = 10;
+    private static final BufferedImage glyphs = ResourceLoader.getInstance().createImageStrip(ImageSetResource.DISPLAY_NUMBERS, DIGIT_WIDTH);
+    private static final int DIGIT_HEIGHT = glyphs.getHeight();
+    
+    private final int[] digits = new int[DIGIT_COUNT];
     
     /**
      * Constructs a new display.
      */
     public Display(){
-        GridLayout layout = new GridLayout(1,DIGIT_COUNT);
-        setLayout(layout);
-        for (int i = 0; i < labels.length; i++) {
-            labels[i] = new JLabel();
-            labels[i].setIcon(numbers[0]);
-            add(labels[i]);
-        }
-
         setNumber(0);
     }
     
     /**
-     * Sets this display to start showing a given number value.
+     * Sets this display to start showing a given number value. Negative 
+     * numbers are shown with the minus sign in place of the first digit. 
+     * Numbers outside of the range <code>&lt;-99, 999&gt;</code> are shown
+     * as the nearest number within the range.
      * @param number number to be displayed
      */
     public void setNumber(int number){
+        int value = Math.max(MIN, Math.min(MAX, number));
+        int leftover = Math.abs(value);
     	
-        int max  = (int)Math.pow(10, DIGIT_COUNT)-1;
-        if (number < 0 && number > max)
-            throw new IllegalArgumentException("The number needs to be in range <0, " + max + ">");
-    	
-        int[] digits = getDigitArray(number);
-    	
-        removeAll();
-        for (int i = 0; i < digits.length; i++) {
-            //labels[i].setIcon(numbers[digits[i]]);
-            //Instead seting an icon just create & add new JLabel. As setting
-            //an icon invokes repaint and the digits in display might not change at once but one after another.
-            //TODO look at better solutions (other than custom painting).
-            add(new JLabel(numbers[digits[i]]));
+        for (int i = DIGIT_COUNT - 1; i >= 0; i--){
+            int digit = leftover % 10;
+            leftover /= 10;
+            if (i == 0 && value < 0)
+                digit = MINUS;
+            setDigit(i, digit);
         }
-    	
-        revalidate();
-        repaint();
     }
-   
+    
     /**
-     * Converts an integer to an integer array representing the number's digits.
+     * Sets a digit on a given position and repaints it if it has changed.
      */
-    private int[] getDigitArray(int number){
-        int[] digits = new int[DIGIT_COUNT];
-    	
-        int leftover = number;
+    private void setDigit(int position, int digit){
+        if (digits[position] == digit)
+            return;
+        digits[position] = digit;
+        repaint(position * DIGIT_WIDTH, 0, DIGIT_WIDTH, DIGIT_HEIGHT);
+    }
+    
+    @Override
+    protected void paintComponent(Graphics g){
         for (int i = 0; i < DIGIT_COUNT; i++){
-            int result = leftover % 10;
-            leftover = (leftover - result)/10;
-            digits[DIGIT_COUNT -1 -i] = result;
-        	
-            if (leftover == 0)
-                break;
+            int x = i * DIGIT_WIDTH;
+            int glyphX = digits[i] * DIGIT_WIDTH;
+            g.drawImage(glyphs, x, 0, x + DIGIT_WIDTH, DIGIT_HEIGHT, 
+                    glyphX, 0, glyphX + DIGIT_WIDTH, DIGIT_HEIGHT, null);
         }
-        assert leftover == 0;
-    	
-        return digits;
+    }
+    
+    @Override
+    public Dimension getPreferredSize(){
+        return new Dimension(DIGIT_COUNT * DIGIT_WIDTH, DIGIT_HEIGHT);
     }
 }
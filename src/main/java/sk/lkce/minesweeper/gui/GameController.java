@@ -2,30 +2,86 @@ package sk.lkce.minesweeper.gui;
 
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
-import javax.swing.Timer;
+import javax.swing.SwingUtilities;
 
+import sk.lkce.minesweeper.event.GameEventBus;
+import sk.lkce.minesweeper.event.GameState;
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.Gauge;
+import sk.lkce.minesweeper.metrics.InputLatencyMonitor;
+import sk.lkce.minesweeper.metrics.InputSample;
+import sk.lkce.minesweeper.metrics.InputType;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.model.CellChanges;
 import sk.lkce.minesweeper.model.CellInfo;
 import sk.lkce.minesweeper.model.Coordinate;
 import sk.lkce.minesweeper.model.MineField;
+import sk.lkce.minesweeper.model.MineFieldMirror;
+import sk.lkce.minesweeper.stats.GameRecord;
+import sk.lkce.minesweeper.stats.GameStatistics;
+import sk.lkce.minesweeper.timer.HashedWheelTimer;
+import sk.lkce.minesweeper.timer.Timeout;
+import sk.lkce.minesweeper.timer.TimeoutTask;
 
 /**
  * A controller of the game logic. A mediator between {@link MineField}
  * and {@link GameView}. Some presentation logic is also part of the game view.
+ * <br><br>
+ * The mine-field is owned by a single engine thread. The input is posted to the
+ * engine as commands; the engine runs the moves and posts the changed cells back
+ * to the event dispatch thread, where they are applied to a {@link MineFieldMirror}
+ * displayed by the view. Expensive moves like revealing a huge area of a large
+ * mine-field therefore never stall painting or mouse handling.
+ * <br><br>
+ * The changes of the game are published to a {@link GameEventBus} which
+ * delivers them to the view, and any other listener, merged once per display frame.
+ * <br><br>
+ * The games started, won and lost are counted per difficulty in the {@link MetricsRegistry}.
+ * The clock ticks are scheduled in the shared {@link HashedWheelTimer}. The finished games
+ * are recorded in the {@link GameStatistics}; the mines of each game are put with a new seed,
+ * so a recorded game can be replayed.
  *
  */
 public class GameController implements CellViewObserver{
 
-    private MineField field; 
+    private MineField field; //Accessed only by the engine thread except for its clock.
+    private MineFieldMirror mirror;
     private GameView gamePane;
-    private boolean timerOn;
-    private int secondsPassed;
-    private Timer timer;
+    private Timeout tick;
     private GameOptions options;
     private SoundPlayer soundPlayer;
     private static final int TIMER_INTERVAL = 1000;
-    private boolean minesSet;
+    private static final Executor EVENT_DISPATCH_THREAD = new Executor(){
+
+        @Override
+        public void execute(Runnable command) {
+            SwingUtilities.invokeLater(command);
+        }
+    };
+    private static final Map<Difficulty, Counter> GAMES_STARTED = createGameCounters("started");
+    private static final Map<Difficulty, Counter> GAMES_WON = createGameCounters("won");
+    private static final Map<Difficulty, Counter> GAMES_LOST = createGameCounters("lost");
+    private static final Random SEEDS = new Random();
+    private Difficulty difficulty; //The difficulty of the current game.
+    private long seed; //The seed of the mines of the current game.
+    private int firstClick; //The index of the first revealed cell of the current game.
+    private int clicks; //The clicks played in the current game.
+    private final BlockingQueue<Runnable> engineQueue = new LinkedBlockingQueue<>();
+    private final ExecutorService engine;
+    private final GameEventBus eventBus = new GameEventBus();
 
     /**
      * Constructs a controller.
@@ -38,6 +94,23 @@ public class GameController implements CellViewObserver{
         this.gamePane = gameView;
         this.options = options;
         this.soundPlayer = soundPlayer;
+        eventBus.addListener(gameView);
+        this.engine = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, engineQueue, new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "game-engine");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        MetricsRegistry.getInstance().gauge("engine.pendingMoves", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return engineQueue.size();
+            }
+        });
     	
         gameView.addFaceButtonListener(new ActionListener(){
 
@@ -56,123 +129,273 @@ public class GameController implements CellViewObserver{
      */
     public void startNewGame(){
         stopTimer(); //Stop the timer in case it runs from previous game.
-        secondsPassed = 0;
-        minesSet = false;
-        timerOn = false;
+        difficulty = options.getDifficulty();
+        seed = SEEDS.nextLong();
+        firstClick = -1;
+        clicks = 0;
         field = new MineField(options.getColumCount(),options.getRowCount(), options.getMineCount());
-        gamePane.newGame(field.getGameInfo(), this);
-        gamePane.setFlagDisplayNumber(field.getLeftFlagsCount());
-        gamePane.setTimeDisplayNumber(0);
+        mirror = new MineFieldMirror(options.getColumCount(), options.getRowCount());
+        eventBus.clear(); //Drop the events of the previous game.
+        gamePane.newGame(mirror, this);
+        eventBus.gameStateChanged(GameState.NEW);
+        eventBus.flagCountChanged(field.getLeftFlagsCount());
+        eventBus.timeChanged(0);
+    }
+    
+    /**
+     * Creates the counters of games with a given outcome, one for each difficulty
+     * and one for the custom mine-fields under the <code>null</code> key.
+     */
+    private static Map<Difficulty, Counter> createGameCounters(String outcome){
+        Map<Difficulty, Counter> counters = new HashMap<>();
+        for (Difficulty difficulty : Difficulty.values())
+            counters.put(difficulty, MetricsRegistry.getInstance().counter(
+                    "games." + outcome + "." + difficulty.name().toLowerCase(Locale.ROOT)));
+        counters.put(null, MetricsRegistry.getInstance().counter("games." + outcome + ".custom"));
+        return counters;
+    }
+
+    /**
+     * Returns the event bus the changes of the game are published to.
+     * @return the event bus
+     */
+    public GameEventBus getEventBus(){
+        return eventBus;
+    }
+    
+    /**
+     * Returns the time of the current game in milliseconds as measured by the game clock.
+     * @return the elapsed game time in milliseconds
+     */
+    public long getElapsedMillis(){
+        return field.getClock().getElapsedMillis();
+    }
+    
+    /**
+     * Starts the timer of the game once the mines have been put by the engine,
+     * which also started the game clock.
+     * @param firstClick the index of the cell the mines were put around
+     */
+    private void gameStarted(int firstClick){
+        this.firstClick = firstClick;
+        startTimer();
+        GAMES_STARTED.get(difficulty).increment();
+        eventBus.gameStateChanged(GameState.RUNNING);
     }
     
     /**
      * Undertakes the necessary action after the game has ended based on whether
      * the game was won or lost.
      * @param won <code>true</code> if game was won, <code>false</code> if lost
+     * @param boardValue the 3BV of the mine-field
      */
-    private void gameOver(boolean won){
+    private void gameOver(boolean won, int boardValue){
         stopTimer();
+        (won ? GAMES_WON : GAMES_LOST).get(difficulty).increment();
+        GameStatistics.getInstance().record(new GameRecord(System.currentTimeMillis(), difficulty, won,
+                field.getColumnCount(), field.getRowCount(), field.getMineCount(), seed, firstClick,
+                field.getClock().getElapsedMillis(), boardValue, clicks));
         if (options.isSound())
             if (won)
                 soundPlayer.playWinSound();
             else
                 soundPlayer.playExplosionSound();
-        gamePane.gameOver(won);
+        eventBus.gameStateChanged(won ? GameState.WON : GameState.LOST);
     }
     
     /**
-     * Starts the game timer.
+     * Starts the game timer which updates the time display. The timer does
+     * not count the seconds itself but is re-scheduled after each tick to the 
+     * next whole second of the game clock. A late tick therefore never delays 
+     * the following ones and the display always shows the game clock time.
      */
     private void startTimer(){
-        	 
-        ActionListener taskPerformer = new ActionListener() {
+        updateTimeDisplay();
+        scheduleNextTick();
+    }
+    
+    /**
+     * Schedules the next timer tick to the next whole second of the game clock.
+     * The tick is run on the event dispatch thread, where the timer is also
+     * stopped, so a cancelled tick never runs.
+     */
+    private void scheduleNextTick(){
+        long elapsed = field.getClock().getElapsedMillis();
+        tick = HashedWheelTimer.getInstance().schedule(new TimeoutTask(){
 
-            public void actionPerformed(ActionEvent evt) {
-                gamePane.setTimeDisplayNumber(++secondsPassed);
+            @Override
+            public void run(Timeout timeout) {
+                updateTimeDisplay();
                 if (options.isSound())
                     soundPlayer.playTickSound();
-        	}
-        };
-        timer = new Timer(TIMER_INTERVAL, taskPerformer);
-        timer.start();
-        gamePane.setTimeDisplayNumber(++secondsPassed); //Start from value 1.
+                scheduleNextTick();
+            }
+        }, TIMER_INTERVAL - elapsed % TIMER_INTERVAL, TimeUnit.MILLISECONDS, EVENT_DISPATCH_THREAD);
+    }
+    
+    /**
+     * Shows the game clock time in the time display. The display starts from value 1.
+     */
+    private void updateTimeDisplay(){
+        long elapsed = field.getClock().getElapsedMillis();
+        eventBus.timeChanged((int) (elapsed / TIMER_INTERVAL) + 1);
     }
     
     /**
      * Stops the game timer,
      */
     private void stopTimer(){
-        if (timer != null)
-            timer.stop();
-        timerOn = false;
+        if (tick != null)
+            tick.cancel();
     }
 
 
     /**
-     * Sets the flag for a cell with a given coordinate and
-     * updates flag counter display.
+     * Runs an operation of the mine-field of the current game on the engine thread.
+     * The operation is ignored if the game has been already won or lost.
      */
-    private void setFlag(Coordinate coordinate){
-        int flagCount = field.setFlag(coordinate, true);
-        gamePane.setFlagDisplayNumber(flagCount);
+    private void runOnEngine(final MineField field, final Runnable operation){
+        engine.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                if (field.wasMineHit() || field.isGameWon())
+                    return;
+                operation.run();
+            }
+        });
     }
 
-    
     /**
-     * Removes the flag from a cell with a given coordinate and
-     * updates flag counter display.
+     * Posts an update of the view with the result of an operation of a given mine-field
+     * to the event dispatch thread. The update is dropped if a new game has been started
+     * in the meantime.
      */
-    private void removeFlag(Coordinate coordinate){
-        int flagCount = field.setFlag(coordinate, false);
-        gamePane.setFlagDisplayNumber(flagCount);
+    private void postUpdate(final MineField field, final Runnable update){
+        SwingUtilities.invokeLater(new Runnable(){
+
+            @Override
+            public void run() {
+                if (field == GameController.this.field)
+                    update.run();
+            }
+        });
     }
 
     @Override
-    public void leftButtonActivated(Coordinate coordinate) {
+    public void leftButtonActivated(final Coordinate coordinate) {
     	
-        if (field.getCellInfo(coordinate.x, coordinate.y).hasFlag()) //Ignore if the cell has flag.
+        CellInfo info = mirror.getCellInfo(coordinate.x, coordinate.y);
+        if (info.hasFlag() || info.isRevealed()) //Ignore if the cell has flag or is revealed.
             return;
-    	
-        if (!timerOn){
-            startTimer();
-            timerOn = true;
-        }
-        
-        if (!minesSet){
-            field.putMines(coordinate);
-            minesSet = true;
-        }
-        
-        List<Coordinate> newlyRevealedCells = field.revealCell(coordinate);
-        gamePane.updateMineField(newlyRevealedCells);
-        if (field.wasMineHit())
-            gameOver(false);
-        else if (field.isGameWon())
-            gameOver(true);
+        final InputSample sample = InputLatencyMonitor.getInstance().startSample(InputType.LEFT_CLICK);
+        clicks++;
         
-        //System.out.println(field.debugImg());
+        final MineField field = this.field;
+        final long seed = this.seed;
+        runOnEngine(field, new Runnable(){
+
+            @Override
+            public void run() {
+                CellInfo info = field.getCellInfo(coordinate.x, coordinate.y);
+                if (info.hasFlag() || info.isRevealed()) //The cell might have changed since it was displayed.
+                    return;
+                
+                if (!field.areMinesSet()){
+                    field.putMines(coordinate, new Random(seed)); //Also starts the game clock.
+                    final int firstClick = coordinate.y * field.getColumnCount() + coordinate.x;
+                    postUpdate(field, new Runnable(){
+
+                        @Override
+                        public void run() {
+                            gameStarted(firstClick);
+                        }
+                    });
+                }
+                
+                postMoveResult(field, field.revealCell(coordinate), sample);
+            }
+        });
+    }
+
+    @Override
+    public void middleButtonActivated(final Coordinate coordinate) {
+        if (!mirror.getCellInfo(coordinate.x, coordinate.y).isRevealed()) //Only revealed cells can be chorded.
+            return;
+        final InputSample sample = InputLatencyMonitor.getInstance().startSample(InputType.CHORD);
+        clicks++;
+
+        final MineField field = this.field;
+        runOnEngine(field, new Runnable(){
+
+            @Override
+            public void run() {
+                postMoveResult(field, field.chordCell(coordinate), sample);
+            }
+        });
+    }
+
+    /**
+     * Posts the cells revealed by a move and the possible end of the game to the event bus.
+     * Invoked on the engine thread right after the move.
+     */
+    private void postMoveResult(MineField field, final CellChanges newlyRevealedCells, final InputSample sample){
+        final boolean lost = field.wasMineHit();
+        final boolean won = field.isGameWon();
+        final int boardValue = lost || won ? field.getBoardValue() : 0;
+        postUpdate(field, new Runnable(){
+
+            @Override
+            public void run() {
+                eventBus.cellsChanged(newlyRevealedCells);
+                if (!newlyRevealedCells.isEmpty())
+                    eventBus.inputHandled(sample);
+                if (lost)
+                    gameOver(false, boardValue);
+                else if (won)
+                    gameOver(true, boardValue);
+            }
+        });
     }
     
     @Override
-    public void rightButtonActivated(Coordinate coordinate) {
-            CellInfo info = field.getCellInfo(coordinate.x, coordinate.y);
-        	
-            if (info.hasFlag()){ //If has flag, remove flag and add question mark.
-                assert !info.hasQuestionMark();
-                removeFlag(coordinate);
-                if (options.hasQuestionMarks())
-                    field.setQuestionMark(coordinate, true);
-            }else if (info.hasQuestionMark()){ //Has question mark, remove question mark (flag shout not be there!).
-                assert !info.hasFlag();
-                field.setQuestionMark(coordinate, false);
-            }else{ //info.hasFlag() == false && info.hasQuestionMark() == false
-                assert !(info.hasQuestionMark() || info.hasFlag());
-        		
-                if (field.getLeftFlagsCount()  == 0) //Ignore if we cannot set more flags.
+    public void rightButtonActivated(final Coordinate coordinate) {
+        final InputSample sample = InputLatencyMonitor.getInstance().startSample(InputType.RIGHT_CLICK);
+        clicks++;
+        final MineField field = this.field;
+        runOnEngine(field, new Runnable(){
+
+            @Override
+            public void run() {
+                CellInfo info = field.getCellInfo(coordinate.x, coordinate.y);
+                if (info.isRevealed()) //Ignore if the cell is revealed but not displayed yet.
                     return;
-                setFlag(coordinate);
-        	}
-        	
-            gamePane.updateMineField(coordinate);
+            	
+                if (info.hasFlag()){ //If has flag, remove flag and add question mark.
+                    assert !info.hasQuestionMark();
+                    field.setFlag(coordinate, false);
+                    if (options.hasQuestionMarks())
+                        field.setQuestionMark(coordinate, true);
+                }else if (info.hasQuestionMark()){ //Has question mark, remove question mark (flag shout not be there!).
+                    assert !info.hasFlag();
+                    field.setQuestionMark(coordinate, false);
+                }else{ //info.hasFlag() == false && info.hasQuestionMark() == false
+                    assert !(info.hasQuestionMark() || info.hasFlag());
+                    field.setFlag(coordinate, true);
+            	}
+                
+                final int flagCount = field.getLeftFlagsCount();
+                final CellChanges changes = field.getCellChanges(coordinate);
+                postUpdate(field, new Runnable(){
+
+                    @Override
+                    public void run() {
+                        eventBus.flagCountChanged(flagCount);
+                        eventBus.cellsChanged(changes);
+                        eventBus.inputHandled(sample);
+                    }
+                });
+            }
+        });
     }
 }
@@ -34,6 +34,9 @@ public class GameOptions {
 
 	};
 
+	/** The largest number of columns or rows of a custom mine-field. */
+	public static final int MAX_SIDE = 5000;
+
 	private boolean questionMarks = true;
 	private int rowCount;
 	private int columnCount;
@@ -59,8 +62,27 @@ public class GameOptions {
 		setMineCount(difficulty.getMineCount());
 	}
 
+	/**
+	 * Sets a custom mine-field size in this game-options.
+	 * @param columnCount the number of columns, at most {@link #MAX_SIDE}
+	 * @param rowCount the number of rows, at most {@link #MAX_SIDE}
+	 * @param mineCount the number of mines, less than the number of cells
+	 * @throws IllegalArgumentException if the size or the number of mines is out of range
+	 */
+	public void setCustom(int columnCount, int rowCount, int mineCount) {
+		if (columnCount <= 0 || rowCount <= 0 || columnCount > MAX_SIDE || rowCount > MAX_SIDE)
+			throw new IllegalArgumentException("Invalid mine-field size: " + columnCount + "x" + rowCount);
+		if (mineCount <= 0 || mineCount >= columnCount * rowCount)
+			throw new IllegalArgumentException("Invalid number of mines: " + mineCount);
+		this.difficulty = null;
+		setColumnCount(columnCount);
+		setRowCount(rowCount);
+		setMineCount(mineCount);
+	}
+
 	/**
 	 * Returns the game difficulty stored in these game options.
+	 * @return the difficulty or <code>null</code> if a custom size is set
 	 */
 	public Difficulty getDifficulty() {
 		return difficulty;
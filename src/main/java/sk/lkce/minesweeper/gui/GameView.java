@@ -2,24 +2,37 @@ package sk.lkce.minesweeper.gui;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
 import java.awt.event.ActionListener;
-import java.util.List;
 
 import javax.swing.BorderFactory;
+import javax.swing.JComponent;
+import javax.swing.JLayer;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
 import javax.swing.border.Border;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
+import sk.lkce.minesweeper.event.GameEventListener;
+import sk.lkce.minesweeper.event.GameEvents;
+import sk.lkce.minesweeper.event.GameState;
 import sk.lkce.minesweeper.gui.FaceButton.Face;
-import sk.lkce.minesweeper.model.Coordinate;
-import sk.lkce.minesweeper.model.GameInfo;
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.MineFieldMirror;
 
 /**
  * A game view. Contains also some presentation logic. It should be the only interface for interacting
  * with view objects. The whole game view consists of displays, button, and game grid with cell views.
+ * The game grid is scrollable and zoomable so mine-fields larger than the screen can be played.
+ * If the mine-field does not fit the view, an overview of the whole mine-field is shown next to it.
+ * <br><br>
+ * The view is updated by the events of the game dispatched by the game event bus.
  *
  */
 @SuppressWarnings("serial")
-public class GameView extends JPanel{
+public class GameView extends JPanel implements GameEventListener{
 
     /* Definition of look and style */
     static final Color DARK_COLOR = new Color(128, 128, 128);
@@ -31,8 +44,15 @@ public class GameView extends JPanel{
     private static final Border INSIDE_BORDER = BorderFactory.createLineBorder(MAIN_COLOR,5);
     private static final Border BORDER = BorderFactory.createCompoundBorder(OUTSIDE_BORDER, INSIDE_BORDER);
     
+    private static final int MINIMAP_GAP = 5;
+    
     private DisplayPane displayPane;
     private MineFieldGrid mineFieldGrid;
+    private JScrollPane scrollPane;
+    private MiniMap miniMap;
+    private PendingCellUpdates pendingUpdates;
+    private final LatencyOverlay latencyOverlay = new LatencyOverlay();
+    private JLayer<JComponent> latencyLayer;
     
    /** 
     * Constructs a game view. 
@@ -43,8 +63,30 @@ public class GameView extends JPanel{
         setBorder(BORDER);
         
         mineFieldGrid = new MineFieldGrid(this);
-        add(mineFieldGrid);
+        scrollPane = new JScrollPane(mineFieldGrid);
+        scrollPane.setBorder(null);
+        scrollPane.getViewport().setBackground(MAIN_COLOR);
+        add(scrollPane);
+        
+        miniMap = new MiniMap(mineFieldGrid);
+        final JPanel miniMapPane = new JPanel(new FlowLayout(FlowLayout.CENTER, MINIMAP_GAP, 0));
+        miniMapPane.setBackground(MAIN_COLOR);
+        miniMapPane.add(miniMap);
+        miniMapPane.setVisible(false);
+        add(miniMapPane, BorderLayout.EAST);
+        scrollPane.getViewport().addChangeListener(new ChangeListener(){
+
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                //Show the overview only if the mine-field does not fit the view.
+                Dimension size = mineFieldGrid.getSize();
+                Dimension extent = scrollPane.getViewport().getExtentSize();
+                miniMapPane.setVisible(size.width > extent.width || size.height > extent.height);
+                miniMap.visibleAreaChanged();
+            }
+        });
         
+        pendingUpdates = new PendingCellUpdates(mineFieldGrid, miniMap);
         displayPane = new DisplayPane();
     
         add(displayPane, BorderLayout.NORTH);
@@ -52,33 +94,89 @@ public class GameView extends JPanel{
    
     /**
      * Sets the game view to a 'new-game' state. 
-     * @param gameInfo information about the new game
+     * @param mirror the mine-field mirror of the new game
      * @param controller game conroller
      */
-    public void newGame(GameInfo gameInfo, GameController controller){
-        mineFieldGrid.removeAll();
-        mineFieldGrid.newGame(gameInfo, controller);
+    public void newGame(MineFieldMirror mirror, GameController controller){
+        pendingUpdates.newGame(mirror);
+        mineFieldGrid.newGame(mirror, controller);
+        miniMap.newGame(mirror);
         displayPane.getFaceButton().reset();
         repaint();
     }
     
     /**
-     * Updates cells views for cells with given coordinates.
-     * @param coordinates cell coordinates
+     * Updates the view with the events of the game. The changed cells are applied to
+     * the mine-field mirror; large changes are applied progressively in the following
+     * display frames.
+     * @param events the game events
      */
-    public void updateMineField(List<Coordinate> coordinates){
-        mineFieldGrid.update(coordinates);
+    @Override
+    public void eventsDispatched(GameEvents events){
+        for (CellChanges changes : events.getCellChanges())
+            pendingUpdates.add(changes);
+        mineFieldGrid.recordLatencyOnPaint(events.getInputSamples());
+        if (events.getFlagCount() != null)
+            setFlagDisplayNumber(events.getFlagCount());
+        if (events.getTime() != null)
+            setTimeDisplayNumber(events.getTime());
+        if (events.getGameState() == GameState.WON || events.getGameState() == GameState.LOST)
+            gameOver(events.getGameState() == GameState.WON);
     }
     
+    
     /**
-     * Updates a cell view for a cell with a given coordinate.
-     * @param coordinate cell coordinate
+     * Zooms the mine-field in by one step.
      */
-    public void updateMineField(Coordinate coordinate){
-        mineFieldGrid.update(coordinate);
+    public void zoomIn(){
+        mineFieldGrid.zoomIn();
     }
     
+    /**
+     * Zooms the mine-field out by one step.
+     */
+    public void zoomOut(){
+        mineFieldGrid.zoomOut();
+    }
+    
+    /**
+     * Shows the mine-field in its actual size.
+     */
+    public void resetZoom(){
+        mineFieldGrid.resetZoom();
+    }
     
+    /**
+     * Shows or hides the overlay with the input-to-paint latencies over the mine-field.
+     * @param visible <code>true</code> if the overlay should be shown
+     */
+    public void setLatencyOverlayVisible(boolean visible){
+        if (visible == isLatencyOverlayVisible())
+            return;
+
+        if (visible){
+            remove(scrollPane);
+            latencyLayer = new JLayer<JComponent>(scrollPane, latencyOverlay);
+            add(latencyLayer);
+        }else{
+            remove(latencyLayer);
+            latencyLayer.setView(null);
+            latencyLayer.setUI(null);
+            latencyLayer = null;
+            add(scrollPane);
+        }
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Determines whether the overlay with the input-to-paint latencies is shown.
+     * @return <code>true</code> if the overlay is shown
+     */
+    public boolean isLatencyOverlayVisible(){
+        return latencyLayer != null;
+    }
+
     /**
      * Sets the flag display to display given value.
      * @param number the number of flags to be displayed
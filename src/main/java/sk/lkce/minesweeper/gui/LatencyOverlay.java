@@ -0,0 +1,100 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JComponent;
+import javax.swing.JLayer;
+import javax.swing.Timer;
+import javax.swing.plaf.LayerUI;
+
+import sk.lkce.minesweeper.metrics.InputLatencyMonitor;
+import sk.lkce.minesweeper.metrics.InputType;
+import sk.lkce.minesweeper.metrics.LatencySummary;
+
+/**
+ * An overlay painted over the mine-field showing the input-to-paint latencies
+ * measured by {@link InputLatencyMonitor}. The overlay is refreshed periodically
+ * while it is installed.
+ * <br><br>
+ * A {@link JLayer} turns off the blit scrolling of the viewport under it, so the
+ * layer with the overlay should be put in place only while the overlay is shown.
+ */
+@SuppressWarnings("serial")
+class LatencyOverlay extends LayerUI<JComponent> {
+
+    private static final int REFRESH_INTERVAL = 500;
+    private static final int MARGIN = 4;
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 10);
+    private static final Color BACKGROUND = Color.black;
+    private static final float BACKGROUND_ALPHA = 0.6f;
+    private static final Color TEXT_COLOR = Color.white;
+
+    private final Timer timer;
+    private JLayer<?> layer;
+
+    /**
+     * Constructs an overlay.
+     */
+    LatencyOverlay(){
+        timer = new Timer(REFRESH_INTERVAL, new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (layer != null)
+                    layer.repaint();
+            }
+        });
+    }
+
+    @Override
+    public void installUI(JComponent c){
+        super.installUI(c);
+        layer = (JLayer<?>) c;
+        timer.start();
+    }
+
+    @Override
+    public void uninstallUI(JComponent c){
+        super.uninstallUI(c);
+        layer = null;
+        timer.stop();
+    }
+
+    @Override
+    public void paint(Graphics g, JComponent c){
+        super.paint(g, c);
+
+        InputType[] types = InputType.values();
+        String[] lines = new String[types.length + 1];
+        lines[0] = String.format("%-5s%5s%6s%6s%6s", "ms", "n", "p50", "p99", "max");
+        for (int i = 0; i < types.length; i++){
+            LatencySummary summary = LatencySummary.of(InputLatencyMonitor.getInstance().getHistogram(types[i]));
+            lines[i + 1] = String.format("%-5s%5d%6.1f%6.1f%6.1f", types[i].getName(), summary.getCount(),
+                    summary.getMedian(), summary.getPercentile99(), summary.getMax());
+        }
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setFont(FONT);
+        FontMetrics metrics = g2.getFontMetrics();
+        int width = 0;
+        for (String line : lines)
+            width = Math.max(width, metrics.stringWidth(line));
+        int height = lines.length * metrics.getHeight();
+
+        g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, BACKGROUND_ALPHA));
+        g2.setColor(BACKGROUND);
+        g2.fillRect(MARGIN, MARGIN, width + 2 * MARGIN, height + 2 * MARGIN);
+        g2.setComposite(AlphaComposite.SrcOver);
+        g2.setColor(TEXT_COLOR);
+        for (int i = 0; i < lines.length; i++)
+            g2.drawString(lines[i], 2 * MARGIN, 2 * MARGIN + i * metrics.getHeight() + metrics.getAscent());
+        g2.dispose();
+    }
+}
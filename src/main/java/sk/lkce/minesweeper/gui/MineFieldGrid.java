@@ -1,39 +1,74 @@
 package sk.lkce.minesweeper.gui;
 
-import java.awt.Component;
-import java.awt.GridLayout;
+import java.awt.Container;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsEnvironment;
+import java.awt.Insets;
+import java.awt.Point;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
-import javax.swing.JPanel;
+import javax.swing.JComponent;
+import javax.swing.JScrollPane;
+import javax.swing.JViewport;
+import javax.swing.Scrollable;
+import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 
 import sk.lkce.minesweeper.gui.FaceButton.Face;
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.InputLatencyMonitor;
+import sk.lkce.minesweeper.metrics.InputSample;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
 import sk.lkce.minesweeper.model.CellInfo;
 import sk.lkce.minesweeper.model.Coordinate;
 import sk.lkce.minesweeper.model.GameInfo;
 
 /**
- * A component which displays the mine-field cell grid. It consists
- * of grid of {@link CellView} objects.
- * As {@link GameView}, also contains some presentation logic. 
- * The grid also handles mouse events centrally 
- * and propagates them to relevant cell views.
- * 
+ * A component which displays the mine-field cell grid. The cells
+ * are painted by {@link CellView}.
+ * As {@link GameView}, also contains some presentation logic.
+ * The grid also handles mouse events centrally
+ * and translates them to actions on the relevant cells.
+ * <br><br>
+ * The grid is intended to be placed in a scroll pane. It paints only the cells
+ * which intersect the area to be repainted so the cost of painting depends
+ * on the size of the visible area and not on the size of the mine-field.
+ * The cells are painted in tiles cached by {@link TileCache}, so that
+ * painting usually consists only of drawing a few tile images.
+ * The grid can be zoomed in and out.
+ *
  * see@ {@link CellView}
  */
 @SuppressWarnings("serial")
-class MineFieldGrid extends JPanel{
+class MineFieldGrid extends JComponent implements Scrollable{
+
+    private static final Border BORDER = new MineSweeperBorder(3,GameView.DARK_COLOR, GameView.LIGHT_COLOR);
+    private static final double MIN_ZOOM = 0.25;
+    private static final double MAX_ZOOM = 4;
+    private static final double ZOOM_STEP = 1.25;
+    /** The part of the screen which the grid can take when the window is packed. */
+    private static final double MAX_SCREEN_FRACTION = 0.8;
+    private static final Counter REPAINTS = MetricsRegistry.getInstance().counter("view.gridRepaints");
 
-    private Map<Coordinate,CellView> cells = new HashMap<Coordinate,CellView>();
-    private static final Border BORDER = new MineSweeperBorder(3,GameView.DARK_COLOR, GameView.LIGHT_COLOR); 
     private boolean ignoreMouseEvent;
     private GameView gameView;
-    
+    private GameInfo gameInfo;
+    private CellViewObserver observer;
+    private Set<Coordinate> pressedCells = new HashSet<>();
+    private double zoom = 1;
+    private final TileCache tileCache = new TileCache();
+    private final List<InputSample> unpaintedInputs = new ArrayList<>();
+
     /**
      * Constructs a mine field grid.
      * @param gameView game view
@@ -41,31 +76,29 @@ class MineFieldGrid extends JPanel{
     MineFieldGrid(GameView gameView){
         MouseAdapter listener = new TheMouseListener();
         this.gameView = gameView;
+        setOpaque(true); //Allows the scroll pane to blit the already painted area when scrolling.
+        setBorder(BORDER);
         addMouseListener(listener);
         addMouseMotionListener(listener);
+        addMouseWheelListener(listener);
     }
-    
-    
+
+
     /**
      * Sets this cell grid to the 'new-game' state according to the
      * new  game information.
      * @param gameInfo game information
+     * @param observer observer to be notified about actions on the cells
      */
-    void newGame(GameInfo gameInfo, GameController controller){
-        setLayout(new GridLayout(gameInfo.getRowCount(),gameInfo.getColumnCount()));
-        setBorder(BORDER);
+    void newGame(GameInfo gameInfo, CellViewObserver observer){
+        this.gameInfo = gameInfo;
+        this.observer = observer;
         ignoreMouseEvent = false;
-    	
-    	
-        for (int y = 0; y < gameInfo.getRowCount(); y++)
-            for (int x = 0; x < gameInfo.getColumnCount(); x++){
-                CellInfo cellInfo = gameInfo.getCellInfo(x, y);
-                CellView cell = new CellView(cellInfo);
-                cell.addListener(controller);
-                add(cell);
-                cells.put(cellInfo.getCoordinate(),cell);
-        	}
-    
+        pressedCells.clear();
+        tileCache.reset(gameInfo, zoom);
+
+        revalidate();
+        repaint();
     }
 
     /**
@@ -73,182 +106,482 @@ class MineFieldGrid extends JPanel{
      * @param coordinates coordinates of the cells which views should be updated
      */
     void update(List<Coordinate> coordinates) {
-        //Update relevant cell gui's according to the model.
-        //This will also mark them for repainting by this container.
-        for (Coordinate c : coordinates)
-            cells.get(c).updateLook(); 
-        	
-        repaint();
+        if (coordinates.isEmpty())
+            return;
+
+        //Repaint the area spanning all the cells. Only its visible part is actually painted.
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Coordinate c : coordinates){
+            tileCache.invalidate(c.x, c.y);
+            minX = Math.min(minX, c.x);
+            minY = Math.min(minY, c.y);
+            maxX = Math.max(maxX, c.x);
+            maxY = Math.max(maxY, c.y);
+        }
+        repaint(getCellBounds(minX, minY, maxX, maxY));
     }
-    
+
     /**
      * Updates a cell view for a cell with a given coordinate.
      * @param coordinate coordinate of the cell which view should be updated
      */
     void update(Coordinate coordinate) {
-        cells.get(coordinate).updateLook(); 
-        repaint();
+        tileCache.invalidate(coordinate.x, coordinate.y);
+        repaintCell(coordinate);
     }
+
    /**
     * Sets this mine-field grid to 'game-over' state and based
-    * on whether the game  has been won or lost. 
-    * @param won <code>true</code> if the game was won, <code>false</code> if the game was lost 
+    * on whether the game  has been won or lost.
+    * @param won <code>true</code> if the game was won, <code>false</code> if the game was lost
     */
     void gameOver(boolean won){
         ignoreMouseEvent = true;
     }
-    
+
+    /**
+     * Zooms the grid in by one step, keeping the centre of the visible area in place.
+     */
+    void zoomIn(){
+        setZoom(zoom * ZOOM_STEP, getVisibleCentre());
+    }
+
+    /**
+     * Zooms the grid out by one step, keeping the centre of the visible area in place.
+     */
+    void zoomOut(){
+        setZoom(zoom / ZOOM_STEP, getVisibleCentre());
+    }
+
+    /**
+     * Sets the zoom back to the actual size of the cells.
+     */
+    void resetZoom(){
+        setZoom(1, getVisibleCentre());
+    }
+
+    /**
+     * Sets a new zoom level so that the point of the grid under a given anchor
+     * point stays at the same position in the viewport.
+     */
+    private void setZoom(double newZoom, Point anchor){
+        newZoom = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, newZoom));
+        if (newZoom == zoom)
+            return;
+
+        Insets insets = getInsets();
+        double scale = newZoom / zoom;
+        int anchorX = insets.left + (int) Math.round((anchor.x - insets.left) * scale);
+        int anchorY = insets.top + (int) Math.round((anchor.y - insets.top) * scale);
+        zoom = newZoom;
+        if (gameInfo != null)
+            tileCache.reset(gameInfo, zoom);
+
+        setSize(getPreferredSize());
+        Rectangle visible = getVisibleRect();
+        scrollTo(new Point(visible.x + anchorX - anchor.x, visible.y + anchorY - anchor.y));
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Scrolls the grid so that a cell with given column and row indexes
+     * is in the centre of the visible area, or as close to it as possible.
+     * @param x column index of the cell
+     * @param y row index of the cell
+     */
+    void centreOnCell(int x, int y){
+        Rectangle cell = getCellBounds(x, y, x, y);
+        Rectangle visible = getVisibleRect();
+        scrollTo(new Point(cell.x + cell.width / 2 - visible.width / 2,
+                cell.y + cell.height / 2 - visible.height / 2));
+    }
+
+    /**
+     * Returns the area of the mine-field which is visible, in cells.
+     * @return the column and row of the first visible cell and the number of visible columns and rows
+     */
+    Rectangle getVisibleCells(){
+        Rectangle visible = getVisibleRect();
+        Insets insets = getInsets();
+        double cellSize = getCellSize();
+        int x = Math.max(0, (int) Math.floor((visible.x - insets.left) / cellSize));
+        int y = Math.max(0, (int) Math.floor((visible.y - insets.top) / cellSize));
+        return new Rectangle(x, y, (int) Math.ceil(visible.width / cellSize), 
+                (int) Math.ceil(visible.height / cellSize));
+    }
+
+    /**
+     * Moves the viewport of the grid to a given position. The position is
+     * limited so that the viewport does not leave the grid.
+     */
+    private void scrollTo(Point position){
+        Container parent = getParent();
+        if (parent instanceof JViewport == false)
+            return;
+
+        JViewport viewport = (JViewport) parent;
+        Dimension size = getSize();
+        Dimension extent = viewport.getExtentSize();
+        position.x = Math.max(0, Math.min(size.width - extent.width, position.x));
+        position.y = Math.max(0, Math.min(size.height - extent.height, position.y));
+        viewport.setViewPosition(position);
+    }
+
+    /**
+     * Returns the centre of the visible part of this grid.
+     */
+    private Point getVisibleCentre(){
+        Rectangle visible = getVisibleRect();
+        return new Point(visible.x + visible.width / 2, visible.y + visible.height / 2);
+    }
+
+    /**
+     * Returns the current size of a cell in pixels.
+     */
+    private double getCellSize(){
+        return CellView.WIDTH * zoom;
+    }
+
+    /**
+     * Returns the bounds of the area covering the cells between the given
+     * top left and bottom right cell.
+     */
+    private Rectangle getCellBounds(int minX, int minY, int maxX, int maxY){
+        Insets insets = getInsets();
+        double cellSize = getCellSize();
+        int left = insets.left + (int) Math.floor(minX * cellSize);
+        int top = insets.top + (int) Math.floor(minY * cellSize);
+        int right = insets.left + (int) Math.ceil((maxX + 1) * cellSize);
+        int bottom = insets.top + (int) Math.ceil((maxY + 1) * cellSize);
+        return new Rectangle(left, top, right - left, bottom - top);
+    }
+
+    /**
+     * Repaints a cell with a given coordinate.
+     */
+    private void repaintCell(Coordinate c){
+        repaint(getCellBounds(c.x, c.y, c.x, c.y));
+    }
+
+    /**
+     * Returns the coordinate of the cell at a given point of this grid or
+     * <code>null</code> if there is no cell at the point.
+     */
+    private Coordinate getCoordinate(Point point){
+        if (gameInfo == null)
+            return null;
+        Insets insets = getInsets();
+        double cellSize = getCellSize();
+        int x = (int) Math.floor((point.x - insets.left) / cellSize);
+        int y = (int) Math.floor((point.y - insets.top) / cellSize);
+        if (x < 0 || y < 0 || x >= gameInfo.getColumnCount() || y >= gameInfo.getRowCount())
+            return null;
+        return new Coordinate(x, y);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g){
+        REPAINTS.increment();
+        Rectangle clip = g.getClipBounds();
+        g.setColor(GameView.MAIN_COLOR);
+        g.fillRect(clip.x, clip.y, clip.width, clip.height);
+
+        if (gameInfo == null)
+            return;
+
+        Insets insets = getInsets();
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.translate(insets.left, insets.top);
+        Rectangle visible = getVisibleRect();
+        tileCache.setViewSize(visible.width, visible.height); //Follows the resizes of the viewport.
+        tileCache.paint(g2, new Rectangle(clip.x - insets.left, clip.y - insets.top, clip.width, clip.height));
+
+        //The pressed cells are not part of the tiles, paint them over.
+        if (!pressedCells.isEmpty()){
+            g2.scale(zoom, zoom);
+            for (Coordinate c : pressedCells)
+                CellView.paint(g2, gameInfo.getCellInfo(c.x, c.y), true, c.x * CellView.WIDTH, c.y * CellView.HEIGHT);
+        }
+
+        g2.dispose();
+
+        //The results of the inputs are painted now.
+        if (!unpaintedInputs.isEmpty()){
+            long now = System.nanoTime();
+            for (InputSample sample : unpaintedInputs)
+                InputLatencyMonitor.getInstance().record(sample, now);
+            unpaintedInputs.clear();
+        }
+    }
+
+    /**
+     * Records the latency of inputs when the grid is painted next time. Invoked
+     * after the results of the inputs have been applied to the grid.
+     * @param samples the samples of the inputs
+     */
+    void recordLatencyOnPaint(List<InputSample> samples){
+        unpaintedInputs.addAll(samples);
+    }
+
+    @Override
+    public Dimension getPreferredSize(){
+        if (gameInfo == null)
+            return super.getPreferredSize();
+
+        Insets insets = getInsets();
+        double cellSize = getCellSize();
+        return new Dimension(
+                insets.left + insets.right + (int) Math.ceil(gameInfo.getColumnCount() * cellSize),
+                insets.top + insets.bottom + (int) Math.ceil(gameInfo.getRowCount() * cellSize));
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        //The whole grid if it fits on the screen, otherwise the part of it which does.
+        Dimension size = getPreferredSize();
+        if (GraphicsEnvironment.isHeadless())
+            return size;
+        Rectangle screen = GraphicsEnvironment.getLocalGraphicsEnvironment().getMaximumWindowBounds();
+        size.width = Math.min(size.width, (int) (screen.width * MAX_SCREEN_FRACTION));
+        size.height = Math.min(size.height, (int) (screen.height * MAX_SCREEN_FRACTION));
+        return size;
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect,
+            int orientation, int direction) {
+        return (int) Math.ceil(getCellSize());
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect,
+            int orientation, int direction) {
+        int extent = orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+        return Math.max(extent - (int) Math.ceil(getCellSize()), 1);
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return false;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * Sets pressed look of a cell for a given mouse button.
+     * Based on the mouse button and the cell's state an event
+     * might be fired to the observer.
+     */
+    private void pressCell(Coordinate c, int button){
+        CellInfo cellInfo = gameInfo.getCellInfo(c.x, c.y);
+        if (cellInfo.isRevealed())
+            return;
+
+        if (button == MouseEvent.BUTTON3)
+            observer.rightButtonActivated(c); //Activate flag/question mark right after right  button was pressed.
+        else{
+            if (!cellInfo.hasFlag()){
+                pressedCells.add(c); //Just show pressed look. Revealing the cell is activated upon the release of the left mouse button.
+                repaintCell(c);
+        	}
+        }
+    }
+
+    /**
+     * Invoked when the left mouse button has been released on top of a
+     * cell (simply a click event). It is assumed that the cell is in pressed state when this method is invoked.
+     *
+     * If the cell is not revealed or does not contain flag, the left mouse button
+     * activate action is fired to the observer.
+     */
+    private void releaseCell(Coordinate c){
+        CellInfo cellInfo = gameInfo.getCellInfo(c.x, c.y);
+        if (cellInfo.isRevealed() || cellInfo.hasFlag())
+            return;
+        assert pressedCells.contains(c);
+
+        pressedCells.remove(c);
+        observer.leftButtonActivated(c);
+        repaintCell(c);
+    }
+
+    /**
+     * Cancels the pressed state of a cell. This method should be used
+     * in a situation when the cell has been brought to the pressed state
+     * and this state needs to be undone, effectively bringing the cell to the
+     * default state.
+     */
+    private void unpressCell(Coordinate c){
+        if (pressedCells.remove(c))
+            repaintCell(c);
+    }
+
    /**
-    * Inner mouse listener. Rather than listening for mouse event on cell view level, the mouse
-    * events are handled by mine-field grid and propagated to the relevant cell view or group
-    * of cell views which in turn fire some of these events to registered listeners.
-    * 
-    * This mouse listener manages cell views and their pressed/not-pressed/clicked states
+    * Inner mouse listener. The mouse events are handled by mine-field grid and translated to the
+    * actions on the relevant cell or group of cells which in turn fire some of these events to the observer.
+    *
+    * This mouse listener manages cells and their pressed/not-pressed/clicked states
     * based on mouse events received from the mine-field grid and in a way that copies the original
     * Windows XP Minesweeper game.
     *
+    * Mouse wheel with control key pressed zooms the grid, otherwise the wheel scrolls the grid
+    * as usual.
+    *
     */
     private class TheMouseListener extends MouseAdapter{
-    	
-        private CellView pressedCell;
-        private List<CellView> pressedCells = new ArrayList<>();
+
+        private Coordinate pressedCell;
+        private List<Coordinate> groupCells = new ArrayList<>();
         private int buttonPressed;
-    	
-    	
+
+
         @Override
         public void mouseDragged(MouseEvent e) {
             if (ignoreMouseEvent)
                 return;
             if (buttonPressed == MouseEvent.BUTTON3) //No dragging for right mouse button.
                 return;
-        	
-            CellView c = getCell(e);
-        	
+
+            Coordinate c = getCoordinate(e.getPoint());
+
             if (buttonPressed == MouseEvent.BUTTON1){
-                assert pressedCells.size() == 0; //No group press is active
-        		
-                if ( c == pressedCell) //The drag event is for the same cell as is pressed = we are draging within the pressed cell.
-                    return; 
-        		
+                assert groupCells.size() == 0; //No group press is active
+
+                if (c == null ? pressedCell == null : c.equals(pressedCell)) //The drag event is for the same cell as is pressed = we are draging within the pressed cell.
+                    return;
+
                 //We are dragging from pressed cell outside...
-                pressedCell.unpressMouse(); //Unpress the previously pressed cell
-        		
+                if (pressedCell != null)
+                    unpressCell(pressedCell); //Unpress the previously pressed cell
+
                 if (c == null ) //We dragged out of the area contaning cells.
                     pressedCell = null;
                 else{ //We dragged over to another cell.
-                    c.mousePressed(MouseEvent.BUTTON1);
+                    pressCell(c, MouseEvent.BUTTON1);
                     pressedCell = c;
             	}
             }else if (buttonPressed== MouseEvent.BUTTON2){
                 assert pressedCell == null; //No left-button pressed cell.
                 unpressGroup(); // Unpresse the previous group.
                 if (c != null) //If we dragged to a new cell, press the new group. Ignore if we dragged outside the cell area.
-                    pressGroup(c.getCoordinate());
+                    pressGroup(c);
         	}
         }
 
         @Override
         public void mousePressed(MouseEvent e) {
+            InputLatencyMonitor.getInstance().inputReceived();
             /**
              * Sets the pressed look if the cell has not been already revealed
              * and if the click comes from left mouse button.
              */
             if (ignoreMouseEvent)
                 return;
-        	
+
             if (e.getButton() == MouseEvent.BUTTON1)
                 gameView.setFace(Face.SUSPENDED);
-        	
-            CellView c = getCell(e);
+
+            Coordinate c = getCoordinate(e.getPoint());
             buttonPressed = e.getButton(); //Save the type of button pressed.
-        	
+
             if (c == null) //If not pressed over the cell, nothing to do.
                 return;
-        	
+
             if (buttonPressed == MouseEvent.BUTTON3){
-                c.mousePressed(e.getButton());
+                pressCell(c, buttonPressed);
             }else if (buttonPressed == MouseEvent.BUTTON1){
-                c.mousePressed(buttonPressed);
+                pressCell(c, buttonPressed);
                 pressedCell = c;
             }else if (buttonPressed == MouseEvent.BUTTON2){
-                pressGroup(c.getCoordinate());
+                pressGroup(c);
             }else
                 throw new AssertionError();
-        	
+
         }
 
         @Override
         public void mouseReleased(MouseEvent e) {
+            InputLatencyMonitor.getInstance().inputReceived();
             if (ignoreMouseEvent)
                 return;
             gameView.setFace(Face.NORMAL);
             buttonPressed = -1;
-        	
-            if (e.getButton() == MouseEvent.BUTTON2)
+
+            if (e.getButton() == MouseEvent.BUTTON2){
                 unpressGroup();
+                Coordinate c = getCoordinate(e.getPoint());
+                if (c != null) //Reveal the neighbors of the cell if released over a cell.
+                    observer.middleButtonActivated(c);
+            }
             else if (e.getButton() == MouseEvent.BUTTON1){
-                CellView c = getCell(e);
+                Coordinate c = getCoordinate(e.getPoint());
                 if (c != null){ //If button was released over the cell
-            		
-                    if (pressedCell != c){ 
-                        //For rare cases when the mouse somehow manages to be released on an unpressed cell 
+
+                    if (!c.equals(pressedCell)){
+                        //For rare cases when the mouse somehow manages to be released on an unpressed cell
                         //Press is on another cell and release is on another one (adjacent)  without drag event which
                         //would set the cell as pressed.
-            			
+
                         if (pressedCell == null) //When we had no pressed cell (happens when clicking on field when menu is displayed).
                             return;
-            			
-                        pressedCell.unpressMouse();
-                        c.mousePressed(MouseEvent.BUTTON1);
+
+                        unpressCell(pressedCell);
+                        pressCell(c, MouseEvent.BUTTON1);
             		}
-                    c.mouseReleased();
+                    releaseCell(c);
                     pressedCell = null;
                 }else{ //Was released not over the cell - because of drag, there cannot be pressed cell in this situation.
                     assert pressedCell == null;
             	}
         	}
         }
-    	
+
+        @Override
+        public void mouseWheelMoved(MouseWheelEvent e) {
+            if (e.isControlDown()){
+                double factor = Math.pow(ZOOM_STEP, -e.getWheelRotation());
+                setZoom(zoom * factor, e.getPoint());
+                return;
+            }
+
+            //Not a zoom - let the scroll pane scroll.
+            Container scrollPane = SwingUtilities.getAncestorOfClass(JScrollPane.class, MineFieldGrid.this);
+            if (scrollPane != null)
+                scrollPane.dispatchEvent(SwingUtilities.convertMouseEvent(MineFieldGrid.this, e, scrollPane));
+        }
+
     	/**
-    	 * Sets pressed look for a cell view on a give coordinate
-    	 * and to all its adjacent cell views.
+    	 * Sets pressed look for a cell on a give coordinate
+    	 * and to all its adjacent cells.
     	 * @param co
     	 */
         private void pressGroup(Coordinate co){
-            assert pressedCells.size() == 0;
-        	
+            assert groupCells.size() == 0;
+
             for (int y = co.y - 1; y < co.y + 2;y++)
                 for (int x = co.x - 1; x < co.x + 2; x++){
-                    CellView cell = cells.get(new Coordinate(x,y));
-                    if (cell != null)
-                        pressedCells.add(cell);
+                    if (x >= 0 && y >= 0 && x < gameInfo.getColumnCount() && y < gameInfo.getRowCount())
+                        groupCells.add(new Coordinate(x,y));
             	}
-        	
-            for (CellView c: pressedCells)
-                c.mousePressed(MouseEvent.BUTTON2);
+
+            for (Coordinate c: groupCells)
+                pressCell(c, MouseEvent.BUTTON2);
         }
-    	
+
         /**
          * Cancels induced pressed look by {@link #pressGroup(Coordinate)}
          */
         private void unpressGroup(){
-            for (CellView c : pressedCells)
-                c.unpressMouse();
-            pressedCells.clear();
+            for (Coordinate c : groupCells)
+                unpressCell(c);
+            groupCells.clear();
         }
-    	
-        /**
-         * Determines on which cell view the mouse event was generated.
-         */
-        private CellView getCell(MouseEvent e){
-            Component c = getComponentAt(e.getPoint());
-        	
-            //If its other component - container itself.
-            if (c instanceof CellView == false)
-                return null;
-            else
-                return (CellView) c;
-        }
-    	
+
     }
 }
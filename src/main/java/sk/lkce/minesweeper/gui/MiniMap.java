@@ -0,0 +1,207 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+import javax.swing.JComponent;
+
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.model.CellInfo;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.GameInfo;
+
+/**
+ * An overview of the whole mine-field for mine-fields which do not fit
+ * the screen. The mine-field is downsampled into a small image in which
+ * each pixel represents a square block of cells. The colour of the pixel
+ * mixes the colours of covered, revealed, flagged and mine cells according
+ * to how many cells of each kind there are in the block. The part of
+ * the mine-field visible in the grid is outlined.
+ * <br><br>
+ * The image is not recomputed when the mine-field changes. Only the pixels
+ * of the changed cells are updated, so keeping the overview up to date costs
+ * time proportional to the number of changed cells.
+ * <br><br>
+ * Clicking or dragging in the overview scrolls the grid to the clicked location.
+ */
+@SuppressWarnings("serial")
+class MiniMap extends JComponent {
+
+    /** The maximal size of the image in pixels. */
+    private static final int MAX_IMAGE_SIZE = 150;
+    /** The minimal size of the displayed overview, small images are enlarged. */
+    private static final int MIN_DISPLAY_SIZE = 100;
+
+    /* Kinds of cells */
+    private static final int COVERED = 0;
+    private static final int REVEALED = 1;
+    private static final int FLAGGED = 2;
+    private static final int MINE = 3;
+    private static final int KIND_COUNT = 4;
+    private static final Color[] KIND_COLORS = {GameView.DARK_COLOR, GameView.LIGHT_COLOR, Color.red, Color.black};
+    private static final Color VIEWPORT_COLOR = Color.blue;
+    private static final Counter REPAINTS = MetricsRegistry.getInstance().counter("view.miniMapRepaints");
+
+    private final MineFieldGrid grid;
+    private GameInfo gameInfo;
+    private BufferedImage image;
+    private int block;
+    private int scale;
+    private byte[] cellKinds;
+    private int[] kindCounts;
+
+    /**
+     * Constructs an overview of a given grid.
+     * @param grid the mine-field grid
+     */
+    MiniMap(MineFieldGrid grid){
+        this.grid = grid;
+        MouseAdapter listener = new MouseAdapter(){
+
+            @Override
+            public void mousePressed(MouseEvent e) {
+                scrollGrid(e);
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent e) {
+                scrollGrid(e);
+            }
+        };
+        addMouseListener(listener);
+        addMouseMotionListener(listener);
+    }
+
+    /**
+     * Sets the overview to the 'new-game' state according to the new game information.
+     * All the cells are expected to be covered.
+     * @param gameInfo game information
+     */
+    void newGame(GameInfo gameInfo){
+        this.gameInfo = gameInfo;
+        int columns = gameInfo.getColumnCount();
+        int rows = gameInfo.getRowCount();
+
+        block = (Math.max(columns, rows) + MAX_IMAGE_SIZE - 1) / MAX_IMAGE_SIZE;
+        int width = (columns + block - 1) / block;
+        int height = (rows + block - 1) / block;
+        scale = Math.max(1, MIN_DISPLAY_SIZE / Math.max(width, height));
+
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        cellKinds = new byte[columns * rows];
+        kindCounts = new int[width * height * KIND_COUNT];
+
+        //All cells are covered, the blocks on the right and bottom edge might be smaller.
+        for (int py = 0; py < height; py++)
+            for (int px = 0; px < width; px++){
+                int blockWidth = Math.min(block, columns - px * block);
+                int blockHeight = Math.min(block, rows - py * block);
+                kindCounts[(py * width + px) * KIND_COUNT + COVERED] = blockWidth * blockHeight;
+                updatePixel(px, py);
+        	}
+
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Updates the overview for cells with given coordinates.
+     * @param coordinates coordinates of the changed cells
+     */
+    void update(List<Coordinate> coordinates){
+        for (Coordinate c : coordinates)
+            update(c);
+    }
+
+    /**
+     * Updates the overview for a cell with a given coordinate.
+     * @param coordinate coordinate of the changed cell
+     */
+    void update(Coordinate coordinate){
+        int index = coordinate.y * gameInfo.getColumnCount() + coordinate.x;
+        int kind = getKind(gameInfo.getCellInfo(coordinate.x, coordinate.y));
+        int oldKind = cellKinds[index];
+        if (kind == oldKind)
+            return;
+        cellKinds[index] = (byte) kind;
+
+        int px = coordinate.x / block;
+        int py = coordinate.y / block;
+        int countsIndex = (py * image.getWidth() + px) * KIND_COUNT;
+        kindCounts[countsIndex + oldKind]--;
+        kindCounts[countsIndex + kind]++;
+        updatePixel(px, py);
+        repaint(px * scale, py * scale, scale, scale);
+    }
+
+    /**
+     * Repaints the outline of the part of the mine-field visible in the grid.
+     */
+    void visibleAreaChanged(){
+        repaint();
+    }
+
+    /**
+     * Returns the kind of a cell.
+     */
+    private static int getKind(CellInfo cellInfo){
+        if (cellInfo.isRevealed())
+            return cellInfo.hasMine() ? MINE : REVEALED;
+        return cellInfo.hasFlag() ? FLAGGED : COVERED;
+    }
+
+    /**
+     * Sets the colour of a pixel by mixing the colours of the cell kinds in the pixel's block.
+     */
+    private void updatePixel(int px, int py){
+        int countsIndex = (py * image.getWidth() + px) * KIND_COUNT;
+        int total = 0, red = 0, green = 0, blue = 0;
+        for (int kind = 0; kind < KIND_COUNT; kind++){
+            int count = kindCounts[countsIndex + kind];
+            total += count;
+            red += count * KIND_COLORS[kind].getRed();
+            green += count * KIND_COLORS[kind].getGreen();
+            blue += count * KIND_COLORS[kind].getBlue();
+        }
+        image.setRGB(px, py, (red / total) << 16 | (green / total) << 8 | blue / total);
+    }
+
+    /**
+     * Scrolls the grid so that the cells under the mouse are in the centre.
+     */
+    private void scrollGrid(MouseEvent e){
+        if (gameInfo == null)
+            return;
+        int x = (e.getX() * block + block / 2) / scale;
+        int y = (e.getY() * block + block / 2) / scale;
+        grid.centreOnCell(Math.min(Math.max(x, 0), gameInfo.getColumnCount() - 1),
+                Math.min(Math.max(y, 0), gameInfo.getRowCount() - 1));
+    }
+
+    @Override
+    protected void paintComponent(Graphics g){
+        REPAINTS.increment();
+        if (image == null)
+            return;
+        g.drawImage(image, 0, 0, image.getWidth() * scale, image.getHeight() * scale, null);
+
+        Rectangle visible = grid.getVisibleCells();
+        g.setColor(VIEWPORT_COLOR);
+        g.drawRect(visible.x * scale / block, visible.y * scale / block,
+                Math.max(visible.width * scale / block, 1) - 1, Math.max(visible.height * scale / block, 1) - 1);
+    }
+
+    @Override
+    public Dimension getPreferredSize(){
+        if (image == null)
+            return new Dimension(0, 0);
+        return new Dimension(image.getWidth() * scale, image.getHeight() * scale);
+    }
+}
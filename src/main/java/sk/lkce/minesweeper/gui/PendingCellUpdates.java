@@ -0,0 +1,130 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import javax.swing.Timer;
+
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineFieldMirror;
+
+/**
+ * Applies large mine-field updates to the view progressively, a slice per
+ * display frame. One click can reveal millions of cells on a large mine-field;
+ * updating the grid and the overview for all of them at once would freeze
+ * the input for a noticeable time.
+ * <br><br>
+ * The changed cells are applied in the order they were revealed, which is
+ * a wave spreading from the clicked cell, with at most {@link #FRAME_BUDGET_NANOS}
+ * of work per frame. The rest of the frame is left to painting and input handling.
+ * <br><br>
+ * Small changes, such as placing a flag or revealing a single cell, are applied
+ * immediately without waiting for the pending changes, so for example flagging
+ * elsewhere stays responsive while the opening appears. The cells of the pending
+ * changes are already revealed in the mine-field, so no later move changes them
+ * again and the small changes may overtake them.
+ * <br><br>
+ * The grid and the overview display the mine-field mirror the changes are applied to,
+ * so they never show a cell before it has been applied.
+ */
+class PendingCellUpdates {
+
+    /** The time of applying updates in a single frame. */
+    private static final long FRAME_BUDGET_NANOS = 4000000;
+    /** The interval of frames in milliseconds. */
+    private static final int FRAME_INTERVAL = 16;
+    /** The number of cells applied between the checks of the frame budget. */
+    private static final int SLICE_SIZE = 256;
+
+    private final MineFieldGrid grid;
+    private final MiniMap miniMap;
+    private final Deque<CellChanges> queue = new ArrayDeque<>();
+    private final Timer timer;
+    private MineFieldMirror mirror;
+    private int position;
+
+    /**
+     * Constructs the updates for a given grid and overview.
+     * @param grid the mine-field grid
+     * @param miniMap the mine-field overview
+     */
+    PendingCellUpdates(MineFieldGrid grid, MiniMap miniMap){
+        this.grid = grid;
+        this.miniMap = miniMap;
+        timer = new Timer(FRAME_INTERVAL, new ActionListener(){
+
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                applySlices();
+            }
+        });
+    }
+
+    /**
+     * Drops all the pending updates and sets the mirror of the new game.
+     * @param mirror the mine-field mirror of the new game
+     */
+    void newGame(MineFieldMirror mirror){
+        this.mirror = mirror;
+        timer.stop();
+        queue.clear();
+        position = 0;
+    }
+
+    /**
+     * Adds changes to the updates. Changes not larger than a slice are applied immediately,
+     * of larger changes the first slice is applied immediately and the rest in the following frames.
+     * @param changes the changes of the cells
+     */
+    void add(CellChanges changes){
+        if (changes.isEmpty())
+            return;
+        if (changes.size() <= SLICE_SIZE){
+            apply(changes, 0, changes.size());
+            return;
+        }
+        queue.add(changes);
+        applySlices();
+    }
+
+    /**
+     * Applies the pending updates in slices until the frame budget is spent.
+     */
+    private void applySlices(){
+        long deadline = System.nanoTime() + FRAME_BUDGET_NANOS;
+
+        while (!queue.isEmpty() && System.nanoTime() < deadline){
+            CellChanges changes = queue.peek();
+            int end = Math.min(changes.size(), position + SLICE_SIZE);
+            apply(changes, position, end);
+
+            position = end;
+            if (position == changes.size()){
+                queue.remove();
+                position = 0;
+            }
+        }
+
+        if (queue.isEmpty())
+            timer.stop();
+        else if (!timer.isRunning())
+            timer.start();
+    }
+
+    /**
+     * Applies the changes on positions from a given range to the mirror, the grid and the overview.
+     * @param changes the changes to be applied
+     * @param from the position of the first change to be applied, inclusive
+     * @param to the position of the last change to be applied, exclusive
+     */
+    private void apply(CellChanges changes, int from, int to){
+        mirror.apply(changes, from, to);
+        List<Coordinate> slice = changes.subList(from, to);
+        grid.update(slice);
+        miniMap.update(slice);
+    }
+}
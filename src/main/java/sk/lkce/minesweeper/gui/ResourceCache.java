@@ -0,0 +1,75 @@
+package sk.lkce.minesweeper.gui;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A cache of classpath resources. Each resource is read fully into memory
+ * the first time it is requested and all the later requests are served
+ * from the memory, without any file access or jar inflation.
+ * <br><br>
+ * The cache is thread-safe so resources can be loaded in parallel.
+ * 
+ * @see ByteBufferInputStream
+ */
+class ResourceCache {
+
+    private static final int BUFFER_SIZE = 4096;
+    
+    private final Class<?> base;
+    private final ConcurrentMap<String, ByteBuffer> buffers = new ConcurrentHashMap<>();
+    
+    /**
+     * Constructs a resource cache for resources located relative to a given class.
+     * @param base the class relative to which the resource paths are resolved
+     */
+    ResourceCache(Class<?> base){
+        this.base = base;
+    }
+    
+    /**
+     * Opens a new stream over a resource on a given path. The streams are 
+     * independent of each other and support seeking and marking.
+     * @param path the path of the resource relative to the base class
+     * @return a new stream over the cached resource content
+     * @throws IOException if the resource does not exist or could not be read
+     */
+    ByteBufferInputStream openStream(String path) throws IOException{
+        return new ByteBufferInputStream(getBuffer(path).duplicate());
+    }
+    
+    /**
+     * Returns the read-only buffer with the content of a resource. The resource
+     * is read when it is requested for the first time.
+     */
+    private ByteBuffer getBuffer(String path) throws IOException{
+        ByteBuffer buffer = buffers.get(path);
+        if (buffer != null)
+            return buffer;
+    	
+        buffer = ByteBuffer.wrap(read(path)).asReadOnlyBuffer();
+        ByteBuffer previous = buffers.putIfAbsent(path, buffer);
+        return previous != null ? previous : buffer;
+    }
+    
+    /**
+     * Reads the whole content of a resource.
+     */
+    private byte[] read(String path) throws IOException{
+        try (InputStream stream = base.getResourceAsStream(path)) {
+            if (stream == null)
+                throw new IOException("Resource not found: " + path);
+        	
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = stream.read(chunk)) != -1)
+                out.write(chunk, 0, read);
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package sk.lkce.minesweeper.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event of loading an image or a sound resource.
+ */
+@Name("sk.lkce.minesweeper.ResourceLoad")
+@Label("Resource Load")
+@Category({"Minesweeper", "Resources"})
+class ResourceLoadEvent extends jdk.jfr.Event {
+
+    @Label("Resource")
+    String resource;
+
+    @Label("Size")
+    @DataAmount
+    long size;
+}
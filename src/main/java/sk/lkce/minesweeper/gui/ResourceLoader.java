@@ -1,21 +1,28 @@
 package sk.lkce.minesweeper.gui;
 
+import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.net.URL;
+import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
+import sk.lkce.minesweeper.diagnostics.JfrCategory;
+
 /**
  * A resource loader for loading all the game resources (images and sounds) from the files.
  * 
  * It is intended to be singleton. 
  * 
- * Before it can be used , {@link initialize()}
+ * Before it can be used , {@link #initialize(ExecutorService)}
  * needs to be invoked. 
  * 
  * This ensures that all resources are loaded from the file system at the time controlled by the client.
@@ -47,6 +54,7 @@ public class ResourceLoader {
     private Image appImage;
     
     private static ResourceLoader instance;
+    private final ResourceCache cache = new ResourceCache(ResourceLoader.class);
     private boolean initialized;
 
     /**
@@ -106,11 +114,13 @@ public class ResourceLoader {
     
     
    /**
-    * Returns an URL of a given sound resource. 
-    * @param sound the sound resource which URL should be retrieved
-    * @return the URL of the sound resource
+    * Opens a stream over a given sound resource. The content of the resource
+    * is read only once and all the streams are served from the memory.
+    * @param sound the sound resource which should be opened
+    * @return a new stream over the sound resource
+    * @throws IOException if the sound resource could not be read
     */
-    public URL getSoundResourceUrl(SoundResource sound){
+    public InputStream openSoundResource(SoundResource sound) throws IOException{
 
         String path;
         if (sound == SoundResource.EXPLOSION)
@@ -122,7 +132,7 @@ public class ResourceLoader {
         else
             throw new AssertionError();
         	
-        return getClass().getResource(path);
+        return cache.openStream(path);
     }
     
     
@@ -138,27 +148,42 @@ public class ResourceLoader {
      * Initialises the resource manager.
      * Loads all the resources. This method must be invoked before any
      * resource retrieval method is called.
+     * The images are loaded in parallel on the given executor and the method
+     * returns as soon as the last of them is loaded. The time of initialisation
+     * is therefore given by the slowest single image rather than by the sum of all.
+     * @param executor executor on which the images are loaded
      * @throws ResourceLoadingException when there was a problem during loading a resource
      */
-    public void initialize() throws ResourceLoadingException {
+    public void initialize(ExecutorService executor) throws ResourceLoadingException {
+    	
+        Future<Image[]> minefieldNumbersTask = submitImagesLoad(executor, PATH_MINEFIELD_NUMBERS, MINEFIELD_NUMBER_IMG_WIDTH, 8);
+        Future<Image> flagTask = submitImgLoad(executor, PATH_FLAG);
+        Future<Image> questionMarkTask = submitImgLoad(executor, PATH_QUESTION_MARK);
+        Future<Image[]> minesTask = submitImagesLoad(executor, PATH_MINES, MINE_IMG_WIDTH, 2);
+        Future<Image[]> displayNumbersTask = submitImagesLoad(executor, PATH_DISPLAY_NUMBERS, DISPLAY_NUMBER_IMG_WIDTH, 11);
+        Future<Image[]> facesTask = submitImagesLoad(executor, PATH_FACES, FACE_IMG_WIDTH, 4);
+        Future<Image> appImageTask = submitImgLoad(executor, PATH_APP_ICON);
     	
         try {
-            minefieldNumbers = loadImagesFromFile(PATH_MINEFIELD_NUMBERS, MINEFIELD_NUMBER_IMG_WIDTH,8);
-            imgFlag = loadImg(PATH_FLAG);
-            imgQuestionMark = loadImg(PATH_QUESTION_MARK);
+            minefieldNumbers = minefieldNumbersTask.get();
+            imgFlag = flagTask.get();
+            imgQuestionMark = questionMarkTask.get();
         	
-            Image[] mines = loadImagesFromFile(PATH_MINES, MINE_IMG_WIDTH, 2);
+            Image[] mines = minesTask.get();
             imgMine = mines[0];
             imgCrossedMine = mines[1];
         	
-            displayNumbers = loadImagesFromFile(PATH_DISPLAY_NUMBERS, DISPLAY_NUMBER_IMG_WIDTH, 11);
-            faces = loadImagesFromFile(PATH_FACES, FACE_IMG_WIDTH, 4);
+            displayNumbers = displayNumbersTask.get();
+            faces = facesTask.get();
         	
-            appImage = loadImg(PATH_APP_ICON);
+            appImage = appImageTask.get();
         	
-        } catch (URISyntaxException | IOException e) {
+        } catch (ExecutionException e) {
             e.printStackTrace();
-            throw new ResourceLoadingException("Icons could not be loaded", e);
+            throw new ResourceLoadingException("Icons could not be loaded", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResourceLoadingException("Loading of icons was interrupted", e);
         }
     	
         initialized = true;
@@ -176,16 +201,7 @@ public class ResourceLoader {
     public Icon[] createIconSet(ImageSetResource type, int width){
         checkIfInitialized();
     	
-        Image[] images;
-    	
-        if (type == ImageSetResource.DISPLAY_NUMBERS)
-            images = displayNumbers;
-        else if (type == ImageSetResource.FACES)
-            images = faces;
-        else if (type == ImageSetResource.MINEFIELD_NUMBERS)
-            images = minefieldNumbers;
-        else
-            throw new AssertionError("No images defined for " + type);
+        Image[] images = getImageSet(type);
     	
         Icon[] icons = new Icon[images.length]; 
         //Calculate scale factor based on the original and given width ratio. 
@@ -199,6 +215,33 @@ public class ResourceLoader {
     }
     
 
+    /**
+     * Creates an image strip from an image set resource. The strip contains all the images of
+     * the set scaled to the given width and placed next to each other, the image <code>n</code>
+     * starting at the X coordinate <code>n * width</code>. Unlike the icons the strip is
+     * fully scaled when returned, so it can be used for custom painting of the images.
+     * 
+     * @param type the type of the image set resource
+     * @param width the width of one image in the strip
+     * @return the newly created image strip
+     */
+    public BufferedImage createImageStrip(ImageSetResource type, int width){
+        checkIfInitialized();
+    	
+        Image[] images = getImageSet(type);
+        float  scaleFactor = ((float) width )/ type.width; 
+        int height = Math.round(scaleFactor * images[0].getHeight(null));
+    	
+        BufferedImage strip = new BufferedImage(width * images.length, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = strip.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+        for (int i = 0; i < images.length; i++)
+            g.drawImage(images[i], i * width, 0, width, height, null);
+        g.dispose();
+    	
+        return strip;
+    }
+
     /**
      * Creates and returns an icon from a given image resource with the given width.
      * @param type the type of the image resource
@@ -227,6 +270,20 @@ public class ResourceLoader {
     }
     
 
+    /**
+     * Returns the images of a given image set resource.
+     */
+    private Image[] getImageSet(ImageSetResource type){
+        if (type == ImageSetResource.DISPLAY_NUMBERS)
+            return displayNumbers;
+        else if (type == ImageSetResource.FACES)
+            return faces;
+        else if (type == ImageSetResource.MINEFIELD_NUMBERS)
+            return minefieldNumbers;
+        else
+            throw new AssertionError("No images defined for " + type);
+    }
+
     /**
      * Creates a new image icon from an image which is before scaled
      * according to the specified scale factor.
@@ -269,12 +326,10 @@ public class ResourceLoader {
      * @param width the width of the sub-images
      * @param count the number of sub-image to be made
      * @return
-     * @throws URISyntaxException
      * @throws IOException
      */
-    private Image[] loadImagesFromFile(String imgPath, int width, int count) throws URISyntaxException, IOException{
-        URL url = getClass().getResource(imgPath);
-        BufferedImage img = ImageIO.read(url);
+    private Image[] loadImagesFromFile(String imgPath, int width, int count) throws IOException{
+        BufferedImage img = readImage(imgPath);
     	
         Image[] result = new BufferedImage[count];
     	
@@ -290,12 +345,59 @@ public class ResourceLoader {
     
     /**
      * Loads the image from the resource file on the specified path.
-     * @throws URISyntaxException
      * @throws IOException
      */
-    private Image loadImg(String path) throws URISyntaxException, IOException{
-        URL url = getClass().getResource(path);
-        return ImageIO.read(url);
+    private Image loadImg(String path) throws IOException{
+        return readImage(path);
+    }
+    
+    /**
+     * Reads and decodes the image on the specified path. The loading is reported
+     * as a flight recorder event, see {@link ResourceLoadEvent}.
+     * @throws IOException
+     */
+    private BufferedImage readImage(String path) throws IOException{
+        ResourceLoadEvent event = new ResourceLoadEvent();
+        event.begin();
+        
+        ByteBufferInputStream stream = cache.openStream(path);
+        long size = stream.available();
+        BufferedImage img = ImageIO.read(stream);
+        
+        if (JfrCategory.RESOURCES.isEnabled() && event.shouldCommit()){
+            event.resource = path;
+            event.size = size;
+            event.commit();
+        }
+        return img;
+    }
+    
+    /**
+     * Submits the loading of an image array (see {@link #loadImagesFromFile(String, int, int)})
+     * to a given executor.
+     */
+    private Future<Image[]> submitImagesLoad(ExecutorService executor, final String imgPath, 
+            final int width, final int count){
+        return executor.submit(new Callable<Image[]>(){
+
+            @Override
+            public Image[] call() throws Exception {
+                return loadImagesFromFile(imgPath, width, count);
+            }
+        });
+    }
+    
+    /**
+     * Submits the loading of an image (see {@link #loadImg(String)}) to a given executor.
+     */
+    private Future<Image> submitImgLoad(ExecutorService executor, final String path){
+        return executor.submit(new Callable<Image>(){
+
+            @Override
+            public Image call() throws Exception {
+                return loadImg(path);
+            }
+        });
     }
     
 }
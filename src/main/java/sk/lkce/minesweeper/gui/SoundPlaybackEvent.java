@@ -0,0 +1,23 @@
+package sk.lkce.minesweeper.gui;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event of starting the playback of a sound on the audio thread.
+ * The duration of the event is the time of restarting the clip.
+ */
+@Name("sk.lkce.minesweeper.SoundPlayback")
+@Label("Sound Playback")
+@Category({"Minesweeper", "Audio"})
+class SoundPlaybackEvent extends jdk.jfr.Event {
+
+    @Label("Sound")
+    String sound;
+
+    @Label("Queue Delay")
+    @Timespan(Timespan.NANOSECONDS)
+    long queueDelay;
+}
@@ -1,125 +1,191 @@
 package sk.lkce.minesweeper.gui;
 
-import java.io.IOException;
-import java.net.URL;
-
-import javax.media.Manager;
-import javax.media.NoPlayerException;
-import javax.media.Player;
-import javax.media.Time;
-
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import sk.lkce.minesweeper.diagnostics.JfrCategory;
 import sk.lkce.minesweeper.gui.ResourceLoader.SoundResource;
 
 /**
  * A sound player for the application. Provides
  * only interface for playing sounds. Before the normal usage
- * the {@link #initialize()} must be invoked to lead the
+ * the {@link #initialize(ExecutorService)} must be invoked to load the
  * sound resources.
+ * <br><br>
+ * The sounds are loaded in the background and each of them becomes
+ * playable as soon as it is loaded. A request to play a sound which
+ * has not been loaded yet is ignored.
+ * <br><br>
+ * The sounds are decoded only once and played through pre-opened clips
+ * on a dedicated audio thread. The play methods therefore return immediately
+ * and do not block the calling (usually event dispatch) thread.
+ * The clips are released by {@link #close()}.
  */
 public class SoundPlayer {
 
-    private Player explosionPlayer, tickPlayer, winPlayer;
-    private URL urlExplosion, urlTick, urlWin;
-    private boolean isInitialized;
+    /** The number of clips per sound, i.e. how many times a sound can overlap with itself. */
+    private static final int CLIPS_PER_SOUND = 2;
+    
+    private volatile ClipPool explosionClips, tickClips, winClips;
+    private final ExecutorService audioExecutor;
 
     /*
      * Constructs a new sound player.
      */
     public SoundPlayer() {
-        urlExplosion = ResourceLoader.getInstance().getSoundResourceUrl(
-                SoundResource.EXPLOSION);
-        urlTick = ResourceLoader.getInstance().getSoundResourceUrl(
-                SoundResource.TICK);
-        urlWin = ResourceLoader.getInstance().getSoundResourceUrl(
-                SoundResource.WIN);
-
+        audioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "audio");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
 
     /**
      * Initialises this sound player with the necessary resources.
-     * This method should be called only once. All the other methods
-     * which play sounds can be called only afterwards.
-     * 
-     * @throws ResourceLoadingException  if a problem occurs when loading
-     * the sound resources
+     * This method should be called only once. Each of the sounds is loaded
+     * in parallel on the given executor and the method returns immediately.
+     * A sound which fails to load stays silent.
      * 
+     * @param executor executor on which the sounds are loaded
      */
-    public void initialize() throws ResourceLoadingException {
-        try {
-
-            JarDataSource jdsExplosion = new JarDataSource(urlExplosion);
-            jdsExplosion.connect();
-            JarDataSource jdsTick = new JarDataSource(urlTick);
-            jdsTick.connect();
-            JarDataSource jdsWin = new JarDataSource(urlWin);
-            jdsWin.connect();
-
-            explosionPlayer = Manager.createPlayer(jdsExplosion);
-            explosionPlayer.realize();
-            tickPlayer = Manager.createPlayer(jdsTick);
-            tickPlayer.realize();
-            winPlayer = Manager.createPlayer(jdsWin);
-            winPlayer.realize();
-
-        } catch (NoPlayerException e) {
-            throw new ResourceLoadingException(
-                    "Could not initialize the sound player", e);
-        } catch (IOException e) {
-            throw new ResourceLoadingException(
-                    "Could not initialize the sound player", e);
-        }catch(Exception e){
-            throw new ResourceLoadingException(
-                    "Could not initialize the sound player", e);
-        }
-
-        isInitialized = true;
+    public void initialize(ExecutorService executor) {
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                explosionClips = createClipPool(SoundResource.EXPLOSION);
+            }
+        });
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                tickClips = createClipPool(SoundResource.TICK);
+            }
+        });
+        executor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                winClips = createClipPool(SoundResource.WIN);
+            }
+        });
     }
 
     /**
-     * Ensures that this sound player is initialised. If this is not the 
-     * case an exception is thrown.
-     * @throws IllegalStateException if the sound player has not been initialised
+     * Decodes a given sound and creates a clip pool for it.
+     * Returns <code>null</code> if the sound could not be loaded or there
+     * is no audio device available.
      */
-    private void ensureInitialized() {
-        if (!isInitialized)
-            throw new IllegalStateException("The player is not initialized");
+    private ClipPool createClipPool(SoundResource sound) {
+        ResourceLoadEvent event = new ResourceLoadEvent();
+        event.begin();
+        try (InputStream stream = ResourceLoader.getInstance()
+                .openSoundResource(sound)) {
+            long size = stream.available();
+            ClipPool clips = new ClipPool(stream, CLIPS_PER_SOUND);
+            if (JfrCategory.RESOURCES.isEnabled() && event.shouldCommit()) {
+                event.resource = sound.name();
+                event.size = size;
+                event.commit();
+            }
+            return clips;
+        } catch (Exception e) {
+            new ResourceLoadingException("Could not initialize the sound "
+                    + sound, e).printStackTrace();
+            return null;
+        }
     }
 
     /**
-     * Determines if this sound player has been initialised.
+     * Determines if this sound player has been initialised, meaning
+     * all its sounds are loaded.
      * @return <code>true</code> if the sound player is initialised
      */
     public boolean isInitialized() {
-        return isInitialized;
+        return explosionClips != null && tickClips != null
+                && winClips != null;
     }
 
     /**
      * Plays the mine explosion sound.
-     * @throws IllegalStateException if the sound player has not been initialised
      */
     public void playExplosionSound() {
-        ensureInitialized();
-        explosionPlayer.setMediaTime(new Time(0));
-        explosionPlayer.start();
+        play(explosionClips, SoundResource.EXPLOSION);
     }
 
     /**
      * Plays the clock tick sound. 
-     * @throws IllegalStateException if the sound player has not been initialised
      */
     public void playTickSound() {
-        ensureInitialized();
-        tickPlayer.setMediaTime(new Time(0));
-        tickPlayer.start();
+        play(tickClips, SoundResource.TICK);
     }
 
     /**
      * Plays the 'game won' sound. 
-     * @throws IllegalStateException if the sound player has not been initialised
      */
     public void playWinSound() {
-        ensureInitialized();
-        winPlayer.setMediaTime(new Time(0));
-        winPlayer.start();
+        play(winClips, SoundResource.WIN);
+    }
+
+    /**
+     * Releases the clips of the sounds and stops the audio thread, waiting for the sounds
+     * already requested. Sounds requested after closing are ignored.
+     */
+    public void close() {
+        if (audioExecutor.isShutdown())
+            return;
+        audioExecutor.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                for (ClipPool clips : new ClipPool[] {explosionClips, tickClips, winClips})
+                    if (clips != null)
+                        clips.close();
+            }
+        });
+        audioExecutor.shutdown();
+        try {
+            audioExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands a sound over to the audio thread, unless it has not been loaded yet.
+     * The playback is reported as a flight recorder event, see {@link SoundPlaybackEvent}.
+     */
+    private void play(final ClipPool clips, final SoundResource sound) {
+        if (clips == null)
+            return;
+        final long requestedAt = System.nanoTime();
+        try {
+            audioExecutor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    long queueDelay = System.nanoTime() - requestedAt;
+                    SoundPlaybackEvent event = new SoundPlaybackEvent();
+                    event.begin();
+                    clips.play();
+                    if (JfrCategory.AUDIO.isEnabled() && event.shouldCommit()) {
+                        event.sound = sound.name();
+                        event.queueDelay = queueDelay;
+                        event.commit();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //Closed, the sound is dropped.
+        }
     }
 }
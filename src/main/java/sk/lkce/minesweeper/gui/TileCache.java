@@ -0,0 +1,226 @@
+package sk.lkce.minesweeper.gui;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.model.GameInfo;
+
+/**
+ * A cache of pre-rendered mine-field tiles used by {@link MineFieldGrid}.
+ * A tile is a square block of cells rendered into an image at the current
+ * zoom level. Painting the grid is then only a matter of drawing the tile
+ * images which intersect the painted area.
+ * <br><br>
+ * A tile is rendered when it is painted for the first time and re-rendered
+ * only after a cell inside it has changed, see {@link #invalidate(int, int)}.
+ * The number of cached tiles is limited to the tiles of the visible area plus
+ * a ring of tiles around it, see {@link #setViewSize(int, int)}, so scrolling
+ * by less than a tile never renders a tile again. The least recently painted
+ * tiles are dropped first.
+ * <br><br>
+ * The number of cells in a tile is a power of two between {@link #MIN_TILE_CELLS}
+ * and {@link #MAX_TILE_CELLS} chosen so that the tile image is about
+ * {@link #TILE_SIZE} pixels wide at the current zoom.
+ */
+class TileCache {
+
+    private static final int TILE_SIZE = 512;
+    private static final int MIN_TILE_CELLS = 8;
+    private static final int MAX_TILE_CELLS = 64;
+    /** The number of the tiles cached before the size of the visible area is known. */
+    private static final int DEFAULT_MAX_TILES = 64;
+    /** The number of the tile columns and rows around the visible area which are kept cached. */
+    private static final int SPARE_TILES = 1;
+    private static final Counter RENDERED_TILES = MetricsRegistry.getInstance().counter("view.tilesRendered");
+
+    private final Map<Long, BufferedImage> tiles;
+    private final BitSet dirtyTiles = new BitSet();
+    private int maxTiles = DEFAULT_MAX_TILES;
+    private int viewWidth, viewHeight;
+    private GameInfo gameInfo;
+    private double zoom;
+    private double cellSize;
+    private int tileCells;
+    private int tileColumns, tileRows;
+
+    /**
+     * Constructs a tile cache.
+     */
+    @SuppressWarnings("serial")
+    TileCache(){
+        tiles = new LinkedHashMap<Long, BufferedImage>(DEFAULT_MAX_TILES, 0.75f, true){
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BufferedImage> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    /**
+     * Sets the size of the visible area, which determines the number of tiles kept in the cache.
+     * @param width the width of the visible area in pixels
+     * @param height the height of the visible area in pixels
+     */
+    void setViewSize(int width, int height){
+        if (width == viewWidth && height == viewHeight)
+            return;
+        viewWidth = width;
+        viewHeight = height;
+        updateMaxTiles();
+    }
+
+    /**
+     * Sets the number of cached tiles to the tiles which a visible area of the current size may
+     * intersect, plus the spare tiles around it, and drops the tiles above the number.
+     */
+    private void updateMaxTiles(){
+        if (tileCells == 0 || viewWidth <= 0 || viewHeight <= 0)
+            return;
+        double tileSize = tileCells * cellSize;
+        //An unaligned area intersects one more tile than it covers.
+        long columns = (long) Math.ceil(viewWidth / tileSize) + 1 + 2 * SPARE_TILES;
+        long rows = (long) Math.ceil(viewHeight / tileSize) + 1 + 2 * SPARE_TILES;
+        maxTiles = (int) Math.min(Integer.MAX_VALUE, Math.max(DEFAULT_MAX_TILES, columns * rows));
+
+        Iterator<Long> eldest = tiles.keySet().iterator();
+        while (tiles.size() > maxTiles){
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Drops all the tiles and sets the cache up for a given mine-field and zoom level.
+     * @param gameInfo information about the mine-field
+     * @param zoom the zoom level the tiles are rendered at
+     */
+    void reset(GameInfo gameInfo, double zoom){
+        this.gameInfo = gameInfo;
+        this.zoom = zoom;
+        cellSize = CellView.WIDTH * zoom;
+
+        tileCells = MIN_TILE_CELLS;
+        while (tileCells < MAX_TILE_CELLS && tileCells * 2 * cellSize <= TILE_SIZE)
+            tileCells *= 2;
+        tileColumns = (gameInfo.getColumnCount() + tileCells - 1) / tileCells;
+        tileRows = (gameInfo.getRowCount() + tileCells - 1) / tileCells;
+
+        tiles.clear();
+        dirtyTiles.clear();
+        updateMaxTiles();
+    }
+
+    /**
+     * Marks the tile containing a cell with given column and row indexes
+     * for re-rendering.
+     * @param x column index of the cell
+     * @param y row index of the cell
+     */
+    void invalidate(int x, int y){
+        dirtyTiles.set((y / tileCells) * tileColumns + x / tileCells);
+    }
+
+    /**
+     * Paints the tiles intersecting a given area.
+     * @param g graphics to paint to, with the origin at the top left corner of the first cell
+     * @param clip the area to be painted
+     */
+    void paint(Graphics g, Rectangle clip){
+        if (gameInfo == null)
+            return;
+
+        double tileSize = tileCells * cellSize;
+        int firstColumn = Math.max(0, (int) Math.floor(clip.x / tileSize));
+        int firstRow = Math.max(0, (int) Math.floor(clip.y / tileSize));
+        int lastColumn = Math.min(tileColumns - 1, (int) Math.floor((clip.x + clip.width - 1) / tileSize));
+        int lastRow = Math.min(tileRows - 1, (int) Math.floor((clip.y + clip.height - 1) / tileSize));
+
+        for (int row = firstRow; row <= lastRow; row++)
+            for (int column = firstColumn; column <= lastColumn; column++){
+                g.drawImage(getTile(column, row), tileOrigin(column), tileOrigin(row), null);
+        	}
+    }
+
+    /**
+     * Returns the tile for given tile column and row, rendering it if it is not
+     * cached or if it has been invalidated.
+     */
+    private BufferedImage getTile(int column, int row){
+        Long key = key(column, row);
+        int index = row * tileColumns + column;
+        BufferedImage tile = tiles.get(key);
+        if (tile == null){
+            tile = createImage(column, row);
+            tiles.put(key, tile);
+        }else if (!dirtyTiles.get(index))
+            return tile;
+
+        render(tile, column, row);
+        dirtyTiles.clear(index);
+        return tile;
+    }
+
+    /**
+     * Creates the image for a tile with given tile column and row. The tiles
+     * on the right and bottom edge of the mine-field might be smaller.
+     */
+    private BufferedImage createImage(int column, int row){
+        int width = tileEnd(column, gameInfo.getColumnCount()) - tileOrigin(column);
+        int height = tileEnd(row, gameInfo.getRowCount()) - tileOrigin(row);
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    }
+
+    /**
+     * Renders all the cells of a tile into its image.
+     */
+    private void render(BufferedImage tile, int column, int row){
+        RENDERED_TILES.increment();
+        Graphics2D g = tile.createGraphics();
+        g.translate(-tileOrigin(column), -tileOrigin(row));
+        if (zoom != 1){
+            g.scale(zoom, zoom);
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+
+        int lastX = Math.min(gameInfo.getColumnCount(), (column + 1) * tileCells);
+        int lastY = Math.min(gameInfo.getRowCount(), (row + 1) * tileCells);
+        for (int y = row * tileCells; y < lastY; y++)
+            for (int x = column * tileCells; x < lastX; x++)
+                CellView.paint(g, gameInfo.getCellInfo(x, y), false, x * CellView.WIDTH, y * CellView.HEIGHT);
+
+        g.dispose();
+    }
+
+    /**
+     * Returns the pixel position of the first pixel of a tile in a given tile column or row.
+     */
+    private int tileOrigin(int tileIndex){
+        return (int) Math.floor(tileIndex * tileCells * cellSize);
+    }
+
+    /**
+     * Returns the pixel position after the last pixel of a tile in a given tile column or row.
+     */
+    private int tileEnd(int tileIndex, int cellCount){
+        int nextOrigin = tileOrigin(tileIndex + 1);
+        int fieldEnd = (int) Math.ceil(cellCount * cellSize);
+        return Math.min(nextOrigin, fieldEnd);
+    }
+
+    /**
+     * Returns the cache key for given tile column and row.
+     */
+    private static Long key(int column, int row){
+        return ((long) row << 32) | column;
+    }
+}
@@ -0,0 +1,354 @@
+package sk.lkce.minesweeper.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.Gauge;
+import sk.lkce.minesweeper.metrics.Meter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.server.GameServer;
+import sk.lkce.minesweeper.timer.HashedWheelTimer;
+import sk.lkce.minesweeper.timer.Timeout;
+import sk.lkce.minesweeper.timer.TimeoutTask;
+
+/**
+ * A JSON API for scripts and bots, served by the HTTP server of the JDK. All the
+ * parameters are passed in the query string:
+ * <ul>
+ *  <li><code>POST /games?columns=&amp;rows=&amp;mines=[&amp;seed=]</code> - starts a new game;
+ *  a game with a seed puts its mines the same way for the same first revealed cell</li>
+ *  <li><code>GET /games/{id}[?format=packed|rle]</code> - the state of the game, see {@link HttpGame}</li>
+ *  <li><code>POST /games/{id}/reveal?x=&amp;y=</code> - reveals a cell</li>
+ *  <li><code>POST /games/{id}/flag?x=&amp;y=</code> - sets or removes the flag of a cell</li>
+ *  <li><code>POST /games/{id}/chord?x=&amp;y=</code> - reveals the neighbours of a revealed cell</li>
+ *  <li><code>DELETE /games/{id}</code> - ends the game</li>
+ * </ul>
+ * A move answers with the status of the game and the changed cells. An invalid request
+ * is answered with <code>400</code>, a move in a game which is over with <code>409</code>,
+ * both with an <code>error</code> message.
+ * <br><br>
+ * The requests are handled by a pool of one thread per processor; the moves are
+ * cheap, so the pool serves thousands of requests per second. Games without a move
+ * for the idle timeout of the {@link GameServer} are dropped.
+ */
+public class HttpApi {
+
+    /** The command line argument starting the API. */
+    public static final String ARGUMENT = "--http";
+    /** The default port of the API. */
+    public static final int DEFAULT_PORT = 7880;
+    private static final String CONTEXT = "/games";
+    private static final String JSON_TYPE = "application/json; charset=utf-8";
+    /** The property of the JDK HTTP server switching off the Nagle's algorithm. */
+    private static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private static final Meter REQUESTS = MetricsRegistry.getInstance().meter("http.requests");
+    private static final Counter ERRORS = MetricsRegistry.getInstance().counter("http.errors");
+
+    private final int port;
+    private final ConcurrentMap<Long, HttpGame> games = new ConcurrentHashMap<>();
+    private final AtomicLong gameIds = new AtomicLong();
+    private final long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(
+            Long.getLong(GameServer.IDLE_TIMEOUT_PROPERTY, GameServer.DEFAULT_IDLE_TIMEOUT_SECONDS));
+    private ThreadPoolExecutor executor;
+    private HttpServer server;
+
+    /**
+     * Constructs the API.
+     * @param port the port to listen on
+     */
+    public HttpApi(int port){
+        this.port = port;
+        MetricsRegistry.getInstance().gauge("http.games", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return games.size();
+            }
+        });
+    }
+
+    /**
+     * Starts listening.
+     * @throws IOException if the port could not be bound
+     */
+    public void start() throws IOException{
+        int threads = Runtime.getRuntime().availableProcessors();
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "http-worker-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        //The headers and the body of a response are written separately; with the Nagle's
+        //algorithm on, the body waits for the delayed acknowledgement of the headers.
+        if (System.getProperty(NODELAY_PROPERTY) == null)
+            System.setProperty(NODELAY_PROPERTY, "true");
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext(CONTEXT, new HttpHandler(){
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                HttpApi.this.handle(exchange);
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops the API. The idle checks of the games are cancelled, so the timer does not
+     * hand them over to the stopped pool.
+     */
+    public void stop(){
+        server.stop(0);
+        for (HttpGame game : games.values())
+            game.cancelIdleTimeout();
+        games.clear();
+        executor.shutdown();
+    }
+
+    /**
+     * Returns the port the API listens on.
+     * @return the port
+     */
+    public int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Handles a request and sends the response.
+     */
+    private void handle(HttpExchange exchange) throws IOException{
+        REQUESTS.mark();
+        try {
+            String subPath = exchange.getRequestURI().getPath().substring(CONTEXT.length());
+            if (!subPath.isEmpty() && !subPath.startsWith("/")){
+                sendError(exchange, 404, "Not found: " + exchange.getRequestURI().getPath());
+                return;
+            }
+            String[] path = subPath.split("/");
+            Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+            String method = exchange.getRequestMethod();
+
+            if (path.length <= 1){
+                if (!method.equals("POST")){
+                    sendError(exchange, 405, "Method not allowed: " + method);
+                    return;
+                }
+                send(exchange, 201, newGame(parameters));
+                return;
+            }
+
+            HttpGame game = games.get(parseId(path[1]));
+            if (game == null){
+                sendError(exchange, 404, "No such game: " + path[1]);
+                return;
+            }
+
+            if (path.length == 2 && method.equals("GET")){
+                send(exchange, 200, game.toJson("rle".equals(parameters.get("format"))));
+            } else if (path.length == 2 && method.equals("DELETE")){
+                games.remove(game.getId());
+                game.cancelIdleTimeout();
+                send(exchange, 204, null);
+            } else if (path.length == 3 && method.equals("POST")){
+                send(exchange, 200, move(game, path[2], getInt(parameters, "x"), getInt(parameters, "y")));
+            } else {
+                sendError(exchange, 405, "Method not allowed: " + method);
+            }
+        } catch (IllegalArgumentException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (IllegalStateException e) {
+            sendError(exchange, 409, e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Starts a new game.
+     */
+    private String newGame(Map<String, String> parameters){
+        int columns = getInt(parameters, "columns");
+        int rows = getInt(parameters, "rows");
+        int mines = getInt(parameters, "mines");
+        GameServer.checkBoard(columns, rows, mines);
+        String seed = parameters.get("seed");
+        Random random = seed != null ? new Random(parseLong(seed, "seed")) : new Random();
+
+        HttpGame game = new HttpGame(gameIds.incrementAndGet(), columns, rows, mines, random);
+        games.put(game.getId(), game);
+        scheduleIdleCheck(game, idleTimeoutNanos);
+        return "{\"id\":" + game.getId() + ",\"columns\":" + columns + ",\"rows\":" + rows
+                + ",\"mines\":" + mines + "}";
+    }
+
+    /**
+     * Runs a move in a game.
+     */
+    private static String move(HttpGame game, String move, int x, int y){
+        switch (move){
+        case "reveal":
+            return game.reveal(x, y);
+        case "flag":
+            return game.toggleFlag(x, y);
+        case "chord":
+            return game.chord(x, y);
+        default:
+            throw new IllegalArgumentException("Unknown move: " + move);
+        }
+    }
+
+    /**
+     * Schedules the check whether a game has been idle for the idle timeout. The timeout is
+     * re-scheduled for the rest of the idle timeout if there were moves in the meantime.
+     */
+    private void scheduleIdleCheck(final HttpGame game, long delayNanos){
+        game.setIdleTimeout(HashedWheelTimer.getInstance().schedule(new TimeoutTask(){
+
+            @Override
+            public void run(Timeout timeout) {
+                long remaining = idleTimeoutNanos - game.getIdleNanos();
+                if (remaining > 0 && games.get(game.getId()) == game)
+                    scheduleIdleCheck(game, remaining);
+                else
+                    games.remove(game.getId(), game);
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS, executor));
+    }
+
+    /**
+     * Sends a JSON response, or a response without a body if the JSON is <code>null</code>.
+     */
+    private static void send(HttpExchange exchange, int status, String json) throws IOException{
+        if (json == null){
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", JSON_TYPE);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()){
+            out.write(body);
+        }
+    }
+
+    /**
+     * Sends an error response with a message.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException{
+        ERRORS.increment();
+        send(exchange, status, "{\"error\":" + quote(message) + "}");
+    }
+
+    /**
+     * Parses a query string of parameters without escaped characters.
+     */
+    private static Map<String, String> parseQuery(String query){
+        Map<String, String> parameters = new HashMap<>();
+        if (query == null)
+            return parameters;
+        for (String parameter : query.split("&")){
+            int separator = parameter.indexOf('=');
+            if (separator > 0)
+                parameters.put(parameter.substring(0, separator), parameter.substring(separator + 1));
+        }
+        return parameters;
+    }
+
+    /**
+     * Returns a required integer parameter.
+     * @throws IllegalArgumentException if the parameter is missing or not an integer
+     */
+    private static int getInt(Map<String, String> parameters, String name){
+        String value = parameters.get(name);
+        if (value == null)
+            throw new IllegalArgumentException("Missing parameter: " + name);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid parameter " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Parses the id of a game.
+     */
+    private static long parseId(String id){
+        return parseLong(id, "game id");
+    }
+
+    /**
+     * Parses a long value.
+     * @throws IllegalArgumentException if the value is not a long
+     */
+    private static long parseLong(String value, String name){
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    /**
+     * Quotes a string as a JSON string.
+     */
+    private static String quote(String text){
+        if (text == null)
+            return "null";
+        StringBuilder sb = new StringBuilder(text.length() + 2).append('"');
+        for (int i = 0; i < text.length(); i++){
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04x", (int) c));
+            else
+                sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * Runs the API until the process is killed. The only optional argument is the port.
+     * @param args the command line arguments following {@link #ARGUMENT}
+     */
+    public static void main(String[] args){
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            HttpApi api = new HttpApi(port);
+            api.start();
+            MetricsRegistry.getInstance().registerMBean();
+            System.out.println("HTTP API listening on port " + api.getPort());
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: " + ARGUMENT + " [port]");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
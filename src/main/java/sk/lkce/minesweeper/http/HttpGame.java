@@ -0,0 +1,225 @@
+package sk.lkce.minesweeper.http;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Random;
+
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+import sk.lkce.minesweeper.timer.Timeout;
+
+/**
+ * A game played over the {@link HttpApi}. Wraps a {@link MineField} and renders
+ * the results of the moves and the state of the board as JSON. The cells are never
+ * rendered as JSON objects; the board is either a base64 string of the visible cell
+ * states, one byte per cell row by row, or run-length encoded rows, see
+ * {@link CellChanges#getVisibleState(int)} for the state bits.
+ * <br><br>
+ * The requests of a game may be handled by several threads at once, so all
+ * the methods are synchronized.
+ */
+class HttpGame {
+
+    /** The size of an encoded changed cell: <code>int index, byte state</code>. */
+    private static final int CHANGE_LENGTH = 5;
+
+    private final long id;
+    private final int mines;
+    private final MineField field;
+    private final Random random;
+    private int hitIndex = -1;
+    private long lastMoveTime = System.nanoTime();
+    private Timeout idleTimeout;
+    private boolean deleted;
+
+    /**
+     * Constructs a game.
+     * @param id the id of the game
+     * @param columns the number of columns of the mine-field
+     * @param rows the number of rows of the mine-field
+     * @param mines the number of mines
+     * @param random the random number generator putting the mines
+     */
+    HttpGame(long id, int columns, int rows, int mines, Random random){
+        this.id = id;
+        this.mines = mines;
+        this.field = new MineField(columns, rows, mines);
+        this.random = random;
+    }
+
+    long getId(){
+        return id;
+    }
+
+    /**
+     * Sets the pending check of the idle timeout of the game. The check is cancelled
+     * at once if the game has been deleted.
+     * @param idleTimeout the check
+     */
+    synchronized void setIdleTimeout(Timeout idleTimeout){
+        this.idleTimeout = idleTimeout;
+        if (deleted)
+            idleTimeout.cancel();
+    }
+
+    /**
+     * Cancels the check of the idle timeout of a deleted game, so that the timer
+     * does not keep the mine-field until the timeout.
+     */
+    synchronized void cancelIdleTimeout(){
+        deleted = true;
+        if (idleTimeout != null)
+            idleTimeout.cancel();
+    }
+
+    /**
+     * Returns the time since the last move, or since the start of the game.
+     * @return the idle time in nanoseconds
+     */
+    synchronized long getIdleNanos(){
+        return System.nanoTime() - lastMoveTime;
+    }
+
+    /**
+     * Reveals a cell. The mines are put on the first reveal, so the first revealed cell never has a mine.
+     * @param x the column of the cell
+     * @param y the row of the cell
+     * @return the JSON of the changed cells
+     * @throws IllegalStateException if the game is over or the cell is flagged
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    synchronized String reveal(int x, int y){
+        Coordinate coordinate = startMove(x, y);
+        if (!field.areMinesSet()){
+            field.checkRevealable(coordinate);
+            field.putMines(coordinate, random);
+        }
+        return toJson(field.revealCell(coordinate));
+    }
+
+    /**
+     * Reveals the neighbours of a revealed cell, see {@link MineField#chordCell(Coordinate)}.
+     * @param x the column of the cell
+     * @param y the row of the cell
+     * @return the JSON of the changed cells
+     * @throws IllegalStateException if the game is over
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    synchronized String chord(int x, int y){
+        return toJson(field.chordCell(startMove(x, y)));
+    }
+
+    /**
+     * Sets the flag of a covered cell, or removes it if the cell is flagged.
+     * @param x the column of the cell
+     * @param y the row of the cell
+     * @return the JSON of the changed cell
+     * @throws IllegalStateException if the game is over or the cell is revealed
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    synchronized String toggleFlag(int x, int y){
+        Coordinate coordinate = startMove(x, y);
+        field.toggleFlag(coordinate);
+        return toJson(field.getCellChanges(coordinate));
+    }
+
+    /**
+     * Renders the whole state of the game.
+     * @param runLength <code>true</code> for run-length encoded rows, <code>false</code> for
+     * a base64 string of all the cells
+     * @return the JSON of the game
+     */
+    synchronized String toJson(boolean runLength){
+        int columns = field.getColumnCount();
+        int rows = field.getRowCount();
+        StringBuilder json = new StringBuilder(runLength ? 64 : columns * rows * 4 / 3 + 256);
+        json.append("{\"id\":").append(id);
+        json.append(",\"columns\":").append(columns);
+        json.append(",\"rows\":").append(rows);
+        json.append(",\"mines\":").append(mines);
+        appendStatus(json);
+
+        if (runLength){
+            json.append(",\"format\":\"rle\",\"cells\":[");
+            for (int y = 0; y < rows; y++){
+                if (y > 0)
+                    json.append(',');
+                appendRunLengthRow(json, y);
+            }
+            json.append(']');
+        } else {
+            byte[] cells = new byte[columns * rows];
+            for (int y = 0; y < rows; y++)
+                for (int x = 0; x < columns; x++)
+                    cells[y * columns + x] = (byte) field.getVisibleState(x, y);
+            json.append(",\"format\":\"packed\",\"cells\":\"")
+                .append(Base64.getEncoder().encodeToString(cells)).append('"');
+        }
+        return json.append('}').toString();
+    }
+
+    /**
+     * Checks that the game is running and the coordinate is within the mine-field
+     * and marks the game as active.
+     */
+    private Coordinate startMove(int x, int y){
+        if (field.wasMineHit() || field.isGameWon())
+            throw new IllegalStateException("The game is over");
+        if (x < 0 || x >= field.getColumnCount() || y < 0 || y >= field.getRowCount())
+            throw new IllegalArgumentException("The coordinate is out of the mine-field: " + x + ", " + y);
+        lastMoveTime = System.nanoTime();
+        return new Coordinate(x, y);
+    }
+
+    /**
+     * Renders the changes of a move. The changed cells are a base64 string of
+     * <code>int index, byte state</code> entries, the same as in the binary protocol
+     * of the game server.
+     */
+    private String toJson(CellChanges changes){
+        if (changes.getHitIndex() != -1)
+            hitIndex = changes.getHitIndex();
+
+        ByteBuffer encoded = ByteBuffer.allocate(changes.size() * CHANGE_LENGTH);
+        for (int i = 0; i < changes.size(); i++)
+            encoded.putInt(changes.getIndex(i)).put((byte) changes.getVisibleState(i));
+
+        StringBuilder json = new StringBuilder(encoded.capacity() * 4 / 3 + 128);
+        json.append("{\"id\":").append(id);
+        appendStatus(json);
+        json.append(",\"changed\":").append(changes.size());
+        json.append(",\"changes\":\"").append(Base64.getEncoder().encodeToString(encoded.array())).append('"');
+        return json.append('}').toString();
+    }
+
+    /**
+     * Appends the status, the flags left and the hit cell of the game.
+     */
+    private void appendStatus(StringBuilder json){
+        String status = field.wasMineHit() ? "lost" : field.isGameWon() ? "won" : "running";
+        json.append(",\"status\":\"").append(status).append('"');
+        json.append(",\"flagsLeft\":").append(field.getLeftFlagsCount());
+        json.append(",\"hitIndex\":").append(hitIndex);
+    }
+
+    /**
+     * Appends a row as an array of alternating visible cell states and the lengths of their runs.
+     */
+    private void appendRunLengthRow(StringBuilder json, int y){
+        json.append('[');
+        int columns = field.getColumnCount();
+        int x = 0;
+        while (x < columns){
+            int state = field.getVisibleState(x, y);
+            int end = x + 1;
+            while (end < columns && field.getVisibleState(end, y) == state)
+                end++;
+            if (x > 0)
+                json.append(',');
+            json.append(state).append(',').append(end - x);
+            x = end;
+        }
+        json.append(']');
+    }
+}
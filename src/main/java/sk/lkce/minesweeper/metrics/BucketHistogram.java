@@ -0,0 +1,86 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram with fixed bucket bounds, for distributions of values like sizes
+ * or durations where the interesting ranges are known in advance. A value falls
+ * into the first bucket whose upper bound is not lower than the value; values above
+ * the last bound fall into an extra overflow bucket.
+ * <br><br>
+ * Recording a value takes no lock and allocates nothing, so it can be used on
+ * the hot paths. For latencies with a wide range of magnitudes see {@link LatencyHistogram}.
+ *
+ * @see MetricsRegistry#histogram(String, long[])
+ */
+public class BucketHistogram {
+
+    private final long[] bounds;
+    private final AtomicLongArray counts;
+    private final LongAdder sum = new LongAdder();
+
+    /**
+     * Constructs a histogram.
+     * @param bounds the inclusive upper bounds of the buckets in ascending order
+     * @throws IllegalArgumentException if the bounds are empty or not ascending
+     */
+    BucketHistogram(long[] bounds){
+        if (bounds.length == 0)
+            throw new IllegalArgumentException("No bucket bounds");
+        for (int i = 1; i < bounds.length; i++)
+            if (bounds[i] <= bounds[i - 1])
+                throw new IllegalArgumentException("The bucket bounds are not ascending: " + Arrays.toString(bounds));
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    /**
+     * Creates exponentially growing bucket bounds.
+     * @param first the upper bound of the first bucket
+     * @param factor the ratio of two consecutive bounds
+     * @param count the number of bounds
+     * @return the bounds
+     */
+    public static long[] exponentialBounds(long first, int factor, int count){
+        long[] bounds = new long[count];
+        bounds[0] = first;
+        for (int i = 1; i < count; i++)
+            bounds[i] = bounds[i - 1] * factor;
+        return bounds;
+    }
+
+    /**
+     * Records a value.
+     * @param value the value
+     */
+    public void record(long value){
+        int index = Arrays.binarySearch(bounds, value);
+        counts.incrementAndGet(index >= 0 ? index : -index - 1);
+        sum.add(value);
+    }
+
+    /**
+     * Returns a snapshot of the histogram.
+     * @return the snapshot
+     */
+    public HistogramSnapshot getSnapshot(){
+        long[] snapshot = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < snapshot.length; i++){
+            snapshot[i] = counts.get(i);
+            count += snapshot[i];
+        }
+        return new HistogramSnapshot(count, sum.sum(), bounds.clone(), snapshot);
+    }
+
+    /**
+     * Discards all the recorded values.
+     */
+    void reset(){
+        for (int i = 0; i < counts.length(); i++)
+            counts.set(i, 0);
+        sum.reset();
+    }
+}
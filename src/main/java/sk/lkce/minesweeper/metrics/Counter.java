@@ -0,0 +1,45 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing count of events. The count is striped across
+ * several cells, so threads incrementing it concurrently do not contend on
+ * a single memory location.
+ *
+ * @see MetricsRegistry#counter(String)
+ */
+public class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    /**
+     * Increments the count by one.
+     */
+    public void increment(){
+        count.increment();
+    }
+
+    /**
+     * Increments the count by a given amount.
+     * @param amount the amount
+     */
+    public void add(long amount){
+        count.add(amount);
+    }
+
+    /**
+     * Returns the count.
+     * @return the count
+     */
+    public long getCount(){
+        return count.sum();
+    }
+
+    /**
+     * Resets the count to zero.
+     */
+    void reset(){
+        count.reset();
+    }
+}
@@ -0,0 +1,17 @@
+package sk.lkce.minesweeper.metrics;
+
+/**
+ * A value sampled when the metrics are read, for example the length of a queue.
+ * The value may be read by any thread, so it must be safe to compute concurrently
+ * with the code updating the measured state.
+ *
+ * @see MetricsRegistry#gauge(String, Gauge)
+ */
+public interface Gauge {
+
+    /**
+     * Returns the current value.
+     * @return the value
+     */
+    long getValue();
+}
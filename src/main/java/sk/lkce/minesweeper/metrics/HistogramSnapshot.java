@@ -0,0 +1,50 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A snapshot of a {@link BucketHistogram}, as exposed by JMX. The last count
+ * is the count of the overflow bucket, the values above the last bound.
+ */
+public class HistogramSnapshot {
+
+    private final long count;
+    private final long sum;
+    private final long[] bounds;
+    private final long[] counts;
+
+    /**
+     * Constructs a snapshot.
+     * @param count the number of values
+     * @param sum the sum of the values
+     * @param bounds the inclusive upper bounds of the buckets
+     * @param counts the counts of the buckets, one more than the bounds
+     */
+    @ConstructorProperties({"count", "sum", "bounds", "counts"})
+    public HistogramSnapshot(long count, long sum, long[] bounds, long[] counts){
+        this.count = count;
+        this.sum = sum;
+        this.bounds = bounds;
+        this.counts = counts;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    public long[] getBounds() {
+        return bounds.clone();
+    }
+
+    public long[] getCounts() {
+        return counts.clone();
+    }
+}
@@ -0,0 +1,31 @@
+package sk.lkce.minesweeper.metrics;
+
+/**
+ * The management interface of the {@link InputLatencyMonitor}. The latencies are
+ * measured from receiving the mouse event until the changed cells have been painted.
+ */
+public interface InputLatencyMXBean {
+
+    /**
+     * Returns the latency summary of left clicks.
+     * @return the latency summary
+     */
+    LatencySummary getLeftClick();
+
+    /**
+     * Returns the latency summary of right clicks.
+     * @return the latency summary
+     */
+    LatencySummary getRightClick();
+
+    /**
+     * Returns the latency summary of chords.
+     * @return the latency summary
+     */
+    LatencySummary getChord();
+
+    /**
+     * Discards all the measured latencies.
+     */
+    void reset();
+}
@@ -0,0 +1,113 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Measures the latency between receiving an input of the player and painting its result.
+ * The measurement works in three steps:
+ * <ol>
+ *  <li>The component receiving the mouse events calls {@link #inputReceived()} first thing
+ *  when an event arrives.</li>
+ *  <li>The component handling the input creates an {@link InputSample} with
+ *  {@link #startSample(InputType)} and passes it along with the resulting changes.</li>
+ *  <li>When the changes have been painted, {@link #record(InputSample, long)} is called.</li>
+ * </ol>
+ * There is a histogram for each type of input. The histograms are also available
+ * via JMX once {@link #registerMBean()} is invoked.
+ */
+public class InputLatencyMonitor implements InputLatencyMXBean {
+
+    private static final String MBEAN_NAME = "sk.lkce.minesweeper:type=InputLatency";
+    private static final InputLatencyMonitor instance = new InputLatencyMonitor();
+
+    private final Map<InputType, LatencyHistogram> histograms = new EnumMap<>(InputType.class);
+    private long inputReceived; //Accessed only on the event dispatch thread.
+
+    /**
+     * Private constructor as is singleton.
+     */
+    private InputLatencyMonitor(){
+        for (InputType type : InputType.values())
+            histograms.put(type, new LatencyHistogram());
+    }
+
+    /**
+     * Returns the singleton instance.
+     * @return the instance
+     */
+    public static InputLatencyMonitor getInstance(){
+        return instance;
+    }
+
+    /**
+     * Registers the monitor in the platform MBean server.
+     */
+    public void registerMBean(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Marks the time an input event has been received. Must be invoked on the event dispatch thread.
+     */
+    public void inputReceived(){
+        inputReceived = System.nanoTime();
+    }
+
+    /**
+     * Creates a sample of an input of a given type which started when the last input
+     * event was received. Must be invoked on the event dispatch thread.
+     * @param type the type of the input
+     * @return the sample
+     */
+    public InputSample startSample(InputType type){
+        return new InputSample(type, inputReceived != 0 ? inputReceived : System.nanoTime());
+    }
+
+    /**
+     * Records the latency of an input whose result was painted at a given time.
+     * @param sample the sample of the input
+     * @param paintedNanos the time of the painting as returned by {@link System#nanoTime()}
+     */
+    public void record(InputSample sample, long paintedNanos){
+        histograms.get(sample.getType()).record(paintedNanos - sample.getStartNanos());
+    }
+
+    /**
+     * Returns the histogram of a given input type.
+     * @param type the input type
+     * @return the histogram of latencies in nanoseconds
+     */
+    public LatencyHistogram getHistogram(InputType type){
+        return histograms.get(type);
+    }
+
+    @Override
+    public LatencySummary getLeftClick() {
+        return LatencySummary.of(histograms.get(InputType.LEFT_CLICK));
+    }
+
+    @Override
+    public LatencySummary getRightClick() {
+        return LatencySummary.of(histograms.get(InputType.RIGHT_CLICK));
+    }
+
+    @Override
+    public LatencySummary getChord() {
+        return LatencySummary.of(histograms.get(InputType.CHORD));
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : histograms.values())
+            histogram.reset();
+    }
+}
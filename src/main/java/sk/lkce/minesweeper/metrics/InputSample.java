@@ -0,0 +1,33 @@
+package sk.lkce.minesweeper.metrics;
+
+/**
+ * A single input of the player being measured. It is created when the input
+ * is received and travels along with the resulting changes until they are painted,
+ * see {@link InputLatencyMonitor}.
+ */
+public final class InputSample {
+
+    private final InputType type;
+    private final long startNanos;
+
+    InputSample(InputType type, long startNanos){
+        this.type = type;
+        this.startNanos = startNanos;
+    }
+
+    /**
+     * Returns the type of the input.
+     * @return the input type
+     */
+    public InputType getType(){
+        return type;
+    }
+
+    /**
+     * Returns the time the input was received.
+     * @return the time in nanoseconds as returned by {@link System#nanoTime()}
+     */
+    public long getStartNanos(){
+        return startNanos;
+    }
+}
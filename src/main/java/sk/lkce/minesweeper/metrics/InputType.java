@@ -0,0 +1,23 @@
+package sk.lkce.minesweeper.metrics;
+
+/**
+ * Types of the player's input whose latency is measured separately.
+ */
+public enum InputType {
+
+    LEFT_CLICK("Left"), RIGHT_CLICK("Right"), CHORD("Chord");
+
+    private final String name;
+
+    private InputType(String name){
+        this.name = name;
+    }
+
+    /**
+     * Returns the human readable name of the input type.
+     * @return the name
+     */
+    public String getName(){
+        return name;
+    }
+}
@@ -0,0 +1,122 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in nanoseconds with log-linear buckets
+ * in the style of HdrHistogram. Every power of two range of values is split into
+ * {@link #SUB_BUCKET_COUNT} equally wide buckets, so the relative error of
+ * a recorded value is at most 1 / {@link #SUB_BUCKET_COUNT} at any magnitude
+ * while the histogram has a fixed size of less than a thousand counters.
+ * <br><br>
+ * Values can be recorded from any number of threads concurrently without locking.
+ * Reading the histogram while values are being recorded gives an approximate
+ * snapshot, which is good enough for monitoring.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalValue = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * Records a value. Negative values are recorded as zero.
+     * @param value the value in nanoseconds
+     */
+    public void record(long value){
+        value = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(value));
+        totalCount.incrementAndGet();
+        totalValue.addAndGet(value);
+
+        long max = maxValue.get();
+        while (value > max && !maxValue.compareAndSet(max, value))
+            max = maxValue.get();
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * @return the number of recorded values
+     */
+    public long getCount(){
+        return totalCount.get();
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return the mean in nanoseconds or 0 if no value has been recorded
+     */
+    public double getMean(){
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalValue.get() / count;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     * @return the largest value in nanoseconds or 0 if no value has been recorded
+     */
+    public long getMax(){
+        return maxValue.get();
+    }
+
+    /**
+     * Returns the value below which a given percentage of the recorded values falls.
+     * The result is the upper bound of the bucket containing the value, so it is
+     * never lower than the exact percentile.
+     * @param percentile the percentile, from 0 to 100
+     * @return the value in nanoseconds or 0 if no value has been recorded
+     */
+    public long getValueAtPercentile(double percentile){
+        long count = totalCount.get();
+        if (count == 0)
+            return 0;
+
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * count));
+        long cumulative = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++){
+            cumulative += counts.get(index);
+            if (cumulative >= target)
+                return Math.min(highestValue(index), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Discards all the recorded values. Values recorded concurrently with
+     * the reset might be partly discarded.
+     */
+    public void reset(){
+        for (int index = 0; index < BUCKET_COUNT; index++)
+            counts.set(index, 0);
+        totalCount.set(0);
+        totalValue.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * Returns the index of the bucket for a given non-negative value.
+     */
+    private static int bucketIndex(long value){
+        if (value < SUB_BUCKET_COUNT)
+            return (int) value;
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    }
+
+    /**
+     * Returns the highest value which falls into a bucket with a given index.
+     */
+    private static long highestValue(int index){
+        if (index < SUB_BUCKET_COUNT)
+            return index;
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * A summary of a {@link LatencyHistogram} in milliseconds, as exposed by JMX.
+ */
+public class LatencySummary {
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final long count;
+    private final double mean;
+    private final double median;
+    private final double percentile99;
+    private final double percentile999;
+    private final double max;
+
+    /**
+     * Constructs a summary.
+     * @param count the number of values
+     * @param mean the mean in milliseconds
+     * @param median the median in milliseconds
+     * @param percentile99 the 99th percentile in milliseconds
+     * @param percentile999 the 99.9th percentile in milliseconds
+     * @param max the largest value in milliseconds
+     */
+    @ConstructorProperties({"count", "mean", "median", "percentile99", "percentile999", "max"})
+    public LatencySummary(long count, double mean, double median, double percentile99,
+            double percentile999, double max){
+        this.count = count;
+        this.mean = mean;
+        this.median = median;
+        this.percentile99 = percentile99;
+        this.percentile999 = percentile999;
+        this.max = max;
+    }
+
+    /**
+     * Creates a summary of a histogram of values in nanoseconds.
+     * @param histogram the histogram
+     * @return the summary
+     */
+    public static LatencySummary of(LatencyHistogram histogram){
+        return new LatencySummary(histogram.getCount(),
+                histogram.getMean() / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(50) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                histogram.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                histogram.getMax() / NANOS_PER_MILLI);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getMedian() {
+        return median;
+    }
+
+    public double getPercentile99() {
+        return percentile99;
+    }
+
+    public double getPercentile999() {
+        return percentile999;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,98 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count of events together with their rate per second. The events are counted
+ * in slots of one second kept in a ring; the rate is the average of the last
+ * {@link #RATE_WINDOW} completed seconds. Marking an event takes no lock and
+ * allocates nothing.
+ *
+ * @see MetricsRegistry#meter(String)
+ */
+public class Meter {
+
+    /** The number of seconds the rate is averaged over. */
+    private static final int RATE_WINDOW = 10;
+    private static final int SLOT_COUNT = RATE_WINDOW + 2;
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongAdder total = new LongAdder();
+    private final AtomicLongArray slotCounts = new AtomicLongArray(SLOT_COUNT);
+    private final AtomicLongArray slotSeconds = new AtomicLongArray(SLOT_COUNT);
+
+    /**
+     * Constructs a meter.
+     */
+    Meter(){
+        for (int slot = 0; slot < SLOT_COUNT; slot++)
+            slotSeconds.set(slot, Long.MIN_VALUE);
+    }
+
+    /**
+     * Marks a single event.
+     */
+    public void mark(){
+        mark(1);
+    }
+
+    /**
+     * Marks a given number of events.
+     * @param count the number of events
+     */
+    public void mark(long count){
+        total.add(count);
+
+        long second = currentSecond();
+        int slot = (int) Math.floorMod(second, (long) SLOT_COUNT);
+        long slotSecond = slotSeconds.get(slot);
+        //The first event of a new second recycles the slot. Events marked by other threads
+        //right at the turn of the second may be lost, which is fine for a rate.
+        if (slotSecond != second && slotSeconds.compareAndSet(slot, slotSecond, second))
+            slotCounts.set(slot, 0);
+        slotCounts.addAndGet(slot, count);
+    }
+
+    /**
+     * Returns the total number of events.
+     * @return the number of events
+     */
+    public long getCount(){
+        return total.sum();
+    }
+
+    /**
+     * Returns the number of events per second averaged over the last completed seconds.
+     * @return the rate per second
+     */
+    public double getRate(){
+        long current = currentSecond();
+        long sum = 0;
+        for (long second = current - RATE_WINDOW; second < current; second++){
+            int slot = (int) Math.floorMod(second, (long) SLOT_COUNT);
+            if (slotSeconds.get(slot) == second)
+                sum += slotCounts.get(slot);
+        }
+        return (double) sum / RATE_WINDOW;
+    }
+
+    /**
+     * Discards all the events.
+     */
+    void reset(){
+        total.reset();
+        for (int slot = 0; slot < SLOT_COUNT; slot++){
+            slotSeconds.set(slot, Long.MIN_VALUE);
+            slotCounts.set(slot, 0);
+        }
+    }
+
+    /**
+     * Returns the number of the current second of the monotonic clock.
+     */
+    private static long currentSecond(){
+        return Math.floorDiv(System.nanoTime(), NANOS_PER_SECOND);
+    }
+}
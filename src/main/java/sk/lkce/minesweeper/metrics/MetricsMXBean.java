@@ -0,0 +1,39 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.util.Map;
+
+/**
+ * The management interface of the {@link MetricsRegistry}. The metrics are
+ * keyed by their names.
+ */
+public interface MetricsMXBean {
+
+    /**
+     * Returns the counts of the counters and meters.
+     * @return the counts by metric name
+     */
+    Map<String, Long> getCounts();
+
+    /**
+     * Returns the rates per second of the meters.
+     * @return the rates by metric name
+     */
+    Map<String, Double> getRates();
+
+    /**
+     * Returns the current values of the gauges.
+     * @return the values by metric name
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * Returns the snapshots of the histograms.
+     * @return the snapshots by metric name
+     */
+    Map<String, HistogramSnapshot> getHistograms();
+
+    /**
+     * Resets all the counters, meters and histograms.
+     */
+    void reset();
+}
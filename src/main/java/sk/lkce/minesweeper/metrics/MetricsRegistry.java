@@ -0,0 +1,152 @@
+package sk.lkce.minesweeper.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A registry of the named metrics of the application: counters, meters, gauges and
+ * histograms. The metrics are meant to be looked up once, typically into a constant,
+ * and then updated directly, so updating a metric involves no lookup, no lock and
+ * no allocation.
+ * <br><br>
+ * Looking up a metric by the name of an existing metric returns the existing one.
+ * All the metrics are available via JMX once {@link #registerMBean()} is invoked.
+ */
+public class MetricsRegistry implements MetricsMXBean {
+
+    private static final String MBEAN_NAME = "sk.lkce.minesweeper:type=Metrics";
+    private static final MetricsRegistry instance = new MetricsRegistry();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Meter> meters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, BucketHistogram> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor as is singleton.
+     */
+    private MetricsRegistry(){}
+
+    /**
+     * Returns the singleton instance.
+     * @return the instance
+     */
+    public static MetricsRegistry getInstance(){
+        return instance;
+    }
+
+    /**
+     * Registers the registry in the platform MBean server.
+     */
+    public void registerMBean(){
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(MBEAN_NAME));
+        } catch (JMException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the counter with a given name, creating it if it does not exist.
+     * @param name the name of the counter
+     * @return the counter
+     */
+    public Counter counter(String name){
+        Counter counter = counters.get(name);
+        if (counter != null)
+            return counter;
+        counter = new Counter();
+        Counter previous = counters.putIfAbsent(name, counter);
+        return previous != null ? previous : counter;
+    }
+
+    /**
+     * Returns the meter with a given name, creating it if it does not exist.
+     * @param name the name of the meter
+     * @return the meter
+     */
+    public Meter meter(String name){
+        Meter meter = meters.get(name);
+        if (meter != null)
+            return meter;
+        meter = new Meter();
+        Meter previous = meters.putIfAbsent(name, meter);
+        return previous != null ? previous : meter;
+    }
+
+    /**
+     * Returns the histogram with a given name, creating it with given bucket bounds
+     * if it does not exist.
+     * @param name the name of the histogram
+     * @param bounds the inclusive upper bounds of the buckets in ascending order
+     * @return the histogram
+     * @see BucketHistogram#exponentialBounds(long, int, int)
+     */
+    public BucketHistogram histogram(String name, long[] bounds){
+        BucketHistogram histogram = histograms.get(name);
+        if (histogram != null)
+            return histogram;
+        histogram = new BucketHistogram(bounds);
+        BucketHistogram previous = histograms.putIfAbsent(name, histogram);
+        return previous != null ? previous : histogram;
+    }
+
+    /**
+     * Registers a gauge with a given name, replacing the gauge previously registered with the name.
+     * @param name the name of the gauge
+     * @param gauge the gauge
+     */
+    public void gauge(String name, Gauge gauge){
+        gauges.put(name, gauge);
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet())
+            result.put(entry.getKey(), entry.getValue().getCount());
+        for (Map.Entry<String, Meter> entry : meters.entrySet())
+            result.put(entry.getKey(), entry.getValue().getCount());
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getRates() {
+        Map<String, Double> result = new TreeMap<>();
+        for (Map.Entry<String, Meter> entry : meters.entrySet())
+            result.put(entry.getKey(), entry.getValue().getRate());
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet())
+            result.put(entry.getKey(), entry.getValue().getValue());
+        return result;
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getHistograms() {
+        Map<String, HistogramSnapshot> result = new TreeMap<>();
+        for (Map.Entry<String, BucketHistogram> entry : histograms.entrySet())
+            result.put(entry.getKey(), entry.getValue().getSnapshot());
+        return result;
+    }
+
+    @Override
+    public void reset() {
+        for (Counter counter : counters.values())
+            counter.reset();
+        for (Meter meter : meters.values())
+            meter.reset();
+        for (BucketHistogram histogram : histograms.values())
+            histogram.reset();
+    }
+}
@@ -0,0 +1,26 @@
+package sk.lkce.minesweeper.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event of putting the mines into a mine-field, see {@link MineField#putMines(Coordinate)}.
+ */
+@Name("sk.lkce.minesweeper.BoardGeneration")
+@Label("Board Generation")
+@Category({"Minesweeper", "Engine"})
+class BoardGenerationEvent extends jdk.jfr.Event {
+
+    @Label("Columns")
+    int columns;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Mines")
+    int mines;
+
+    @Label("Density")
+    float density;
+}
@@ -0,0 +1,118 @@
+package sk.lkce.minesweeper.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * The cells changed by a single move in a compact form. For each changed cell
+ * only its index in the mine-field (<code>y * columnCount + x</code>) and its
+ * packed state after the move are stored, so even a move changing millions of cells
+ * takes only five bytes per cell. The changes can be applied to a {@link MineFieldMirror}.
+ * <br><br>
+ * The changes are also a list of the coordinates of the changed cells. The coordinate
+ * objects are created only when they are retrieved from the list.
+ * <br><br>
+ * The changes can only grow from within the model and they are read-only for their users.
+ */
+public class CellChanges extends AbstractList<Coordinate> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int columnCount;
+    private int[] indexes;
+    private byte[] states;
+    private int size;
+    private int hitIndex = -1;
+
+    /**
+     * Constructs empty changes.
+     * @param columnCount number of columns of the mine-field the indexes belong to
+     */
+    CellChanges(int columnCount){
+        this.columnCount = columnCount;
+        this.indexes = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Adds a cell index to the end of the changes.
+     * @param index the cell index
+     */
+    void addIndex(int index){
+        if (size == indexes.length)
+            indexes = Arrays.copyOf(indexes, size * 2);
+        indexes[size++] = index;
+    }
+
+    /**
+     * Records the states of all the changed cells. Invoked when the move is finished
+     * so that the states are final even if a cell changed several times during the move.
+     * @param cells the packed cell states of the mine-field
+     * @param hitIndex the index of the cell with the mine which was hit or -1
+     */
+    void captureStates(byte[] cells, int hitIndex){
+        states = new byte[size];
+        for (int i = 0; i < size; i++)
+            states[i] = cells[indexes[i]];
+        this.hitIndex = hitIndex;
+    }
+
+    /**
+     * Returns the cell index on a given position of the changes.
+     * @param position position in the changes
+     * @return the cell index
+     */
+    public int getIndex(int position){
+        if (position >= size)
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        return indexes[position];
+    }
+
+    /**
+     * Returns the packed state of the cell on a given position of the changes.
+     * @param position position in the changes
+     * @return the packed cell state
+     */
+    byte getState(int position){
+        if (position >= size)
+            throw new IndexOutOfBoundsException("Position: " + position + ", size: " + size);
+        return states[position];
+    }
+
+    /**
+     * Returns the packed state of the cell on a given position of the changes as the player
+     * may see it. Of a covered cell only the flag and the question mark are kept, so the state
+     * can be handed to a remote player without giving the mines away. The bits of the state are:
+     * <ul>
+     *  <li><code>0x0F</code> - the number of mines in the neighborhood</li>
+     *  <li><code>0x10</code> - mine</li>
+     *  <li><code>0x20</code> - flag</li>
+     *  <li><code>0x40</code> - question mark</li>
+     *  <li><code>0x80</code> - revealed</li>
+     * </ul>
+     * @param position position in the changes
+     * @return the packed cell state visible to the player
+     */
+    public int getVisibleState(int position){
+        return PackedCellInfo.visibleState(getState(position));
+    }
+
+    /**
+     * Returns the index of the cell with the mine which was hit or -1 if no mine was hit.
+     * @return the index of the hit cell or -1
+     */
+    public int getHitIndex(){
+        return hitIndex;
+    }
+
+    @Override
+    public Coordinate get(int position) {
+        int index = getIndex(position);
+        return new Coordinate(index % columnCount, index / columnCount);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
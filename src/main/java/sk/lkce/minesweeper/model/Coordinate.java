@@ -44,7 +44,7 @@ public class Coordinate {
      */
     @Override
     public int hashCode(){
-        return y*11+y*7;
+        return 31 * x + y;
     }
     
     
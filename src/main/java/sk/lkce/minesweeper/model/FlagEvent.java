@@ -0,0 +1,26 @@
+package sk.lkce.minesweeper.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event of setting or removing a flag, see {@link MineField#setFlag(Coordinate, boolean)}.
+ */
+@Name("sk.lkce.minesweeper.Flag")
+@Label("Flag")
+@Category({"Minesweeper", "Engine"})
+class FlagEvent extends jdk.jfr.Event {
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Flagged")
+    boolean flagged;
+
+    @Label("Flags Left")
+    int flagsLeft;
+}
@@ -0,0 +1,95 @@
+package sk.lkce.minesweeper.model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A high-resolution clock measuring the duration of a game. The clock is 
+ * based on {@link System#nanoTime()} and so it is not affected by changes 
+ * of the system time. It is started at the first click into the mine-field 
+ * and stopped when the game is over.
+ * <br><br>
+ * The clock is started and stopped by the thread owning the mine-field but
+ * it can be read from any thread. The times are written before the volatile
+ * flags, so a reader which sees a flag set also sees the respective time.
+ * 
+ * @see MineField#getClock()
+ */
+public class GameClock {
+
+    private long startTime;
+    private long stopTime;
+    private volatile boolean started;
+    private volatile boolean running;
+    
+    /**
+     * Starts the clock. Has no effect if the clock has been already started.
+     */
+    void start(){
+        if (started)
+            return;
+        startTime = System.nanoTime();
+        started = true;
+        running = true;
+    }
+    
+    /**
+     * Stops the clock. Has no effect if the clock is not running.
+     */
+    void stop(){
+        if (!running)
+            return;
+        stopTime = System.nanoTime();
+        running = false;
+    }
+    
+    /**
+     * Restores the clock of a game saved by {@link MineField#writePacked(java.nio.ByteBuffer)}.
+     * A running clock continues from the elapsed time.
+     * @param started whether the clock had been started
+     * @param running whether the clock was running
+     * @param elapsedNanos the elapsed time in nanoseconds
+     */
+    void restore(boolean started, boolean running, long elapsedNanos){
+        startTime = System.nanoTime() - elapsedNanos;
+        stopTime = startTime + elapsedNanos;
+        this.started = started;
+        this.running = running;
+    }
+
+    /**
+     * Determines whether the clock has been started.
+     * @return <code>true</code> if the clock has been started, even if it was stopped afterwards
+     */
+    public boolean isStarted(){
+        return started;
+    }
+    
+    /**
+     * Determines whether the clock is running, i.e. the game is in progress.
+     * @return <code>true</code> if the clock has been started and not stopped yet
+     */
+    public boolean isRunning(){
+        return running;
+    }
+    
+    /**
+     * Returns the time elapsed since the clock was started until it was stopped, or
+     * until now if the clock is still running.
+     * @return the elapsed time in nanoseconds, <code>0</code> if the clock has not been started yet
+     */
+    public long getElapsedNanos(){
+        if (!started)
+            return 0;
+        long endTime = running ? System.nanoTime() : stopTime;
+        return endTime - startTime;
+    }
+    
+    /**
+     * Returns the time elapsed since the clock was started until it was stopped, or
+     * until now if the clock is still running.
+     * @return the elapsed time in milliseconds, <code>0</code> if the clock has not been started yet
+     */
+    public long getElapsedMillis(){
+        return TimeUnit.NANOSECONDS.toMillis(getElapsedNanos());
+    }
+}
@@ -0,0 +1,31 @@
+package sk.lkce.minesweeper.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A flight recorder event of the end of a game.
+ */
+@Name("sk.lkce.minesweeper.GameOver")
+@Label("Game Over")
+@Category({"Minesweeper", "Engine"})
+class GameOverEvent extends jdk.jfr.Event {
+
+    @Label("Won")
+    boolean won;
+
+    @Label("Game Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long gameTime;
+
+    @Label("Columns")
+    int columns;
+
+    @Label("Rows")
+    int rows;
+
+    @Label("Mines")
+    int mines;
+}
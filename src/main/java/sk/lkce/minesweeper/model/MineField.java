@@ -1,41 +1,81 @@
 package sk.lkce.minesweeper.model;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Random;
-import java.util.Set;
+
+import sk.lkce.minesweeper.diagnostics.JfrCategory;
+import sk.lkce.minesweeper.metrics.BucketHistogram;
+import sk.lkce.minesweeper.metrics.Meter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
 
 /**
  * The game model. Contains the game logic and maintains and changes state of the
  * fields (also called cells)  in the mine-field grid.  <br><br>
- * 
- * The mine-field is two dimensional collection of individual fields/cells  some of which contain mines.  
- * 
+ *
+ * The mine-field is two dimensional collection of individual fields/cells  some of which contain mines.
+ * <br><br>
+ * The state of each cell is packed into a single byte so the mine-field takes
+ * one byte per cell and even very large mine-fields fit in the memory. The cells
+ * are stored row by row, the cell <code>[x, y]</code> having the index
+ * <code>y * columnCount + x</code>.
+ * <br><br>
+ * The mine-field is not thread-safe. If it is modified by a thread other than
+ * the one displaying it, the displaying thread should use a {@link MineFieldMirror}
+ * updated with the {@link CellChanges} returned by the modifying methods.
+ * <br><br>
+ * The whole mine-field can be saved to a buffer in the packed form and restored from it,
+ * see {@link #writePacked(ByteBuffer)} and {@link #readPacked(ByteBuffer)}.
+ * <br><br>
+ * The operations of the mine-field are reported as flight recorder events of
+ * the {@link JfrCategory#ENGINE} category and counted in the {@link MetricsRegistry}.
+ *
  */
 public class MineField {
-    	
+
+    /* Bits of the packed cell state */
+    private static final int NEARBY_MINES_MASK = PackedCellInfo.NEARBY_MINES_MASK;
+    private static final int MINE = PackedCellInfo.MINE;
+    private static final int FLAG = PackedCellInfo.FLAG;
+    private static final int QUESTION_MARK = PackedCellInfo.QUESTION_MARK;
+    private static final int REVEALED = PackedCellInfo.REVEALED;
+
+    /* Metrics */
+    private static final Meter REVEALS = MetricsRegistry.getInstance().meter("engine.reveals");
+    private static final BucketHistogram FLOOD_FILL_SIZES = MetricsRegistry.getInstance()
+            .histogram("engine.floodFillSize", BucketHistogram.exponentialBounds(1, 4, 13));
+    private static final BucketHistogram GENERATION_TIMES = MetricsRegistry.getInstance()
+            .histogram("engine.boardGenerationMicros", BucketHistogram.exponentialBounds(10, 4, 12));
+
+    /** The length of the header preceding the packed cells in the packed form. */
+    public static final int PACKED_HEADER_LENGTH = 6 * 4 + 8 + 1;
+
+    /* Bits of the state byte of the packed form */
+    private static final int PACKED_MINES_SET = 0x01;
+    private static final int PACKED_MINE_HIT = 0x02;
+    private static final int PACKED_GAME_WON = 0x04;
+    private static final int PACKED_CLOCK_STARTED = 0x08;
+    private static final int PACKED_CLOCK_RUNNING = 0x10;
+
     private int columnCount;
     private int rowCount;
     private int mineCount;
     private int cellCount;
-    private Map<Coordinate,Cell> cells;
-    private List<Cell> mines = new ArrayList<Cell>();
+    private byte[] cells;
+    private int[] mines;
+    private int hitCell = -1;
     private boolean mineHit, gameWon;
-    private List<Coordinate> newlyRevealedCells = new ArrayList<Coordinate>();
     private GameInfo gameInfo;
     private int flagsLeft;
     private int coveredCells;
-    private List<Coordinate> mineCoordinates = new ArrayList<>();
-    
+    private final GameClock clock = new GameClock();
+
     /**
      * Constructs a new mine-field instance. The coordinates of mines are not calculated
      * when constructing the object but {@link #putMines(Coordinate)} needs to be invoked to put
      * mine-field object to game-ready state.
-     * 
+     *
      * @param columnCount number of columns of the mine-field
      * @param rowCount number of rows  of the mine-field
      * @param mineCount number of mines the mine-field should have
@@ -44,49 +84,120 @@ public class MineField {
         this.columnCount =columnCount;
         this.rowCount = rowCount;
         this.mineCount = mineCount;
-    	
+
         cellCount = columnCount * rowCount;
-        cells = new HashMap<Coordinate,Cell>(cellCount);
-    	
+        cells = new byte[cellCount];
+
         flagsLeft = mineCount;
-    	
+
         coveredCells = cellCount;
-        
-        for (int row = 0; row < rowCount; row++) {
-            for (int col = 0; col < columnCount; col++) {
-                Cell cell = new Cell(col, row);
-                cells.put(cell.getCoordinate(), cell);
-            }
-        }
     }
-    
-    
+
+
     /**
      * Calculates and sets the mines of the mine-field based on randomly generated coordinates and guarantees
      * that the cell for a given coordinate will not contain mine.
-     * 
+     *
      * This method needs to be invoked before the game can start.<br><br>
      * The purpose of excluding of the mines "creation" from the construction phase of the mine-field
      * is to  give the presentation layer a possibility to guarantee that the first unrevelaed field contains
-     * no mine.
-     * 
+     * no mine.<br><br>
+     * The game clock is started when the mines are put.
+     *
      * @param ignoreCoordinate a coordinate which is guaranteed to contain no mine
+     * @throws IllegalStateException if the mines have been already put
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
+     * @see #checkRevealable(Coordinate)
      */
     public void putMines(Coordinate ignoreCoordinate){
-        Set<Coordinate> coordinates = calculateMineCoordinates(ignoreCoordinate);
-        mineCoordinates.addAll(coordinates);
-        
-        
-        for (Coordinate coordinate : mineCoordinates){
-            Cell cell = cells.get(coordinate);
-            mines.add(cell);
-            cell.setHasMine(true);
-        }
+        putMines(ignoreCoordinate, new Random());
+    }
+
+    /**
+     * Puts the mines like {@link #putMines(Coordinate)} with the coordinates generated
+     * by a given random number generator. A generator with a fixed seed puts the mines
+     * the same way for the same ignored coordinate, so a game can be replayed.
+     *
+     * @param ignoreCoordinate a coordinate which is guaranteed to contain no mine
+     * @param random the random number generator
+     * @throws IllegalStateException if the mines have been already put
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
+     */
+    public void putMines(Coordinate ignoreCoordinate, Random random){
+        if (areMinesSet())
+            throw new IllegalStateException("The mines have been already put");
+        checkBounds(ignoreCoordinate);
+
+        long startTime = System.nanoTime();
+        BoardGenerationEvent event = new BoardGenerationEvent();
+        event.begin();
+        clock.start();
+
+        mines = calculateMineIndexes(toIndex(ignoreCoordinate), random);
 
         // Count the number of mine-carrying neighbours for each cell
-        for (Cell cell : cells.values())
-            countNeighbouringMines(cell);
-        
+        for (int index = 0; index < cellCount; index++)
+            countNeighbouringMines(index);
+
+        GENERATION_TIMES.record((System.nanoTime() - startTime) / 1000);
+        if (JfrCategory.ENGINE.isEnabled() && event.shouldCommit()){
+            event.columns = columnCount;
+            event.rows = rowCount;
+            event.mines = mineCount;
+            event.density = (float) mineCount / cellCount;
+            event.commit();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the mines have been already put by {@link #putMines(Coordinate)}.
+     * @return <code>true</code> if the mines have been put
+     */
+    public boolean areMinesSet(){
+        return mines != null;
+    }
+
+    /**
+     * Returns the 3BV of the mine-field, the smallest number of left clicks revealing all the cells
+     * without a mine: one click for each opening, an area of cells without a mine-carrying
+     * neighbour together with its border, plus one click for each other cell without a mine.
+     * @return the 3BV of the mine-field
+     * @throws IllegalStateException if the mines have not been put yet
+     */
+    public int getBoardValue(){
+        if (!areMinesSet())
+            throw new IllegalStateException("The mines have not been put yet");
+
+        boolean[] counted = new boolean[cellCount];
+        int[] pending = new int[cellCount]; //Each cell is pushed at most once.
+        int value = 0;
+        for (int index = 0; index < cellCount; index++){
+            if (counted[index] || has(index, MINE) || (cells[index] & NEARBY_MINES_MASK) != 0)
+                continue;
+            value++; //An opening.
+            int size = 0;
+            pending[size++] = index;
+            counted[index] = true;
+            while (size > 0){
+                int cell = pending[--size];
+                if ((cells[cell] & NEARBY_MINES_MASK) != 0) //The border of the opening.
+                    continue;
+                int x = cell % columnCount;
+                int y = cell / columnCount;
+                for (int ny = Math.max(0, y - 1); ny <= Math.min(rowCount - 1, y + 1); ny++)
+                    for (int nx = Math.max(0, x - 1); nx <= Math.min(columnCount - 1, x + 1); nx++){
+                        int neighbour = toIndex(nx, ny);
+                        if (!counted[neighbour]){
+                            counted[neighbour] = true;
+                            pending[size++] = neighbour;
+                        }
+                    }
+            }
+        }
+        for (int index = 0; index < cellCount; index++)
+            if (!counted[index] && !has(index, MINE))
+                value++;
+        return value;
     }
 
     /**
@@ -96,9 +207,35 @@ public class MineField {
      * @return cell information object
      */
     public CellInfo getCellInfo(int x, int y){
-        return getCell(x,y).getCellInfo();
+        int index = toIndex(x, y);
+        return new PackedCellInfo(cells, columnCount, index, index == hitCell);
     }
-    
+
+    /**
+     * Returns the packed state of a cell as the player may see it, see
+     * {@link CellChanges#getVisibleState(int)}.
+     * @param x column index
+     * @param y row index
+     * @return the visible packed cell state
+     */
+    public int getVisibleState(int x, int y){
+        return PackedCellInfo.visibleState(cells[toIndex(x, y)]);
+    }
+
+    /**
+     * Returns the current state of a cell with a given coordinate as changes
+     * which can be applied to a {@link MineFieldMirror}, for example after
+     * the cell was flagged.
+     * @param coordinate coordinate of the cell
+     * @return the changes containing the cell
+     */
+    public CellChanges getCellChanges(Coordinate coordinate){
+        CellChanges changes = new CellChanges(columnCount);
+        changes.addIndex(toIndex(coordinate));
+        changes.captureStates(cells, hitCell);
+        return changes;
+    }
+
     /**
      * Returns number of columns of this mine-field
      * @return number of columns
@@ -106,7 +243,7 @@ public class MineField {
     public int getColumnCount(){
         return columnCount;
     }
-    
+
     /**
      * Returns number of rows of this mine-field
      * @return number of rows
@@ -114,7 +251,111 @@ public class MineField {
     public int getRowCount(){
         return rowCount;
     }
-    
+
+    /**
+     * Returns number of mines of this mine-field
+     * @return number of mines
+     */
+    public int getMineCount(){
+        return mineCount;
+    }
+
+    /**
+     * Returns the clock measuring the time of the game. The clock is started
+     * by {@link #putMines(Coordinate)} and stopped when the game is won or lost.
+     * @return the game clock
+     */
+    public GameClock getClock(){
+        return clock;
+    }
+
+    /**
+     * Returns the length of the packed form of this mine-field, see {@link #writePacked(ByteBuffer)}.
+     * @return the length in bytes
+     */
+    public int getPackedLength(){
+        return PACKED_HEADER_LENGTH + cellCount;
+    }
+
+    /**
+     * Writes the whole state of this mine-field to a buffer in the packed form: a header
+     * of {@link #PACKED_HEADER_LENGTH} bytes followed by the packed cell states, one byte per cell.
+     * The header holds the size of the mine-field, the number of mines, the flags left,
+     * the covered cells, the hit cell, the elapsed time of the clock and the state of the game.
+     * @param buffer the buffer with at least {@link #getPackedLength()} bytes remaining
+     * @throws java.nio.BufferOverflowException if the buffer is too small
+     */
+    public void writePacked(ByteBuffer buffer){
+        int state = 0;
+        if (areMinesSet())
+            state |= PACKED_MINES_SET;
+        if (mineHit)
+            state |= PACKED_MINE_HIT;
+        if (gameWon)
+            state |= PACKED_GAME_WON;
+        if (clock.isStarted())
+            state |= PACKED_CLOCK_STARTED;
+        if (clock.isRunning())
+            state |= PACKED_CLOCK_RUNNING;
+
+        buffer.putInt(columnCount).putInt(rowCount).putInt(mineCount);
+        buffer.putInt(flagsLeft).putInt(coveredCells).putInt(hitCell);
+        buffer.putLong(clock.getElapsedNanos());
+        buffer.put((byte) state);
+        buffer.put(cells);
+    }
+
+    /**
+     * Restores a mine-field written by {@link #writePacked(ByteBuffer)}. The positions
+     * of the mines are recovered from the cell states and a running clock continues
+     * from the saved elapsed time.
+     * @param buffer the buffer positioned at the packed form
+     * @return the restored mine-field
+     * @throws IllegalArgumentException if the buffer does not contain a valid packed mine-field
+     */
+    public static MineField readPacked(ByteBuffer buffer){
+        try {
+            int columnCount = buffer.getInt();
+            int rowCount = buffer.getInt();
+            int mineCount = buffer.getInt();
+            if (columnCount <= 0 || rowCount <= 0 || mineCount <= 0
+                    || (long) columnCount * rowCount > buffer.remaining())
+                throw new IllegalArgumentException("Invalid packed mine-field: " + columnCount + "x" + rowCount
+                        + ", mines: " + mineCount);
+
+            MineField field = new MineField(columnCount, rowCount, mineCount);
+            field.flagsLeft = buffer.getInt();
+            field.coveredCells = buffer.getInt();
+            field.hitCell = buffer.getInt();
+            long elapsedNanos = buffer.getLong();
+            int state = buffer.get();
+            buffer.get(field.cells);
+
+            field.mineHit = (state & PACKED_MINE_HIT) != 0;
+            field.gameWon = (state & PACKED_GAME_WON) != 0;
+            field.clock.restore((state & PACKED_CLOCK_STARTED) != 0, (state & PACKED_CLOCK_RUNNING) != 0, elapsedNanos);
+            if ((state & PACKED_MINES_SET) != 0)
+                field.mines = field.findMines();
+            return field;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated packed mine-field", e);
+        }
+    }
+
+    /**
+     * Returns the indexes of the cells with mines.
+     */
+    private int[] findMines(){
+        int[] result = new int[mineCount];
+        int count = 0;
+        for (int index = 0; index < cellCount && count < mineCount; index++)
+            if (has(index, MINE))
+                result[count++] = index;
+        if (count != mineCount)
+            throw new IllegalArgumentException("Invalid packed mine-field: " + count + " of " + mineCount + " mines");
+        return result;
+    }
+
     /**
      * Returns <code>true</code> if the last time the cell was revealed
      * it contained mine.
@@ -123,8 +364,8 @@ public class MineField {
     public boolean wasMineHit(){
         return mineHit;
     }
-    
-    
+
+
     /**
      * Returns <code>true</code> of all the cells without mine have been revealed.
      * @return <code>true</code> if the game is considered to be won
@@ -132,25 +373,26 @@ public class MineField {
     public boolean isGameWon(){
         return gameWon;
     }
-    
-    
+
+
     /**
      * Returns number of flags left. The flags can be used to mark the cells which are expected
-     * to contain mines and their number corresponds to the number of mines.       
-     * 
+     * to contain mines and their number corresponds to the number of mines. The number
+     * is negative if more cells were flagged than there are mines.
+     *
      * @return the number of flags left
      */
     public int getLeftFlagsCount(){
         return flagsLeft;
     }
-    
+
     /**
-     * Reveals a cell with a given coordinate, verifies the winning conditions and reveals 
+     * Reveals a cell with a given coordinate, verifies the winning conditions and reveals
      * the list of the revealed cells. In some cases, however, also other cells are automatically
      * revealed based on whether there are any mines in adjacent cells or whether the cell itself contains mine.
      * <br>
      * The behavior is following:
-     * 
+     *
      * <ul>
      *  <li> <b>Cell does not contain mine AND there is at least one mine-cell in the neighborhood </b> - only the cell is revealed
      *  and contain information of how adjacent cells contain mines. </li>
@@ -160,249 +402,437 @@ public class MineField {
      *  other cells with mine are revealed as well</li>
      * </ul>
      *
-     * The list of the coordinates of the revealed cells is returned by the method.
-     * 
+     * The changes of the cells changed by this move are returned by the method.
+     *
      * For victory conditions see {{@link #isGameWon()} and {{@link #wasMineHit()} .
-     * 
+     *
      * @param coordinate a coordinate of the cell to be revealed
-     * 
-     * @return the list of coordinates of the revealed cells
+     *
+     * @return the changes of the revealed cells
      * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
      * @throws IllegalStateException if an attempt is made to reveal flagged cell
-     * @see #isGameWon() 
+     * @see #isGameWon()
      * @see #wasMineHit()
      */
-    public List<Coordinate> revealCell(Coordinate coordinate){
-    
+    public CellChanges revealCell(Coordinate coordinate){
+        checkRevealable(coordinate);
+
+        int index = toIndex(coordinate);
+        RevealEvent event = new RevealEvent();
+        event.begin();
+        int covered = coveredCells;
+        int depth = 0;
+        CellChanges newlyRevealedCells = new CellChanges(columnCount);
+
+        if (has(index, MINE))
+            hitMine(index, newlyRevealedCells);
+        else
+            depth = reveal(index, newlyRevealedCells); //Make call to internal reveal method.
+
+        finishMove(newlyRevealedCells);
+        reportReveal(event, false, covered - coveredCells, depth);
+        return newlyRevealedCells;
+    }
+
+    /**
+     * Checks that a cell can be revealed by {@link #revealCell(Coordinate)}. A move which
+     * puts the mines should check its cell before {@link #putMines(Coordinate)}, so that
+     * a rejected move does not put them and the cell revealed first is still safe.
+     *
+     * @param coordinate a coordinate of the cell to be revealed
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
+     * @throws IllegalStateException if the cell is flagged
+     */
+    public void checkRevealable(Coordinate coordinate){
+        checkBounds(coordinate);
+        if (has(toIndex(coordinate), FLAG))
+            throw new IllegalStateException("Cannot reveal flagged cell");
+    }
+
+    /**
+     * Reveals all the covered cells without flag adjacent to a revealed cell with a given
+     * coordinate, as if each of them was revealed by {@link #revealCell(Coordinate)}. This is
+     * done only if the number of flags in the neighborhood is the same as the number
+     * of mines in the neighborhood, otherwise nothing happens. If any of the flags is wrong,
+     * a mine is hit and the game is lost.
+     * <br><br>
+     * The changes of the cells changed by this move are returned by the method.
+     *
+     * @param coordinate a coordinate of the revealed cell
+     * @return the changes of the revealed cells, empty if nothing was revealed
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
+     */
+    public CellChanges chordCell(Coordinate coordinate){
+        checkBounds(coordinate);
+
+        int index = toIndex(coordinate);
+        CellChanges newlyRevealedCells = new CellChanges(columnCount);
+        if (!has(index, REVEALED) || countNeighbours(index, FLAG) != (cells[index] & NEARBY_MINES_MASK)){
+            newlyRevealedCells.captureStates(cells, hitCell);
+            return newlyRevealedCells;
+        }
+
+        RevealEvent event = new RevealEvent();
+        event.begin();
+        int covered = coveredCells;
+        int depth = 0;
+        for (int ny = Math.max(0, coordinate.y - 1); ny <= Math.min(rowCount - 1, coordinate.y + 1); ny++)
+            for (int nx = Math.max(0, coordinate.x - 1); nx <= Math.min(columnCount - 1, coordinate.x + 1); nx++){
+                int neighbour = toIndex(nx, ny);
+                if (mineHit || has(neighbour, REVEALED) || has(neighbour, FLAG)) //Also skips the cell itself.
+                    continue;
+                if (has(neighbour, MINE))
+                    hitMine(neighbour, newlyRevealedCells);
+                else
+                    depth = Math.max(depth, reveal(neighbour, newlyRevealedCells));
+        	}
+
+        finishMove(newlyRevealedCells);
+        reportReveal(event, true, covered - coveredCells, depth);
+        return newlyRevealedCells;
+    }
+
+    /**
+     * Marks the mine in a cell with a given index as hit, reveals all the mines
+     * and ends the game.
+     */
+    private void hitMine(int index, CellChanges revealed){
+        hitCell = index;
+        //Reveal all mines
+        for (int mine : mines){
+            if (has(mine, REVEALED))
+                continue;
+            cells[mine] |= REVEALED;
+            revealed.addIndex(mine);
+        }
+
+        mineHit = true;
+        clock.stop();
+        reportGameOver();
+    }
+
+    /**
+     * Records the metrics of a finished move and commits its reveal event, unless
+     * the engine events are switched off.
+     */
+    private void reportReveal(RevealEvent event, boolean chord, int cellsOpened, int floodFillDepth){
+        REVEALS.mark();
+        FLOOD_FILL_SIZES.record(cellsOpened);
+        if (!JfrCategory.ENGINE.isEnabled() || !event.shouldCommit())
+            return;
+        event.chord = chord;
+        event.cellsOpened = cellsOpened;
+        event.floodFillDepth = floodFillDepth;
+        event.mineHit = mineHit;
+        event.commit();
+    }
+
+    /**
+     * Commits a game over event, unless the engine events are switched off.
+     */
+    private void reportGameOver(){
+        GameOverEvent event = new GameOverEvent();
+        if (!JfrCategory.ENGINE.isEnabled() || !event.shouldCommit())
+            return;
+        event.won = gameWon;
+        event.gameTime = clock.getElapsedNanos();
+        event.columns = columnCount;
+        event.rows = rowCount;
+        event.mines = mineCount;
+        event.commit();
+    }
+
+    /**
+     * Verifies the winning conditions after a move which revealed cells and
+     * records the final states of the changed cells.
+     */
+    private void finishMove(CellChanges revealed){
+        if (!mineHit){
+            verifyIfWon();
+
+            if(gameWon) //If game won, also update the mine cell as we set the flags there.
+                for (int mine : mines)
+                    revealed.addIndex(mine);
+        }
+
+        revealed.captureStates(cells, hitCell);
+    }
+
+    /**
+     * Checks whether a coordinate is within the bounds of the mine-field.
+     */
+    private void checkBounds(Coordinate coordinate){
         if (coordinate.x < 0 || coordinate.x >= columnCount)
             throw new IllegalArgumentException("Coordinate.x is not within bounds 0 - " + (columnCount-1));
         if (coordinate.y < 0 || coordinate.y >= rowCount)
             throw new IllegalArgumentException("Coordinate.y is not within bounds 0 - " + (rowCount-1));
-    	
-        Cell cell = cells.get(coordinate);
-    	
-        if (cell.hasFlag())
-            throw new IllegalStateException("Cannot reveal flagged cell");
+    }
+
 
-        
-        if (cell.hasMine()){
-            cell.mineWasHit();
-            //Reveal all mines
-            for (Cell c : mines)
-                c.reveal();
-        	
-            mineHit = true; 
-            return Collections.unmodifiableList(mineCoordinates);
-        }
-    	
-        //Make call to internal overloaded revealCell method. 
-        revealCell(cell);
-        verifyIfWon();
-        
-        if(gameWon) //If game won, also update the mine cell as we set the flags there.
-            newlyRevealedCells.addAll(mineCoordinates);
-        
-        return Collections.unmodifiableList(newlyRevealedCells);
-    }
-    
-    
     /**
      * Sets to or removes flag from a cell at a given coordinate.
-     * 
+     * As in the classic game, more flags than mines can be set in which
+     * case the number of flags left is negative.
+     *
      * @param coordinate coordinate of the cell
      * @param isFlagged <code>true</code> if the flag should be added, <code>false</code> if the flag should be removed
      * @return the number of flags left
-     * 
-     * @throws IllegalStateException if there are no flags left are if an attempt is made to remove flag 
-     * from a cell which is not flagged
+     *
+     * @throws IllegalStateException if an attempt is made to add flag to a cell which is already flagged
+     * or to remove flag from a cell which is not flagged
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
      * @see #getLeftFlagsCount()
+     * @see #toggleFlag(Coordinate)
      */
     public int setFlag(Coordinate coordinate, boolean isFlagged){
-    	
-        if (isFlagged){
-            if (flagsLeft == 0)
-                throw new IllegalStateException("There cannot be more flags then mines");
+        checkBounds(coordinate);
+        int index = toIndex(coordinate);
+
+        if (has(index, FLAG) == isFlagged)
+            throw new IllegalStateException(isFlagged ? "The cell is already flagged" : "Cannot remove flag. The cell is not flagged.");
+
+        if (isFlagged)
             flagsLeft--;
-        }else{
-            if (flagsLeft == mineCount)
-                throw new IllegalStateException("Cannot remove flag. There should be no flag in the field.");
+        else
             flagsLeft++;
+
+        set(index, FLAG, isFlagged);
+
+        FlagEvent event = new FlagEvent();
+        if (JfrCategory.ENGINE.isEnabled() && event.shouldCommit()){
+            event.x = coordinate.x;
+            event.y = coordinate.y;
+            event.flagged = isFlagged;
+            event.flagsLeft = flagsLeft;
+            event.commit();
         }
-    	
-        cells.get(coordinate).setHasFlag(isFlagged);
-    	
+
         return flagsLeft;
     }
-    
-    
+
+
+    /**
+     * Sets a flag to a covered cell with a given coordinate, or removes it if the cell is flagged.
+     * A question mark of the cell is removed.
+     *
+     * @param coordinate coordinate of the cell
+     * @return the number of flags left
+     * @throws IllegalStateException if the cell is revealed
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
+     */
+    public int toggleFlag(Coordinate coordinate){
+        checkBounds(coordinate);
+        int index = toIndex(coordinate);
+        if (has(index, REVEALED))
+            throw new IllegalStateException("Cannot flag a revealed cell");
+        set(index, QUESTION_MARK, false);
+        return setFlag(coordinate, !has(index, FLAG));
+    }
+
     /**
      * Sets to or removes question mark from a cell with a given coordinate.
      * @param coordinate coordinate of the cell
      * @param hasQuestionmark <code>true</code> if question mark should be added, <code>false</code> if it should be removed
+     * @throws IllegalArgumentException if the coordinate values are not within the bounds of the mine-field size
      */
     public void setQuestionMark(Coordinate coordinate, boolean hasQuestionmark){
-        cells.get(coordinate).setQuestionMark(hasQuestionmark);
+        checkBounds(coordinate);
+        set(toIndex(coordinate), QUESTION_MARK, hasQuestionmark);
+    }
+
+    /**
+     * Returns the cell index for given column and row indexes.
+     */
+    private int toIndex(int x, int y){
+        return y * columnCount + x;
+    }
+
+    /**
+     * Returns the cell index for a given coordinate.
+     */
+    private int toIndex(Coordinate coordinate){
+        return toIndex(coordinate.x, coordinate.y);
     }
-    
+
+    /**
+     * Determines whether the cell with a given index has a given state bit set.
+     */
+    private boolean has(int index, int bit){
+        return (cells[index] & bit) != 0;
+    }
+
     /**
-     *  Returns cell for given column and row indexes.
+     * Sets or clears a given state bit of the cell with a given index.
      */
-    private Cell getCell(int x, int y){
-        Coordinate coor = new Coordinate(x,y);
-        return cells.get(coor);
+    private void set(int index, int bit, boolean value){
+        if (value)
+            cells[index] |= bit;
+        else
+            cells[index] &= ~bit;
     }
-    
+
     /**
-     * Generates randomly and returns coordinates of cell where the mine will be places. 
-     * The set of mine coordinates will not contain the provided ignore-coordinate. 
+     * Generates randomly indexes of cells where the mines will be placed, puts the mines
+     * there and returns the indexes. The mine indexes will not contain the provided ignore-index.
      */
-    private Set<Coordinate> calculateMineCoordinates(Coordinate ignoreCoordinate){
-        
-        Set<Coordinate> coordinates = new HashSet<Coordinate>(mineCount);
-        Random random = new Random();
+    private int[] calculateMineIndexes(int ignoreIndex, Random random){
+
+        int[] result = new int[mineCount];
         for (int i = 0; i < mineCount;i++){
             int index = random.nextInt(cellCount);
-            Coordinate co = indextToCoordinate(index);
-            //If the coordinate has been already picked or should be ignored, add
+            //If the index has been already picked or should be ignored, add
             //one more iteration.
-            if (co.equals(ignoreCoordinate) || 
-                    !coordinates.add(co)){
+            if (index == ignoreIndex || has(index, MINE)){
                 i--;
+                continue;
             }
+            cells[index] |= MINE;
+            result[i] = index;
         }
-        
-        return coordinates;
-    }
-    
-    /**
-     * Helper method which transform an index to coordinate. 
-     */
-    private Coordinate indextToCoordinate(int i){
-        int x = i  % columnCount;
-        int y = (i - x) / columnCount ;
-        
-        return new Coordinate(x,y);
+
+        Arrays.sort(result);
+        return result;
     }
-    
-    
+
+
     /**
      * Generates and return the string representation of the mine-field which shows
      * the cells and their states.
-     * 
+     *
      * @return string representation of the state of this mine-field
      */
     public String debugImg(){
         StringBuilder sb = new StringBuilder();
-    	
+
         for (int h = 0; h < getRowCount(); h++){
             for (int w = 0; w < getColumnCount(); w++){
-                Cell c = getCell(w, h);
-        		
+                int index = toIndex(w, h);
+
                 String s;
-                if (c.hasFlag())
+                if (has(index, FLAG))
                     s ="F";
-                else if (c.hasMine())
+                else if (has(index, MINE))
                     s = "X";
                 else{
-                    if (!c.isRevealed())
+                    if (!has(index, REVEALED))
                         s = ".";
                     else
-                        s = c.getNearbyMinesCount() +"";
+                        s = (cells[index] & NEARBY_MINES_MASK) +"";
             	}
-        		
+
                 sb.append(s);
                 sb.append(" ");
         	}
             sb.append("\n");
         }
-        		
-    	
+
+
         return sb.toString();
     }
-    
+
     /**
      * Makes check if the conditions are met for the game to be declared as won.
      */
     private void verifyIfWon(){
-        if (coveredCells > mines.size())
+        if (coveredCells > mines.length)
             return;
-        
+
         gameWon = true;
+        clock.stop();
         //Make the flag set on all mines.
-        for (Cell cell : mines)
-            if (!cell.hasFlag())
-                cell.setHasFlag(true);
+        for (int mine : mines)
+            cells[mine] |= FLAG;
+        reportGameOver();
     }
-    
+
     /**
-     * Counts and set the number of mines in the nearby (neighboring) cells for a given cell.
+     * Counts and set the number of mines in the nearby (neighboring) cells for a cell with a given index.
      */
-    private void countNeighbouringMines(Cell cell){
-        if (cell.hasMine()) //Makes no sense to count it for a mine cell.
+    private void countNeighbouringMines(int index){
+        if (has(index, MINE)) //Makes no sense to count it for a mine cell.
             return;
-    	
-        int mineCount = 0;
-        for (int y = -1; y < 2; y++)
-            for (int x = -1 ; x < 2; x++){
-                if (y == 0 && x == 0) //These are the 'cell' coordinates.
-                    continue;
-                Cell neighbour = getCellNeighbour(cell, x, y);
-                if (neighbour != null && neighbour.hasMine())
-                    mineCount++;
+
+        cells[index] |= countNeighbours(index, MINE);
+    }
+
+    /**
+     * Counts the cells adjacent to a cell with a given index which have a given state bit set.
+     */
+    private int countNeighbours(int index, int bit){
+        int x = index % columnCount;
+        int y = index / columnCount;
+        int count = 0;
+        for (int ny = Math.max(0, y - 1); ny <= Math.min(rowCount - 1, y + 1); ny++)
+            for (int nx = Math.max(0, x - 1); nx <= Math.min(columnCount - 1, x + 1); nx++){
+                int neighbour = toIndex(nx, ny);
+                if (neighbour != index && has(neighbour, bit))
+                    count++;
         	}
-    	
-        cell.setNearbyMinesCount(mineCount);
+        return count;
     }
-    	
+
     /**
-     * Reveals a cell and also recursively its neighbors if the cell has no mine in neighborhood.
-     * Cell is revealed only if condition <b>{@link Cell#hasMine()} == <code>true</code> </b> holds true. 
-     * If the cell does not have any mine-carrying neighbors the reveal operation is spread recursively to
+     * Reveals a cell and also its neighbors if the cell has no mine in neighborhood.
+     * If the cell does not have any mine-carrying neighbors the reveal operation is spread to
      * all of its neighbors eventually stopping at the cells near the mine or at the side of the mine-field.
+     * <br><br>
+     * The spreading is iterative rather than recursive so that the stack does not overflow on large
+     * mine-fields. The indexes of all the revealed cells are added to a given list. The list itself
+     * serves as the queue of cells whose neighbors are to be visited, so the cells are added to it
+     * in the order of their distance from the start cell - as a wave spreading from the start cell.
+     * <br><br>
+     * Returns the depth of the spreading, i.e. the distance of the farthest revealed cell from the start cell.
      */
-    private void revealCell(Cell cell){
-    	
-        //Ignore if it has been already uncovered (also prevents stackoverflow cycle) or
-        //if has flag.
-        if (cell.isRevealed() || cell.hasFlag()) 
-            return;
-    	
-        cell.reveal();
-        cell.setQuestionMark(false); //Ensure the question mark is not present after being uncovered.
-        newlyRevealedCells.add(cell.getCoordinate()); //Add to the list of revealed cells.
-    	coveredCells--; //Decrement the total number of covered cells
-    	
-        if (cell.getNearbyMinesCount() > 0) //Contains mine in neighborhood - do not uncover the neighbors.
-            return;
-    	
-        //Uncover all neighbors as the cell has no mine in the neighborhood
-        for (int y = -1; y < 2; y++)
-            for (int x = -1 ; x < 2; x++){
-                if (y == 0 && x == 0) //These are the 'cell' coordinates - no need to check yourself.
-                    continue;
-                Cell neighbour = getCellNeighbour(cell, x, y);
-                if (neighbour == null) //No neighbor - must be the margin position.
-                    continue;
-                revealCell(neighbour);
-        	}
+    private int reveal(int start, CellChanges revealed){
+
+        //Ignore if it has been already uncovered or if has flag.
+        if (has(start, REVEALED) || has(start, FLAG))
+            return 0;
+
+        int next = revealed.size();
+        revealOne(start, revealed);
+
+        int depth = 0;
+        int layerEnd = revealed.size(); //The end of the cells with the current distance from the start cell.
+        while (next < revealed.size()){
+            if (next == layerEnd){
+                depth++;
+                layerEnd = revealed.size();
+            }
+            int index = revealed.getIndex(next++);
+            if ((cells[index] & NEARBY_MINES_MASK) > 0) //Contains mine in neighborhood - do not uncover the neighbors.
+                continue;
+
+            //Uncover all neighbors as the cell has no mine in the neighborhood
+            int x = index % columnCount;
+            int y = index / columnCount;
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(rowCount - 1, y + 1); ny++)
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(columnCount - 1, x + 1); nx++){
+                    int neighbour = toIndex(nx, ny);
+                    if (has(neighbour, REVEALED) || has(neighbour, FLAG)) //Also skips the cell itself.
+                        continue;
+                    revealOne(neighbour, revealed);
+            	}
+        }
+        return depth;
     }
-    
+
     /**
-     * Returns a cell's neighbor for given row and column offset.
+     * Reveals a single cell with a given index.
      */
-    private Cell getCellNeighbour(Cell cell,int offsetX, int offsetY ){
-        Coordinate homeCoor = cell.getCoordinate();
-        Coordinate neighbourCoor = new Coordinate(homeCoor.x + offsetX,
-                                        homeCoor.y +  offsetY);
-        return cells.get(neighbourCoor);
+    private void revealOne(int index, CellChanges revealed){
+        cells[index] |= REVEALED;
+        cells[index] &= ~QUESTION_MARK; //Ensure the question mark is not present after being uncovered.
+        revealed.addIndex(index); //Add to the list of revealed cells.
+        coveredCells--; //Decrement the total number of covered cells
     }
-    
-    
+
+
     /**
      * Returns read-only view of the mine-field. Intended to be used in the view beyond
      * controller to reduce the coupling and possibility of views interacting with game model
      * directly.
-     * 
+     *
      * @return game information object
      */
     public GameInfo getGameInfo(){
@@ -427,5 +857,5 @@ public class MineField {
 
                 return gameInfo;
     }
-    
+
 }
@@ -0,0 +1,57 @@
+package sk.lkce.minesweeper.model;
+
+/**
+ * A copy of the cell states of a {@link MineField} maintained by applying
+ * the {@link CellChanges} produced by the mine-field. It lets the views display
+ * the mine-field while the mine-field itself is owned and modified by another thread.
+ * <br><br>
+ * The mirror is not thread-safe; it is expected to be used by a single thread,
+ * typically the event dispatch thread.
+ */
+public class MineFieldMirror implements GameInfo {
+
+    private final int columnCount;
+    private final int rowCount;
+    private final byte[] cells;
+    private int hitCell = -1;
+
+    /**
+     * Constructs a mirror of a mine-field with all the cells covered.
+     * @param columnCount number of columns of the mine-field
+     * @param rowCount number of rows of the mine-field
+     */
+    public MineFieldMirror(int columnCount, int rowCount){
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        cells = new byte[columnCount * rowCount];
+    }
+
+    /**
+     * Applies the changes on positions from a given range.
+     * @param changes the changes to be applied
+     * @param from the position of the first change to be applied, inclusive
+     * @param to the position of the last change to be applied, exclusive
+     */
+    public void apply(CellChanges changes, int from, int to){
+        for (int i = from; i < to; i++)
+            cells[changes.getIndex(i)] = changes.getState(i);
+        if (changes.getHitIndex() != -1)
+            hitCell = changes.getHitIndex();
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnCount;
+    }
+
+    @Override
+    public CellInfo getCellInfo(int x, int y) {
+        int index = y * columnCount + x;
+        return new PackedCellInfo(cells, columnCount, index, index == hitCell);
+    }
+}
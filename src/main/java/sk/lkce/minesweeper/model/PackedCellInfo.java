@@ -0,0 +1,82 @@
+package sk.lkce.minesweeper.model;
+
+/**
+ * A cell information object bound to a cell in an array of packed cell states,
+ * see {@link MineField}. It reads the current state of the cell at the time of each call.
+ */
+class PackedCellInfo implements CellInfo {
+
+    /* Bits of the packed cell state */
+    static final int NEARBY_MINES_MASK = 0x0F;
+    static final int MINE = 0x10;
+    static final int FLAG = 0x20;
+    static final int QUESTION_MARK = 0x40;
+    static final int REVEALED = 0x80;
+
+    private final byte[] cells;
+    private final int columnCount;
+    private final int index;
+    private final boolean hit;
+
+    /**
+     * Constructs a cell information object.
+     * @param cells the packed cell states
+     * @param columnCount number of columns of the mine-field
+     * @param index the index of the cell
+     * @param hit <code>true</code> if the cell contains the mine which was hit
+     */
+    PackedCellInfo(byte[] cells, int columnCount, int index, boolean hit){
+        this.cells = cells;
+        this.columnCount = columnCount;
+        this.index = index;
+        this.hit = hit;
+    }
+
+    /**
+     * Returns a packed cell state as the player may see it: of a covered cell
+     * only the flag and the question mark are kept.
+     * @param state the packed cell state
+     * @return the visible packed cell state
+     */
+    static int visibleState(byte state){
+        int visible = state & 0xFF;
+        if ((visible & REVEALED) == 0)
+            visible &= FLAG | QUESTION_MARK;
+        return visible;
+    }
+
+    @Override
+    public Coordinate getCoordinate() {
+        return new Coordinate(index % columnCount, index / columnCount);
+    }
+
+    @Override
+    public boolean isRevealed() {
+        return (cells[index] & REVEALED) != 0;
+    }
+
+    @Override
+    public boolean hasMine() {
+        return (cells[index] & MINE) != 0;
+    }
+
+    @Override
+    public boolean hasFlag() {
+        return (cells[index] & FLAG) != 0;
+    }
+
+    @Override
+    public int getsetNearbyMinesCount() {
+        return cells[index] & NEARBY_MINES_MASK;
+    }
+
+    @Override
+    public boolean wasMineHit() {
+        return hit;
+    }
+
+    @Override
+    public boolean hasQuestionMark() {
+        return (cells[index] & QUESTION_MARK) != 0;
+    }
+}
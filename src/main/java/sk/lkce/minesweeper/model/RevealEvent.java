@@ -0,0 +1,27 @@
+package sk.lkce.minesweeper.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A flight recorder event of a move revealing cells, see {@link MineField#revealCell(Coordinate)}
+ * and {@link MineField#chordCell(Coordinate)}.
+ */
+@Name("sk.lkce.minesweeper.Reveal")
+@Label("Reveal")
+@Category({"Minesweeper", "Engine"})
+class RevealEvent extends jdk.jfr.Event {
+
+    @Label("Chord")
+    boolean chord;
+
+    @Label("Cells Opened")
+    int cellsOpened;
+
+    @Label("Flood-fill Depth")
+    int floodFillDepth;
+
+    @Label("Mine Hit")
+    boolean mineHit;
+}
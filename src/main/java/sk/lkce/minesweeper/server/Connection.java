@@ -0,0 +1,527 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.timer.HashedWheelTimer;
+import sk.lkce.minesweeper.timer.Timeout;
+import sk.lkce.minesweeper.timer.TimeoutTask;
+
+/**
+ * A connection of a client to the game server. Decodes the request frames, see
+ * {@link Protocol}, runs them against the game session of the connection and
+ * queues the responses. The connection is owned by a single {@link SelectorLoop};
+ * other threads only offer it frames through {@link #offer(ByteBuffer)} and the
+ * related methods, which hand the work over to the loop.
+ * <br><br>
+ * An idle connection holds only its small read buffer and its session, the write
+ * queue is allocated only while the client does not keep up with the responses.
+ * <br><br>
+ * A connection watching a game of another player does not queue the moves without
+ * limit. When more than {@link #MAX_SPECTATOR_BACKLOG} bytes on top of the last keyframe
+ * are waiting to be written, the waiting frames are dropped and the spectator gets
+ * a fresh keyframe instead.
+ * <br><br>
+ * The game of the connection is ended when the player makes no move for the idle
+ * timeout of the server. The timeout is not re-scheduled on every move; it is checked
+ * when it expires and re-scheduled for the rest of the timeout if there were moves.
+ * <br><br>
+ * The moves of a connection racing, see {@link Race}, are handed over to its {@link RacePlayer}
+ * and validated by a race worker; their responses come back through {@link #deliver(RacePlayer, ByteBuffer)}.
+ */
+class Connection {
+
+    /** The number of bytes a spectator may fall behind before it is resynchronised. */
+    private static final int MAX_SPECTATOR_BACKLOG = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final SelectorLoop loop;
+    private final GameServer server;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(Protocol.HEADER_LENGTH + Protocol.MAX_REQUEST_LENGTH);
+    private final AtomicInteger queuedBytes = new AtomicInteger();
+    private volatile boolean resynchronising;
+    private volatile int backlogLimit = MAX_SPECTATOR_BACKLOG;
+    private Deque<ByteBuffer> writeQueue;
+    private GameSession session;
+    private GameSession watchedSession;
+    private RacePlayer racePlayer;
+    private Timeout idleTimeout;
+
+    /**
+     * Constructs a connection.
+     * @param channel the channel of the connection
+     * @param key the selection key of the channel
+     * @param loop the selector loop owning the connection
+     * @param server the server
+     */
+    Connection(SocketChannel channel, SelectionKey key, SelectorLoop loop, GameServer server){
+        this.channel = channel;
+        this.key = key;
+        this.loop = loop;
+        this.server = server;
+    }
+
+    /**
+     * Reads the available bytes from the channel and handles all the complete requests.
+     * @throws IOException if the reading failed or the client sent a malformed frame
+     */
+    void read() throws IOException{
+        if (channel.read(readBuffer) == -1){
+            close();
+            return;
+        }
+
+        readBuffer.flip();
+        while (readBuffer.remaining() >= Protocol.HEADER_LENGTH){
+            int length = readBuffer.getInt(readBuffer.position());
+            if (length < 1 || length > Protocol.MAX_REQUEST_LENGTH)
+                throw new IOException("Invalid request length: " + length);
+            if (readBuffer.remaining() < Protocol.HEADER_LENGTH + length)
+                break;
+
+            readBuffer.getInt();
+            int end = readBuffer.position() + length;
+            handle(readBuffer.get(), length - 1);
+            readBuffer.position(end);
+        }
+        readBuffer.compact();
+    }
+
+    /**
+     * Handles a single request whose payload of a given length follows in the read buffer.
+     */
+    private void handle(byte type, int payloadLength){
+        try {
+            switch (type){
+            case Protocol.NEW_GAME:
+                checkLength(payloadLength, 12);
+                newGame(readBuffer.getInt(), readBuffer.getInt(), readBuffer.getInt());
+                break;
+            case Protocol.REVEAL:
+            case Protocol.FLAG:
+            case Protocol.CHORD:
+                checkLength(payloadLength, 8);
+                move(type, readCoordinate());
+                break;
+            case Protocol.WATCH:
+                checkLength(payloadLength, 8);
+                watch(readBuffer.getLong());
+                break;
+            case Protocol.RACE:
+                checkLength(payloadLength, 20);
+                race(readBuffer.getInt(), readBuffer.getInt(), readBuffer.getInt(), readBuffer.getLong());
+                break;
+            case Protocol.RANKING:
+                checkLength(payloadLength, 12);
+                ranking(readBuffer.getLong(), readBuffer.getInt());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown request: " + type);
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            send(Protocol.encodeError(e.getMessage()));
+        }
+    }
+
+    /**
+     * Plays a move in the game or the race of this connection.
+     */
+    private void move(byte type, Coordinate coordinate){
+        if (racePlayer != null){
+            racePlayer.move(type, coordinate);
+            return;
+        }
+        switch (type){
+        case Protocol.REVEAL:
+            sendDelta(getSession().reveal(coordinate));
+            break;
+        case Protocol.FLAG:
+            sendDelta(getSession().toggleFlag(coordinate));
+            break;
+        default:
+            sendDelta(getSession().chord(coordinate));
+        }
+    }
+
+    /**
+     * Starts a new game in this connection.
+     */
+    private void newGame(int columns, int rows, int mines){
+        GameServer.checkBoard(columns, rows, mines);
+        endSession();
+        stopWatching();
+        leaveRace();
+        session = new GameSession(server.nextSessionId(), columns, rows, mines, loop);
+        server.sessionStarted(session);
+        send(Protocol.encodeGameStarted(session.getId(), columns, rows, mines));
+        scheduleIdleCheck(server.getIdleTimeoutNanos());
+    }
+
+    /**
+     * Joins the race on a given board in this connection. The start cell is revealed
+     * by the race worker of the player.
+     */
+    private void race(int columns, int rows, int mines, long seed){
+        GameServer.checkBoard(columns, rows, mines);
+        endSession();
+        stopWatching();
+        leaveRace();
+        Race race = server.joinRace(columns, rows, mines, seed);
+        long id = server.nextSessionId();
+        racePlayer = new RacePlayer(id, race, server.getRaceWorker(id), this);
+        send(Protocol.encodeRaceJoined(race.getId(), id, race.getStart()));
+        racePlayer.start();
+        scheduleRaceIdleCheck(server.getIdleTimeoutNanos());
+    }
+
+    /**
+     * Sends the best players of a race. The ranking is read without waiting for the race workers.
+     */
+    private void ranking(long id, int limit){
+        Race race = server.getRace(id);
+        if (race == null)
+            throw new IllegalArgumentException("No live race with the id " + id);
+        if (limit <= 0 || limit > Protocol.MAX_RANKING)
+            throw new IllegalArgumentException("Invalid ranking limit: " + limit);
+        send(Protocol.encodeRankingList(id, race.getRanking(limit)));
+    }
+
+    /**
+     * Schedules the check whether the session of this connection has been idle for
+     * the idle timeout of the server. The check is run on the loop of this connection.
+     */
+    private void scheduleIdleCheck(long delayNanos){
+        final GameSession checked = session;
+        idleTimeout = HashedWheelTimer.getInstance().schedule(new TimeoutTask(){
+
+            @Override
+            public void run(Timeout timeout) {
+                if (session != checked)
+                    return;
+                long remaining = server.getIdleTimeoutNanos() - checked.getIdleNanos();
+                if (remaining > 0){
+                    scheduleIdleCheck(remaining);
+                    return;
+                }
+                send(Protocol.encodeSessionEnded(checked.getId()));
+                endSession();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS, loop);
+    }
+
+    /**
+     * Schedules the check whether the race player of this connection has been idle for
+     * the idle timeout of the server. The check is run on the loop of this connection.
+     */
+    private void scheduleRaceIdleCheck(long delayNanos){
+        final RacePlayer checked = racePlayer;
+        idleTimeout = HashedWheelTimer.getInstance().schedule(new TimeoutTask(){
+
+            @Override
+            public void run(Timeout timeout) {
+                if (racePlayer != checked)
+                    return;
+                long remaining = server.getIdleTimeoutNanos() - checked.getIdleNanos();
+                if (remaining > 0){
+                    scheduleRaceIdleCheck(remaining);
+                    return;
+                }
+                send(Protocol.encodeSessionEnded(checked.getId()));
+                leaveRace();
+            }
+        }, delayNanos, TimeUnit.NANOSECONDS, loop);
+    }
+
+    /**
+     * Starts watching the live session with a given id. The keyframe of the session
+     * is sent once the session loop has added this connection to its spectators.
+     */
+    private void watch(long id){
+        final GameSession watched = server.getSession(id);
+        if (watched == null)
+            throw new IllegalArgumentException("No live game with the session id " + id);
+        if (watched == session)
+            throw new IllegalArgumentException("Cannot watch the game played in this connection");
+
+        endSession();
+        stopWatching();
+        leaveRace();
+        watchedSession = watched;
+        watched.getLoop().execute(new Runnable(){
+
+            @Override
+            public void run() {
+                watched.addSpectator(Connection.this);
+            }
+        });
+    }
+
+    /**
+     * Ends the session played in this connection, if any.
+     */
+    private void endSession(){
+        if (session == null)
+            return;
+        idleTimeout.cancel();
+        server.sessionEnded(session);
+        session.end();
+        session = null;
+    }
+
+    /**
+     * Leaves the race of this connection, if any. The responses of the moves still
+     * being validated are dropped.
+     */
+    private void leaveRace(){
+        if (racePlayer == null)
+            return;
+        idleTimeout.cancel();
+        server.leaveRace(racePlayer.getRace());
+        racePlayer = null;
+    }
+
+    /**
+     * Stops watching the watched session, if any.
+     */
+    private void stopWatching(){
+        final GameSession watched = watchedSession;
+        if (watched == null)
+            return;
+        watchedSession = null;
+        watched.getLoop().execute(new Runnable(){
+
+            @Override
+            public void run() {
+                watched.removeSpectator(Connection.this);
+            }
+        });
+    }
+
+    /**
+     * Returns the session of this connection.
+     * @throws IllegalStateException if no game has been started
+     */
+    private GameSession getSession(){
+        if (session == null)
+            throw new IllegalStateException("No game has been started");
+        return session;
+    }
+
+    /**
+     * Reads a coordinate from the read buffer.
+     */
+    private Coordinate readCoordinate(){
+        return new Coordinate(readBuffer.getInt(), readBuffer.getInt());
+    }
+
+    /**
+     * Checks the payload length of a request.
+     */
+    private static void checkLength(int length, int expected){
+        if (length != expected)
+            throw new IllegalArgumentException("Invalid payload length: " + length + ", expected: " + expected);
+    }
+
+    /**
+     * Sends the changes of a move to the player and its spectators. The changes
+     * are encoded only once.
+     */
+    private void sendDelta(CellChanges changes){
+        ByteBuffer delta = Protocol.encodeDelta(session.getStatus(), session.getField().getLeftFlagsCount(), changes);
+        send(delta.duplicate());
+        session.publish(delta);
+    }
+
+    /**
+     * Delivers a response of a race player to this connection. Invoked by the race worker
+     * of the player. The frame is dropped if the connection has left the race meanwhile.
+     * @param player the player
+     * @param frame the response frame
+     */
+    void deliver(final RacePlayer player, final ByteBuffer frame){
+        loop.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                if (racePlayer == player)
+                    send(frame);
+            }
+        });
+    }
+
+    /**
+     * Offers a delta frame of the watched session to this connection. Invoked on
+     * the loop of the watched session. The frame is dropped if this connection has
+     * fallen too far behind; the connection is resynchronised with a keyframe instead.
+     * @param frame the shared frame, which is not modified
+     */
+    void offer(ByteBuffer frame){
+        if (resynchronising)
+            return;
+        final ByteBuffer duplicate = frame.duplicate();
+        if (queuedBytes.addAndGet(duplicate.remaining()) > backlogLimit){
+            queuedBytes.addAndGet(-duplicate.remaining());
+            resynchronising = true;
+            loop.execute(new Runnable(){
+
+                @Override
+                public void run() {
+                    resynchronise();
+                }
+            });
+            return;
+        }
+        loop.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                enqueue(duplicate);
+            }
+        });
+    }
+
+    /**
+     * Offers a keyframe of the watched session to this connection, regardless of
+     * the backlog. Invoked on the loop of the watched session.
+     * @param frame the keyframe
+     */
+    void offerKeyframe(final ByteBuffer frame){
+        backlogLimit = MAX_SPECTATOR_BACKLOG + frame.remaining(); //Large mine-fields have large keyframes.
+        resynchronising = false;
+        queuedBytes.addAndGet(frame.remaining());
+        loop.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                enqueue(frame);
+            }
+        });
+    }
+
+    /**
+     * Notifies this connection that a watched session has ended. Invoked on the loop of the session.
+     * @param ended the session
+     * @param frame the frame announcing the end, shared by all the spectators
+     */
+    void watchedSessionEnded(final GameSession ended, ByteBuffer frame){
+        final ByteBuffer duplicate = frame.duplicate();
+        queuedBytes.addAndGet(duplicate.remaining());
+        loop.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                if (watchedSession == ended)
+                    watchedSession = null;
+                enqueue(duplicate);
+            }
+        });
+    }
+
+    /**
+     * Drops the frames waiting to be written, except for a partially written one,
+     * and asks the watched session for a keyframe.
+     */
+    private void resynchronise(){
+        if (writeQueue != null){
+            ByteBuffer head = writeQueue.peek();
+            boolean started = head.position() > 0;
+            for (ByteBuffer frame : writeQueue)
+                if (!started || frame != head)
+                    queuedBytes.addAndGet(-frame.remaining());
+            writeQueue.clear();
+            if (started)
+                writeQueue.add(head);
+            else
+                writeQueue = null;
+        }
+
+        final GameSession watched = watchedSession;
+        if (watched == null){
+            resynchronising = false;
+            return;
+        }
+        watched.getLoop().execute(new Runnable(){
+
+            @Override
+            public void run() {
+                watched.sendKeyframe(Connection.this);
+            }
+        });
+    }
+
+    /**
+     * Sends a response frame. The frame is written right away as far as the socket
+     * accepts it, the rest is queued until the channel is writable.
+     * @param frame the frame
+     */
+    void send(ByteBuffer frame){
+        queuedBytes.addAndGet(frame.remaining());
+        enqueue(frame);
+    }
+
+    /**
+     * Queues a frame whose bytes have been already counted and writes what the socket accepts.
+     */
+    private void enqueue(ByteBuffer frame){
+        if (!channel.isOpen())
+            return;
+        if (writeQueue == null)
+            writeQueue = new ArrayDeque<>(4);
+        writeQueue.add(frame);
+        try {
+            flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Writes the queued frames until the socket does not accept more.
+     * @throws IOException if the writing failed
+     */
+    void flush() throws IOException{
+        if (!key.isValid())
+            return;
+        while (writeQueue != null){
+            ByteBuffer frame = writeQueue.peek();
+            int written = channel.write(frame);
+            queuedBytes.addAndGet(-written);
+            if (frame.hasRemaining()){
+                key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                return;
+            }
+            writeQueue.remove();
+            if (writeQueue.isEmpty())
+                writeQueue = null;
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Closes the connection, ending its session.
+     */
+    void close(){
+        if (!channel.isOpen())
+            return;
+        key.cancel();
+        writeQueue = null;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            //Closing anyway.
+        }
+        endSession();
+        stopWatching();
+        leaveRace();
+        server.connectionClosed();
+    }
+}
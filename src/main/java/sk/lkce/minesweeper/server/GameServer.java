@@ -0,0 +1,352 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sk.lkce.minesweeper.metrics.Gauge;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.timer.HashedWheelTimer;
+
+/**
+ * A server hosting games for remote players over TCP, see {@link Protocol}. Each
+ * connection plays one game at a time; starting a new game replaces the previous one.
+ * Any live game can be watched by other connections by its session id.
+ * <br><br>
+ * The connections are multiplexed over a few {@link SelectorLoop}s, one per processor,
+ * rather than served by a thread each, so the number of concurrent games is bound
+ * by memory only. A game takes about the size of its mine-field plus a few hundred
+ * bytes for the connection, so tens of thousands of classic games fit easily.
+ * <br><br>
+ * The resident mine-fields are limited to {@link #DEFAULT_RESIDENT_CELLS} cells, or the
+ * value of the {@value #RESIDENT_CELLS_PROPERTY} system property, split evenly among
+ * the loops. The least recently used games above the limit are spilled to a temporary
+ * directory, see {@link SessionStore}, so hundreds of thousands of mostly idle games
+ * fit in a fixed heap.
+ * <br><br>
+ * A game without a move for {@link #DEFAULT_IDLE_TIMEOUT_SECONDS} seconds, or the value of the
+ * {@value #IDLE_TIMEOUT_PROPERTY} system property, is ended by the server. The timeouts
+ * of all the games are driven by the shared {@link HashedWheelTimer}.
+ * <br><br>
+ * The players of a {@link Race} share a board given by its size and seed. Their moves are
+ * validated by the race workers, single-threaded executors one per processor, each player
+ * always by the same one. The race is dropped when its last player leaves.
+ */
+public class GameServer {
+
+    /** The command line argument starting the server. */
+    public static final String ARGUMENT = "--server";
+    /** The default port of the server. */
+    public static final int DEFAULT_PORT = 7878;
+    /** The largest number of cells of a mine-field hosted by the server. */
+    public static final int MAX_CELLS = 1 << 20;
+    /** The system property with the largest number of cells of the resident mine-fields. */
+    public static final String RESIDENT_CELLS_PROPERTY = "minesweeper.server.residentCells";
+    /** The default largest number of cells of the resident mine-fields. */
+    public static final long DEFAULT_RESIDENT_CELLS = 64L << 20;
+    /** The system property with the idle timeout of a game in seconds. */
+    public static final String IDLE_TIMEOUT_PROPERTY = "minesweeper.server.idleTimeoutSeconds";
+    /** The default idle timeout of a game in seconds. */
+    public static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 30 * 60;
+    /** The length of the queue of connections waiting to be accepted. */
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private final int port;
+    private final SelectorLoop[] loops;
+    private final Path spillDirectory;
+    private final long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(
+            Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS));
+    private final AtomicLong sessionIds = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final ConcurrentMap<Long, GameSession> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong raceIds = new AtomicLong();
+    private final ConcurrentMap<String, Race> racesByKey = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Race> races = new ConcurrentHashMap<>();
+    private final ExecutorService[] raceWorkers;
+    private ServerSocketChannel serverChannel;
+    private int nextLoop; //Accessed only by the accepting loop.
+
+    /**
+     * Constructs a server.
+     * @param port the port to listen on
+     * @param loopCount the number of selector loops
+     * @throws IOException if the selectors could not be opened
+     */
+    public GameServer(int port, int loopCount) throws IOException{
+        this(port, loopCount, Long.getLong(RESIDENT_CELLS_PROPERTY, DEFAULT_RESIDENT_CELLS));
+    }
+
+    /**
+     * Constructs a server with a given limit of the resident mine-fields.
+     * @param port the port to listen on
+     * @param loopCount the number of selector loops
+     * @param maxResidentCells the largest number of cells of the resident mine-fields
+     * @throws IOException if the selectors or the spill directory could not be created
+     */
+    public GameServer(int port, int loopCount, long maxResidentCells) throws IOException{
+        this.port = port;
+        spillDirectory = Files.createTempDirectory("minesweeper-sessions");
+        spillDirectory.toFile().deleteOnExit();
+        loops = new SelectorLoop[loopCount];
+        for (int i = 0; i < loopCount; i++)
+            loops[i] = new SelectorLoop(this, new SessionStore(spillDirectory, maxResidentCells / loopCount));
+        raceWorkers = new ExecutorService[loopCount];
+        for (int i = 0; i < loopCount; i++){
+            final String name = "race-worker-" + i;
+            raceWorkers[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, name);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        MetricsRegistry.getInstance().gauge("server.connections", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return connections.get();
+            }
+        });
+        MetricsRegistry.getInstance().gauge("server.sessions", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return sessions.size();
+            }
+        });
+        MetricsRegistry.getInstance().gauge("server.races", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return races.size();
+            }
+        });
+        MetricsRegistry.getInstance().gauge("server.residentCells", new Gauge(){
+
+            @Override
+            public long getValue() {
+                long cells = 0;
+                for (SelectorLoop loop : loops)
+                    cells += loop.getSessionStore().getResidentCells();
+                return cells;
+            }
+        });
+    }
+
+    /**
+     * Starts listening and the selector loops.
+     * @throws IOException if the port could not be bound
+     */
+    public void start() throws IOException{
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+        loops[0].registerServer(serverChannel);
+        for (int i = 0; i < loops.length; i++){
+            Thread thread = new Thread(loops[i], "server-loop-" + i);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the server. The connections are dropped.
+     */
+    public void stop(){
+        for (SelectorLoop loop : loops)
+            loop.stop();
+        for (ExecutorService worker : raceWorkers)
+            worker.shutdown();
+        try {
+            if (serverChannel != null)
+                serverChannel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the port the server listens on.
+     * @return the port
+     */
+    public int getPort(){
+        try {
+            return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        } catch (IOException e) {
+            return port;
+        }
+    }
+
+    /**
+     * Accepts all the pending connections of a listening channel and hands them
+     * over to the loops in turn.
+     */
+    void accept(ServerSocketChannel channel){
+        try {
+            SocketChannel client;
+            while ((client = channel.accept()) != null){
+                client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                connections.incrementAndGet();
+                loops[nextLoop].register(client);
+                nextLoop = (nextLoop + 1) % loops.length;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Checks the size and the number of mines of a new board, which may have
+     * at most {@link #MAX_CELLS} cells. Shared by all the APIs hosting games.
+     * @param columns the number of columns
+     * @param rows the number of rows
+     * @param mines the number of mines
+     * @throws IllegalArgumentException if the size or the number of mines is out of range
+     */
+    public static void checkBoard(int columns, int rows, int mines){
+        if (columns <= 0 || rows <= 0 || (long) columns * rows > MAX_CELLS)
+            throw new IllegalArgumentException("Invalid mine-field size: " + columns + "x" + rows);
+        if (mines <= 0 || mines >= columns * rows)
+            throw new IllegalArgumentException("Invalid number of mines: " + mines);
+    }
+
+    /**
+     * Returns the time without a move after which a game is ended.
+     * @return the idle timeout in nanoseconds
+     */
+    long getIdleTimeoutNanos(){
+        return idleTimeoutNanos;
+    }
+
+    /**
+     * Returns a new unique session id.
+     * @return the session id
+     */
+    long nextSessionId(){
+        return sessionIds.incrementAndGet();
+    }
+
+    /**
+     * Registers a live session so that it can be watched.
+     * @param session the session
+     */
+    void sessionStarted(GameSession session){
+        sessions.put(session.getId(), session);
+    }
+
+    /**
+     * Unregisters a session which has ended.
+     * @param session the session
+     */
+    void sessionEnded(GameSession session){
+        sessions.remove(session.getId());
+    }
+
+    /**
+     * Returns the live session with a given id.
+     * @param id the session id
+     * @return the session or <code>null</code> if there is no such live session
+     */
+    GameSession getSession(long id){
+        return sessions.get(id);
+    }
+
+    /**
+     * Joins the race on a given board, starting a new race if there is none.
+     * @param columns the number of columns of the board
+     * @param rows the number of rows of the board
+     * @param mines the number of mines
+     * @param seed the seed of the mines
+     * @return the race, with the player counted in
+     */
+    Race joinRace(int columns, int rows, int mines, long seed){
+        String key = Race.key(columns, rows, mines, seed);
+        while (true){
+            Race race = racesByKey.get(key);
+            if (race == null){
+                Race started = new Race(raceIds.incrementAndGet(), columns, rows, mines, seed);
+                races.put(started.getId(), started);
+                race = racesByKey.putIfAbsent(key, started);
+                if (race != null)
+                    races.remove(started.getId());
+                else
+                    race = started;
+            }
+            if (race.join())
+                return race;
+            //The last player has just left the race, it is being removed.
+            racesByKey.remove(key, race);
+        }
+    }
+
+    /**
+     * Removes a player from a race, dropping the race if it was the last player.
+     * @param race the race
+     */
+    void leaveRace(Race race){
+        if (race.leave()){
+            racesByKey.remove(race.getKey(), race);
+            races.remove(race.getId());
+        }
+    }
+
+    /**
+     * Returns the live race with a given id.
+     * @param id the race id
+     * @return the race or <code>null</code> if there is no such race
+     */
+    Race getRace(long id){
+        return races.get(id);
+    }
+
+    /**
+     * Returns the worker validating the moves of a race player.
+     * @param session the session id of the player
+     * @return the single-threaded worker
+     */
+    Executor getRaceWorker(long session){
+        return raceWorkers[(int) (session % raceWorkers.length)];
+    }
+
+    /**
+     * Notifies the server that a connection has been closed.
+     */
+    void connectionClosed(){
+        connections.decrementAndGet();
+    }
+
+    /**
+     * Runs the server until the process is killed. The only optional argument is the port.
+     * @param args the command line arguments following {@link #ARGUMENT}
+     */
+    public static void main(String[] args){
+        try {
+            int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+            GameServer server = new GameServer(port, Runtime.getRuntime().availableProcessors());
+            server.start();
+            MetricsRegistry.getInstance().registerMBean();
+            System.out.println("Game server listening on port " + server.getPort());
+        } catch (NumberFormatException e) {
+            System.err.println("Usage: " + ARGUMENT + " [port]");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package sk.lkce.minesweeper.server;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * A game played on the server. Wraps a {@link MineField} and applies the moves
+ * of the player to it, the same way the {@link sk.lkce.minesweeper.gui.GameController}
+ * does for the local player. A session takes little more memory than its mine-field,
+ * which is one byte per cell. The mine-field is held by the {@link SessionStore} of the loop,
+ * which may spill it to disk while the game is idle; it is restored on the next move.
+ * <br><br>
+ * The game can be watched by spectators. The changes of each move are encoded once
+ * and the same frame is offered to all the spectators, see {@link #publish(ByteBuffer)}.
+ * A spectator joining or falling behind gets a keyframe with the whole game instead.
+ * <br><br>
+ * The session is not thread-safe; it is used by the selector loop of its player only.
+ * Spectators connected to other loops are added and removed by tasks run on that loop.
+ */
+class GameSession {
+
+    private final long id;
+    private final int cellCount;
+    private final SelectorLoop loop;
+    private final List<Connection> spectators = new ArrayList<>(0);
+    private int hitIndex = -1;
+    private long lastMoveTime = System.nanoTime();
+    private boolean ended;
+
+    /**
+     * Constructs a session with a new game.
+     * @param id the id of the session
+     * @param columns the number of columns of the mine-field
+     * @param rows the number of rows of the mine-field
+     * @param mines the number of mines
+     * @param loop the selector loop of the player
+     */
+    GameSession(long id, int columns, int rows, int mines, SelectorLoop loop){
+        this.id = id;
+        this.cellCount = columns * rows;
+        this.loop = loop;
+        loop.getSessionStore().add(this, new MineField(columns, rows, mines));
+    }
+
+    long getId(){
+        return id;
+    }
+
+    int getCellCount(){
+        return cellCount;
+    }
+
+    /**
+     * Returns the mine-field of the game, restoring it if it has been spilled.
+     * @return the mine-field
+     * @throws IllegalStateException if the spilled mine-field could not be restored
+     */
+    MineField getField(){
+        return loop.getSessionStore().get(this);
+    }
+
+    SelectorLoop getLoop(){
+        return loop;
+    }
+
+    /**
+     * Returns the time since the last move of the player, or since the start of the game.
+     * @return the idle time in nanoseconds
+     */
+    long getIdleNanos(){
+        return System.nanoTime() - lastMoveTime;
+    }
+
+    /**
+     * Adds a spectator and sends it the keyframe of the game. If the session has
+     * already ended, the spectator is only notified that the game is over for it.
+     * @param spectator the connection of the spectator
+     */
+    void addSpectator(Connection spectator){
+        if (ended){
+            spectator.watchedSessionEnded(this, Protocol.encodeSessionEnded(id));
+            return;
+        }
+        spectators.add(spectator);
+        sendKeyframe(spectator);
+    }
+
+    /**
+     * Removes a spectator.
+     * @param spectator the connection of the spectator
+     */
+    void removeSpectator(Connection spectator){
+        spectators.remove(spectator);
+    }
+
+    /**
+     * Sends the keyframe of the game, the state of all its cells, to a spectator.
+     * @param spectator the connection of the spectator
+     */
+    void sendKeyframe(Connection spectator){
+        if (spectators.contains(spectator))
+            spectator.offerKeyframe(Protocol.encodeKeyframe(id, getStatus(), getField(), hitIndex));
+    }
+
+    /**
+     * Offers the frame with the changes of a move to all the spectators. The frame
+     * is shared, each spectator gets only a duplicate of the buffer.
+     * @param delta the delta frame
+     */
+    void publish(ByteBuffer delta){
+        for (Connection spectator : spectators)
+            spectator.offer(delta);
+    }
+
+    /**
+     * Ends the session, the spectators are notified that the game is over for them.
+     * The mine-field is dropped from the store.
+     */
+    void end(){
+        ended = true;
+        loop.getSessionStore().remove(this);
+        ByteBuffer ended = Protocol.encodeSessionEnded(id);
+        for (Connection spectator : spectators)
+            spectator.watchedSessionEnded(this, ended);
+        spectators.clear();
+    }
+
+    /**
+     * Returns the status of the game, one of the {@link Protocol} status constants.
+     * @return the status
+     */
+    byte getStatus(){
+        MineField field = getField();
+        if (field.wasMineHit())
+            return Protocol.STATUS_LOST;
+        return field.isGameWon() ? Protocol.STATUS_WON : Protocol.STATUS_RUNNING;
+    }
+
+    /**
+     * Reveals a cell. The mines are put on the first reveal, so the first revealed cell never has a mine.
+     * @param coordinate the coordinate of the cell
+     * @return the changed cells
+     * @throws IllegalStateException if the game is over or the cell is flagged
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    CellChanges reveal(Coordinate coordinate){
+        checkRunning();
+        lastMoveTime = System.nanoTime();
+        MineField field = getField();
+        if (!field.areMinesSet()){
+            field.checkRevealable(coordinate);
+            field.putMines(coordinate);
+        }
+        return recordHit(field.revealCell(coordinate));
+    }
+
+    /**
+     * Reveals the neighbours of a revealed cell, see {@link MineField#chordCell(Coordinate)}.
+     * @param coordinate the coordinate of the cell
+     * @return the changed cells
+     * @throws IllegalStateException if the game is over
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    CellChanges chord(Coordinate coordinate){
+        checkRunning();
+        lastMoveTime = System.nanoTime();
+        MineField field = getField();
+        return recordHit(field.chordCell(coordinate));
+    }
+
+    /**
+     * Sets the flag of a covered cell, or removes it if the cell is flagged.
+     * @param coordinate the coordinate of the cell
+     * @return the changed cell
+     * @throws IllegalStateException if the game is over or the cell is revealed
+     * @throws IllegalArgumentException if the coordinate is out of the mine-field
+     */
+    CellChanges toggleFlag(Coordinate coordinate){
+        checkRunning();
+        lastMoveTime = System.nanoTime();
+        MineField field = getField();
+        field.toggleFlag(coordinate);
+        return field.getCellChanges(coordinate);
+    }
+
+    /**
+     * Remembers the mine which was hit by a move, for the keyframes.
+     */
+    private CellChanges recordHit(CellChanges changes){
+        if (changes.getHitIndex() != -1)
+            hitIndex = changes.getHitIndex();
+        return changes;
+    }
+
+    /**
+     * Checks that the game is not over.
+     */
+    private void checkRunning(){
+        if (getStatus() != Protocol.STATUS_RUNNING)
+            throw new IllegalStateException("The game is over");
+    }
+}
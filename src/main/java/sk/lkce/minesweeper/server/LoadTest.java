@@ -0,0 +1,280 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import sk.lkce.minesweeper.metrics.LatencyHistogram;
+import sk.lkce.minesweeper.metrics.LatencySummary;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+
+/**
+ * A load generator for capacity testing of the {@link GameServer}. It opens a number
+ * of {@link SimulatedClient}s, each playing real games on its own connection with
+ * a think time between the moves, against a server started in the same process or
+ * running on a given address. The arguments are <code>name=value</code> pairs:
+ * <ul>
+ *  <li><code>clients</code> - the number of clients, 100 by default</li>
+ *  <li><code>think</code> - the think time in milliseconds, 100 by default</li>
+ *  <li><code>seconds</code> - the duration of the test, 30 by default</li>
+ *  <li><code>board</code> - the games as <code>columns x rows x mines</code>, <code>30x16x99</code> by default</li>
+ *  <li><code>server</code> - <code>host:port</code> of a running server; a server is started
+ *  in the process if missing</li>
+ * </ul>
+ * The test reports the throughput of the commands, their latency percentiles,
+ * the garbage collection pauses of the process and, for a server started in the process,
+ * the heap taken by a session with its connection. The memory is measured after
+ * the clients stop playing, as the difference between the heap with their sessions
+ * open and after they disconnect, so it does not include the clients themselves.
+ */
+public class LoadTest {
+
+    /** The command line argument starting the load test. */
+    public static final String ARGUMENT = "--load-test";
+    private static final long REPORT_INTERVAL_MILLIS = 5000;
+    private static final long DISCONNECT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * The results recorded by the clients.
+     */
+    static final class Results {
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LongAdder commands = new LongAdder();
+        final LongAdder gamesWon = new LongAdder();
+        final LongAdder gamesLost = new LongAdder();
+        final LongAdder errors = new LongAdder();
+    }
+
+    private int clientCount = 100;
+    private long thinkMillis = 100;
+    private long seconds = 30;
+    private int columns = 30, rows = 16, mines = 99;
+    private InetSocketAddress address;
+
+    private final Results results = new Results();
+    private final LatencyHistogram gcPauses = new LatencyHistogram();
+
+    /**
+     * Creates a load test from the command line arguments.
+     * @param args the <code>name=value</code> arguments following {@link #ARGUMENT}
+     * @return the load test
+     * @throws IllegalArgumentException if an argument is invalid
+     */
+    public static LoadTest fromArguments(String[] args){
+        LoadTest test = new LoadTest();
+        for (String arg : args){
+            int separator = arg.indexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Invalid argument: " + arg);
+            String name = arg.substring(0, separator);
+            String value = arg.substring(separator + 1);
+            try {
+                switch (name){
+                case "clients":
+                    test.clientCount = Integer.parseInt(value);
+                    if (test.clientCount <= 0)
+                        throw new IllegalArgumentException("Invalid number of clients: " + value);
+                    break;
+                case "think":
+                    test.thinkMillis = Long.parseLong(value);
+                    break;
+                case "seconds":
+                    test.seconds = Long.parseLong(value);
+                    break;
+                case "board":
+                    String[] board = value.toLowerCase(Locale.ROOT).split("x");
+                    if (board.length != 3)
+                        throw new IllegalArgumentException("Invalid board: " + value);
+                    test.columns = Integer.parseInt(board[0]);
+                    test.rows = Integer.parseInt(board[1]);
+                    test.mines = Integer.parseInt(board[2]);
+                    break;
+                case "server":
+                    int colon = value.lastIndexOf(':');
+                    if (colon <= 0)
+                        throw new IllegalArgumentException("Invalid server: " + value);
+                    test.address = new InetSocketAddress(value.substring(0, colon),
+                            Integer.parseInt(value.substring(colon + 1)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown argument: " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid number: " + arg);
+            }
+        }
+        return test;
+    }
+
+    /**
+     * Runs the load test and prints the report to the standard output.
+     * @throws IOException if the in-process server could not be started
+     * @throws InterruptedException if interrupted while waiting for the clients
+     */
+    public void run() throws IOException, InterruptedException{
+        GameServer server = null;
+        InetSocketAddress target = address;
+        if (target == null){
+            server = new GameServer(0, Runtime.getRuntime().availableProcessors());
+            server.start();
+            target = new InetSocketAddress("localhost", server.getPort());
+        }
+
+        List<NotificationEmitter> emitters = new ArrayList<>();
+        NotificationListener gcListener = new NotificationListener(){
+
+            @Override
+            public void handleNotification(Notification notification, Object handback) {
+                if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+                    return;
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from(
+                        (CompositeData) notification.getUserData());
+                gcPauses.record(TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration()));
+            }
+        };
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()){
+            if (collector instanceof NotificationEmitter){
+                ((NotificationEmitter) collector).addNotificationListener(gcListener, null, null);
+                emitters.add((NotificationEmitter) collector);
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%d clients, think time %d ms, %dx%d with %d mines, %d s against %s%n",
+                clientCount, thinkMillis, columns, rows, mines, seconds, target);
+        List<SimulatedClient> clients = new ArrayList<>(clientCount);
+        List<Thread> threads = new ArrayList<>(clientCount);
+        for (int i = 0; i < clientCount; i++){
+            SimulatedClient client = new SimulatedClient(target, columns, rows, mines, thinkMillis, results);
+            Thread thread = new Thread(client, "load-client-" + i);
+            thread.setDaemon(true);
+            clients.add(client);
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long lastCommands = 0;
+        long lastTime = start;
+        while (System.nanoTime() < end){
+            TimeUnit.MILLISECONDS.sleep(Math.min(REPORT_INTERVAL_MILLIS,
+                    Math.max(1, TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime()))));
+            long commands = results.commands.sum();
+            long time = System.nanoTime();
+            System.out.printf(Locale.ROOT, "%5.0f s  %8.0f commands/s  p99 %.2f ms%n",
+                    (time - start) / 1e9, (commands - lastCommands) * 1e9 / (time - lastTime),
+                    results.latency.getValueAtPercentile(99) / 1e6);
+            lastCommands = commands;
+            lastTime = time;
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        for (SimulatedClient client : clients)
+            client.stop();
+        for (Thread thread : threads)
+            thread.join(thinkMillis + DISCONNECT_TIMEOUT_MILLIS);
+
+        //Stop recording the pauses before the collections forced by the measurement.
+        for (NotificationEmitter emitter : emitters){
+            try {
+                emitter.removeNotificationListener(gcListener);
+            } catch (ListenerNotFoundException e) {
+                //Not registered.
+            }
+        }
+
+        long sessionBytes = -1;
+        if (server != null)
+            sessionBytes = measureSessionMemory(clients);
+        for (SimulatedClient client : clients)
+            client.close();
+
+        if (server != null)
+            server.stop();
+
+        report(elapsedSeconds, sessionBytes);
+    }
+
+    /**
+     * Measures the heap taken by a session as the difference between the heap with the
+     * sessions of the clients open and after the clients have disconnected.
+     */
+    private long measureSessionMemory(List<SimulatedClient> clients) throws InterruptedException{
+        long withSessions = usedHeapAfterGc();
+        for (SimulatedClient client : clients)
+            client.close();
+
+        long deadline = System.currentTimeMillis() + DISCONNECT_TIMEOUT_MILLIS;
+        while (getServerConnections() > 0 && System.currentTimeMillis() < deadline)
+            TimeUnit.MILLISECONDS.sleep(10);
+        return (withSessions - usedHeapAfterGc()) / clients.size();
+    }
+
+    /**
+     * Returns the number of connections of the in-process server.
+     */
+    private static long getServerConnections(){
+        Long connections = MetricsRegistry.getInstance().getGauges().get("server.connections");
+        return connections != null ? connections : 0;
+    }
+
+    /**
+     * Returns the used heap after a full garbage collection.
+     */
+    private static long usedHeapAfterGc(){
+        for (int i = 0; i < 2; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    /**
+     * Prints the report of the test.
+     */
+    private void report(double elapsedSeconds, long sessionBytes){
+        LatencySummary latency = LatencySummary.of(results.latency);
+        LatencySummary pauses = LatencySummary.of(gcPauses);
+        long commands = results.commands.sum();
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "commands    %d in %.1f s, %.0f/s%n", commands, elapsedSeconds, commands / elapsedSeconds);
+        System.out.printf(Locale.ROOT, "latency     p50 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n",
+                latency.getMedian(), latency.getPercentile99(), latency.getPercentile999(), latency.getMax());
+        System.out.printf(Locale.ROOT, "games       %d won, %d lost, %d errors%n",
+                results.gamesWon.sum(), results.gamesLost.sum(), results.errors.sum());
+        System.out.printf(Locale.ROOT, "gc pauses   %d, total %.0f ms, p99 %.1f ms, max %.1f ms%n",
+                pauses.getCount(), pauses.getMean() * pauses.getCount(), pauses.getPercentile99(), pauses.getMax());
+        if (sessionBytes >= 0)
+            System.out.printf(Locale.ROOT, "memory      %d bytes per session%n", sessionBytes);
+        else
+            System.out.println("memory      not measured for a remote server");
+    }
+
+    /**
+     * Runs the load test.
+     * @param args the command line arguments following {@link #ARGUMENT}
+     */
+    public static void main(String[] args){
+        try {
+            fromArguments(args).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: " + ARGUMENT + " [clients=N] [think=MILLIS] [seconds=N] [board=CxRxM] [server=HOST:PORT]");
+        } catch (IOException | InterruptedException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package sk.lkce.minesweeper.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * The binary protocol of the game server. Every message in both directions is
+ * a frame of a 32 bit length followed by that many bytes: the message type and
+ * its payload. All the numbers are big-endian.
+ * <br><br>
+ * Requests of the client:
+ * <ul>
+ *  <li>{@link #NEW_GAME} <code>int columns, int rows, int mines</code> - starts a new game,
+ *  answered by {@link #GAME_STARTED}</li>
+ *  <li>{@link #REVEAL} <code>int x, int y</code> - reveals a cell, answered by {@link #DELTA}</li>
+ *  <li>{@link #FLAG} <code>int x, int y</code> - sets or removes the flag of a cell,
+ *  answered by {@link #DELTA}</li>
+ *  <li>{@link #CHORD} <code>int x, int y</code> - reveals the neighbours of a revealed cell,
+ *  answered by {@link #DELTA}</li>
+ *  <li>{@link #WATCH} <code>long session</code> - starts watching the live game of another player,
+ *  answered by {@link #KEYFRAME} and followed by the deltas of the game until {@link #SESSION_ENDED}</li>
+ *  <li>{@link #RACE} <code>int columns, int rows, int mines, long seed</code> - joins the race on the board
+ *  of the given size and seed, starting it if there is none, see {@link Race}; answered by {@link #RACE_JOINED}
+ *  followed by the {@link #DELTA} of the revealed start cell. The moves are then played on the board of the race.</li>
+ *  <li>{@link #RANKING} <code>long race, int limit</code> - asks for the best players of a race,
+ *  answered by {@link #RANKING_LIST}</li>
+ * </ul>
+ * Responses of the server:
+ * <ul>
+ *  <li>{@link #GAME_STARTED} <code>long session, int columns, int rows, int mines</code></li>
+ *  <li>{@link #DELTA} <code>byte status, int flagsLeft, int hitIndex, int count</code> followed by
+ *  <code>count</code> times <code>int index, byte state</code> - the cells changed by a move, see
+ *  {@link CellChanges#getVisibleState(int)} for the state bits. The status is one of
+ *  {@link #STATUS_RUNNING}, {@link #STATUS_WON} and {@link #STATUS_LOST}.</li>
+ *  <li>{@link #KEYFRAME} <code>long session, int columns, int rows, byte status, int flagsLeft, int hitIndex</code>
+ *  followed by <code>columns * rows</code> bytes of the cell states, row by row - the whole state
+ *  of a watched game</li>
+ *  <li>{@link #SESSION_ENDED} <code>long session</code> - the watched game has ended or has been abandoned,
+ *  or the own game has been ended by the server after being idle for too long</li>
+ *  <li>{@link #RACE_JOINED} <code>long race, long session, int startX, int startY</code> - the mines of
+ *  the race are put by {@link MineField#putMines(Coordinate, java.util.Random)}
+ *  with a generator of the seed and the start cell as the first click</li>
+ *  <li>{@link #RANKING_LIST} <code>long race, int count</code> followed by <code>count</code> times
+ *  <code>long session, long millis</code> - the players who have won the race by their finish time</li>
+ *  <li>{@link #ERROR} <code>short length</code> followed by a UTF-8 message - a request
+ *  could not be handled</li>
+ * </ul>
+ */
+final class Protocol {
+
+    /* Request types */
+    static final byte NEW_GAME = 1;
+    static final byte REVEAL = 2;
+    static final byte FLAG = 3;
+    static final byte CHORD = 4;
+    static final byte WATCH = 5;
+    static final byte RACE = 6;
+    static final byte RANKING = 7;
+
+    /* Response types */
+    static final byte GAME_STARTED = (byte) 0x81;
+    static final byte DELTA = (byte) 0x82;
+    static final byte KEYFRAME = (byte) 0x83;
+    static final byte SESSION_ENDED = (byte) 0x84;
+    static final byte RACE_JOINED = (byte) 0x85;
+    static final byte RANKING_LIST = (byte) 0x86;
+    static final byte ERROR = (byte) 0xFF;
+
+    /* Game status */
+    static final byte STATUS_RUNNING = 0;
+    static final byte STATUS_WON = 1;
+    static final byte STATUS_LOST = 2;
+
+    /** The length of the frame header, the frame length. */
+    static final int HEADER_LENGTH = 4;
+    /** The largest frame length of a request. */
+    static final int MAX_REQUEST_LENGTH = 21;
+    /** The length of a changed cell in a delta. */
+    static final int CELL_LENGTH = 5;
+    /** The length of a player in a ranking. */
+    static final int RANKED_LENGTH = 16;
+    /** The largest number of players in a ranking. */
+    static final int MAX_RANKING = 1000;
+
+    /**
+     * No instances.
+     */
+    private Protocol(){}
+
+    /**
+     * Encodes a {@link #GAME_STARTED} response.
+     * @param session the session id
+     * @param columns the number of columns
+     * @param rows the number of rows
+     * @param mines the number of mines
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeGameStarted(long session, int columns, int rows, int mines){
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + 21);
+        frame.putInt(21).put(GAME_STARTED).putLong(session).putInt(columns).putInt(rows).putInt(mines);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes a {@link #DELTA} response.
+     * @param status the status of the game
+     * @param flagsLeft the number of flags left
+     * @param changes the changed cells
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeDelta(byte status, int flagsLeft, CellChanges changes){
+        int count = changes.size();
+        int length = 14 + count * CELL_LENGTH;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + length);
+        frame.putInt(length).put(DELTA).put(status).putInt(flagsLeft).putInt(changes.getHitIndex()).putInt(count);
+        for (int i = 0; i < count; i++)
+            frame.putInt(changes.getIndex(i)).put((byte) changes.getVisibleState(i));
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes a {@link #KEYFRAME} response.
+     * @param session the session id
+     * @param status the status of the game
+     * @param field the mine-field of the game
+     * @param hitIndex the index of the cell with the mine which was hit or -1
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeKeyframe(long session, byte status, MineField field, int hitIndex){
+        int columns = field.getColumnCount();
+        int rows = field.getRowCount();
+        int length = 26 + columns * rows;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + length);
+        frame.putInt(length).put(KEYFRAME).putLong(session).putInt(columns).putInt(rows)
+                .put(status).putInt(field.getLeftFlagsCount()).putInt(hitIndex);
+        for (int y = 0; y < rows; y++)
+            for (int x = 0; x < columns; x++)
+                frame.put((byte) field.getVisibleState(x, y));
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes a {@link #SESSION_ENDED} response.
+     * @param session the session id
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeSessionEnded(long session){
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + 9);
+        frame.putInt(9).put(SESSION_ENDED).putLong(session);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes a {@link #RACE_JOINED} response.
+     * @param race the race id
+     * @param session the session id of the player
+     * @param start the start cell of the race
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeRaceJoined(long race, long session, Coordinate start){
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + 25);
+        frame.putInt(25).put(RACE_JOINED).putLong(race).putLong(session).putInt(start.x).putInt(start.y);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes a {@link #RANKING_LIST} response.
+     * @param race the race id
+     * @param players the ranked players
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeRankingList(long race, Race.Finish[] players){
+        int length = 13 + players.length * RANKED_LENGTH;
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + length);
+        frame.putInt(length).put(RANKING_LIST).putLong(race).putInt(players.length);
+        for (Race.Finish player : players)
+            frame.putLong(player.getPlayerId()).putLong(player.getMillis());
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Encodes an {@link #ERROR} response.
+     * @param message the error message
+     * @return the frame ready to be written
+     */
+    static ByteBuffer encodeError(String message){
+        byte[] text = String.valueOf(message).getBytes(StandardCharsets.UTF_8);
+        int textLength = Math.min(text.length, Short.MAX_VALUE);
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + 3 + textLength);
+        frame.putInt(3 + textLength).put(ERROR).putShort((short) textLength).put(text, 0, textLength);
+        frame.flip();
+        return frame;
+    }
+}
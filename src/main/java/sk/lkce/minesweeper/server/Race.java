@@ -0,0 +1,163 @@
+package sk.lkce.minesweeper.server;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NavigableSet;
+import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * A race of many players on the same board. The board is identified by its size,
+ * the number of mines and a seed: the mines are put by {@link MineField#putMines(Coordinate, Random)}
+ * with a generator of the seed and the start cell of the race as the first click,
+ * so every player, and any client replaying the race locally, gets the same mines.
+ * The start cell is revealed for the players when they join.
+ * <br><br>
+ * The players who have won are ranked by their finish time in a concurrent skip list.
+ * The ranking is written by the race workers validating the moves and read by the
+ * selector loops answering the ranking requests, neither of them ever waits for the other.
+ * Only the id and the finish time of a player are ranked, so the boards and the connections
+ * of the finished players are not kept until the race is closed.
+ */
+class Race {
+
+    /** Orders the players by the finish time, the earlier session first on a tie. */
+    private static final Comparator<Finish> BY_FINISH_TIME = new Comparator<Finish>(){
+
+        @Override
+        public int compare(Finish o1, Finish o2) {
+            int result = Long.compare(o1.getMillis(), o2.getMillis());
+            return result != 0 ? result : Long.compare(o1.getPlayerId(), o2.getPlayerId());
+        }
+    };
+
+    private final long id;
+    private final int columns, rows, mines;
+    private final long seed;
+    private final Coordinate start;
+    private final NavigableSet<Finish> ranking = new ConcurrentSkipListSet<>(BY_FINISH_TIME);
+    private int playerCount;
+    private boolean closed;
+
+    /**
+     * Constructs a race.
+     * @param id the id of the race
+     * @param columns the number of columns of the board
+     * @param rows the number of rows of the board
+     * @param mines the number of mines
+     * @param seed the seed of the mines
+     */
+    Race(long id, int columns, int rows, int mines, long seed){
+        this.id = id;
+        this.columns = columns;
+        this.rows = rows;
+        this.mines = mines;
+        this.seed = seed;
+        this.start = new Coordinate(columns / 2, rows / 2);
+    }
+
+    /**
+     * Returns the key identifying the board of a race.
+     * @param columns the number of columns of the board
+     * @param rows the number of rows of the board
+     * @param mines the number of mines
+     * @param seed the seed of the mines
+     * @return the key
+     */
+    static String key(int columns, int rows, int mines, long seed){
+        return columns + "x" + rows + "x" + mines + "/" + seed;
+    }
+
+    long getId(){
+        return id;
+    }
+
+    String getKey(){
+        return key(columns, rows, mines, seed);
+    }
+
+    Coordinate getStart(){
+        return start;
+    }
+
+    /**
+     * Creates a new board of the race with the mines put, ready for the start cell to be revealed.
+     * @return the board
+     */
+    MineField newBoard(){
+        MineField field = new MineField(columns, rows, mines);
+        field.putMines(start, new Random(seed));
+        return field;
+    }
+
+    /**
+     * Adds a player to the race.
+     * @return <code>false</code> if the race has been closed after its last player left
+     */
+    synchronized boolean join(){
+        if (closed)
+            return false;
+        playerCount++;
+        return true;
+    }
+
+    /**
+     * Removes a player from the race. The race is closed when its last player leaves.
+     * @return <code>true</code> if the race has been closed
+     */
+    synchronized boolean leave(){
+        playerCount--;
+        if (playerCount == 0)
+            closed = true;
+        return closed;
+    }
+
+    /**
+     * Ranks a player who has won the race.
+     * @param playerId the session id of the player
+     * @param millis the time the player took to win the race in milliseconds
+     */
+    void finished(long playerId, long millis){
+        ranking.add(new Finish(playerId, millis));
+    }
+
+    /**
+     * Returns the best players of the race.
+     * @param limit the largest number of the players returned
+     * @return the finishes of the players ordered by their finish time
+     */
+    Finish[] getRanking(int limit){
+        Finish[] result = new Finish[limit];
+        int count = 0;
+        Iterator<Finish> players = ranking.iterator();
+        while (count < limit && players.hasNext())
+            result[count++] = players.next();
+        return count == limit ? result : Arrays.copyOf(result, count);
+    }
+
+    /**
+     * The finish of a player who has won the race, an entry of the ranking.
+     */
+    static final class Finish {
+
+        private final long playerId;
+        private final long millis;
+
+        Finish(long playerId, long millis){
+            this.playerId = playerId;
+            this.millis = millis;
+        }
+
+        long getPlayerId(){
+            return playerId;
+        }
+
+        long getMillis(){
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package sk.lkce.minesweeper.server;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.model.CellChanges;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * A player of a {@link Race}. The moves of the player are validated against the player's
+ * own authoritative board by a race worker of the server rather than by the selector loop
+ * of the connection, so the large boards of a race do not hold up the other connections
+ * of the loop. All the moves of a player are run by the same single-threaded worker,
+ * in the order they were received, and the board is touched by that worker only.
+ * The responses are handed back to the loop of the connection. The board is dropped
+ * as soon as the game of the player is over.
+ */
+class RacePlayer {
+
+    private static final Counter MOVES = MetricsRegistry.getInstance().counter("server.raceMoves");
+    private static final Counter FINISHED = MetricsRegistry.getInstance().counter("server.racesFinished");
+
+    private final long id;
+    private final Race race;
+    private final Executor worker;
+    private final Connection connection;
+    private MineField field; //Accessed only by the worker.
+    private long lastMoveTime = System.nanoTime(); //Accessed only by the loop of the connection.
+
+    /**
+     * Constructs a player.
+     * @param id the session id of the player
+     * @param race the race
+     * @param worker the single-threaded worker validating the moves of the player
+     * @param connection the connection of the player
+     */
+    RacePlayer(long id, Race race, Executor worker, Connection connection){
+        this.id = id;
+        this.race = race;
+        this.worker = worker;
+        this.connection = connection;
+    }
+
+    long getId(){
+        return id;
+    }
+
+    Race getRace(){
+        return race;
+    }
+
+    /**
+     * Returns the time since the last move of the player, or since joining the race.
+     * @return the idle time in nanoseconds
+     */
+    long getIdleNanos(){
+        return System.nanoTime() - lastMoveTime;
+    }
+
+    /**
+     * Creates the board of the player and reveals its start cell. The delta of the
+     * start cell is sent to the player.
+     * @throws IllegalStateException if the server is stopping
+     */
+    void start(){
+        submit(new Runnable(){
+
+            @Override
+            public void run() {
+                field = race.newBoard();
+                deliver(field.revealCell(race.getStart()));
+            }
+        });
+    }
+
+    /**
+     * Validates and applies a move of the player. The delta, or an error if the move
+     * is not valid, is sent to the player.
+     * @param type the type of the move, {@link Protocol#REVEAL}, {@link Protocol#FLAG} or {@link Protocol#CHORD}
+     * @param coordinate the coordinate of the cell
+     * @throws IllegalStateException if the server is stopping
+     */
+    void move(final byte type, final Coordinate coordinate){
+        lastMoveTime = System.nanoTime();
+        submit(new Runnable(){
+
+            @Override
+            public void run() {
+                try {
+                    deliver(apply(type, coordinate));
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    connection.deliver(RacePlayer.this, Protocol.encodeError(e.getMessage()));
+                }
+            }
+        });
+    }
+
+    /**
+     * Applies a move to the board.
+     */
+    private CellChanges apply(byte type, Coordinate coordinate){
+        MOVES.increment();
+        if (field == null)
+            throw new IllegalStateException("The game is over");
+
+        switch (type){
+        case Protocol.REVEAL:
+            return field.revealCell(coordinate);
+        case Protocol.CHORD:
+            return field.chordCell(coordinate);
+        default:
+            field.toggleFlag(coordinate);
+            return field.getCellChanges(coordinate);
+        }
+    }
+
+    /**
+     * Sends the changes of a move to the player and ranks the player if the move has won the race.
+     * The board is dropped if the move has ended the game.
+     */
+    private void deliver(CellChanges changes){
+        byte status = Protocol.STATUS_RUNNING;
+        if (field.wasMineHit()){
+            status = Protocol.STATUS_LOST;
+        } else if (field.isGameWon()){
+            status = Protocol.STATUS_WON;
+            race.finished(id, TimeUnit.NANOSECONDS.toMillis(field.getClock().getElapsedNanos()));
+            FINISHED.increment();
+        }
+        ByteBuffer delta = Protocol.encodeDelta(status, field.getLeftFlagsCount(), changes);
+        if (status != Protocol.STATUS_RUNNING)
+            field = null;
+        connection.deliver(this, delta);
+    }
+
+    /**
+     * Hands a task over to the worker of the player.
+     */
+    private void submit(Runnable task){
+        try {
+            worker.execute(task);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("The server is stopping");
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+
+/**
+ * A thread multiplexing many connections with a {@link Selector}. The moves of
+ * the games are cheap compared to the network round trip, so they are run right
+ * on the loop thread, which avoids any hand-over or locking. The server runs
+ * one loop per processor.
+ * <br><br>
+ * Channels are handed over to the loop with {@link #register(SocketChannel)} from
+ * any thread; they are registered with the selector by the loop thread itself.
+ * Other work touching the connections of the loop, e.g. sending the moves of a game
+ * to its spectators, is handed over with {@link #execute(Runnable)} the same way.
+ * <br><br>
+ * The mine-fields of the games played on the loop are kept in its own {@link SessionStore}.
+ */
+class SelectorLoop implements Runnable, Executor {
+
+    private final GameServer server;
+    private final Selector selector;
+    private final SessionStore sessionStore;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructs a loop.
+     * @param server the server the loop belongs to
+     * @param sessionStore the store of the mine-fields of the games played on the loop
+     * @throws IOException if the selector could not be opened
+     */
+    SelectorLoop(GameServer server, SessionStore sessionStore) throws IOException{
+        this.server = server;
+        this.selector = Selector.open();
+        this.sessionStore = sessionStore;
+    }
+
+    SessionStore getSessionStore(){
+        return sessionStore;
+    }
+
+    /**
+     * Registers a listening channel whose connections are accepted by this loop.
+     * Must be invoked before the loop is started.
+     * @param serverChannel the listening channel
+     * @throws IOException if the channel could not be registered
+     */
+    void registerServer(ServerSocketChannel serverChannel) throws IOException{
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Hands a new connection over to this loop.
+     * @param channel the channel of the connection
+     */
+    void register(final SocketChannel channel){
+        execute(new Runnable(){
+
+            @Override
+            public void run() {
+                try {
+                    channel.configureBlocking(false);
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+                    key.attach(new Connection(channel, key, SelectorLoop.this, server));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    server.connectionClosed();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs a task on the loop thread. The tasks are run in the order they were
+     * handed over in.
+     * @param task the task
+     */
+    @Override
+    public void execute(Runnable task){
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Stops the loop.
+     */
+    void stop(){
+        try {
+            selector.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (selector.isOpen()){
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()){
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    handle(key);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            } catch (RuntimeException e) {
+                if (!selector.isOpen()) //Stopped.
+                    break;
+                throw e;
+            }
+        }
+        sessionStore.clear();
+    }
+
+    /**
+     * Runs the tasks handed over to this loop.
+     */
+    private void runTasks(){
+        Runnable task;
+        while ((task = tasks.poll()) != null){
+            try {
+                task.run();
+            } catch (IllegalStateException e) {
+                e.printStackTrace(); //E.g. a spilled game could not be restored for a spectator.
+            }
+        }
+    }
+
+    /**
+     * Handles a selected key.
+     */
+    private void handle(SelectionKey key){
+        if (key.isAcceptable()){
+            server.accept((ServerSocketChannel) key.channel());
+            return;
+        }
+
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isReadable())
+                connection.read();
+            if (key.isValid() && key.isWritable())
+                connection.flush();
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import sk.lkce.minesweeper.metrics.Counter;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * Keeps the mine-fields of the game sessions of a single {@link SelectorLoop} within
+ * a memory budget. The mine-fields are kept in the order of their last use; when the
+ * resident mine-fields have more cells than the budget allows, the least recently used
+ * ones are spilled to files in the packed form, see {@link MineField#writePacked(ByteBuffer)},
+ * and dropped from the heap. A spilled mine-field is restored transparently the next
+ * time its session is used, so an idle game costs only its session and connection.
+ * <br><br>
+ * The store is used by the thread of its loop only. The files are written and read
+ * with a single direct buffer of the loop; a mine-field of the server has at most
+ * {@link GameServer#MAX_CELLS} cells, so a spill or a restore is a single short
+ * write or read, which is served by the page cache in most cases.
+ */
+class SessionStore {
+
+    private static final String FILE_SUFFIX = ".board";
+    private static final Counter SPILLS = MetricsRegistry.getInstance().counter("server.sessionsSpilled");
+    private static final Counter RESTORES = MetricsRegistry.getInstance().counter("server.sessionsRestored");
+
+    private final Path directory;
+    private final long maxResidentCells;
+    private final LinkedHashMap<GameSession, MineField> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<GameSession> spilled = new HashSet<>();
+    private volatile long residentCells;
+    private ByteBuffer buffer;
+
+    /**
+     * Constructs a store.
+     * @param directory the directory of the spilled mine-fields
+     * @param maxResidentCells the number of cells of the resident mine-fields above which
+     * the least recently used ones are spilled
+     */
+    SessionStore(Path directory, long maxResidentCells){
+        this.directory = directory;
+        this.maxResidentCells = maxResidentCells;
+    }
+
+    /**
+     * Adds the mine-field of a new session as the most recently used one.
+     * @param session the session
+     * @param field the mine-field of the session
+     */
+    void add(GameSession session, MineField field){
+        resident.put(session, field);
+        residentCells += session.getCellCount();
+        evict();
+    }
+
+    /**
+     * Returns the mine-field of a session, restoring it if it has been spilled,
+     * and marks it as the most recently used one.
+     * @param session the session
+     * @return the mine-field of the session
+     * @throws IllegalStateException if the spilled mine-field could not be restored
+     */
+    MineField get(GameSession session){
+        MineField field = resident.get(session);
+        if (field != null)
+            return field;
+
+        field = restore(session);
+        add(session, field);
+        return field;
+    }
+
+    /**
+     * Removes the mine-field of a session which has ended.
+     * @param session the session
+     */
+    void remove(GameSession session){
+        if (resident.remove(session) != null){
+            residentCells -= session.getCellCount();
+        } else if (spilled.remove(session)){
+            delete(session);
+        }
+    }
+
+    /**
+     * Deletes the files of all the spilled mine-fields. Invoked when the loop stops.
+     */
+    void clear(){
+        for (GameSession session : spilled)
+            delete(session);
+        spilled.clear();
+        resident.clear();
+        residentCells = 0;
+    }
+
+    /**
+     * Returns the number of cells of the resident mine-fields.
+     * @return the number of cells
+     */
+    long getResidentCells(){
+        return residentCells;
+    }
+
+    /**
+     * Spills the least recently used mine-fields until the resident ones fit the budget.
+     * The most recently used mine-field is never spilled.
+     */
+    private void evict(){
+        Iterator<Map.Entry<GameSession, MineField>> entries = resident.entrySet().iterator();
+        while (residentCells > maxResidentCells && resident.size() > 1){
+            Map.Entry<GameSession, MineField> eldest = entries.next();
+            try {
+                spill(eldest.getKey(), eldest.getValue());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return; //Kept resident, it is tried again on the next eviction.
+            }
+            entries.remove();
+            spilled.add(eldest.getKey());
+            residentCells -= eldest.getKey().getCellCount();
+        }
+    }
+
+    /**
+     * Writes a mine-field to the file of its session.
+     */
+    private void spill(GameSession session, MineField field) throws IOException{
+        ByteBuffer buffer = getBuffer(field.getPackedLength());
+        field.writePacked(buffer);
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(getFile(session), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        SPILLS.increment();
+    }
+
+    /**
+     * Reads the mine-field of a session from its file and deletes the file.
+     */
+    private MineField restore(GameSession session){
+        if (!spilled.remove(session))
+            throw new IllegalStateException("The game of the session " + session.getId() + " has ended");
+
+        try {
+            ByteBuffer buffer = getBuffer(MineField.PACKED_HEADER_LENGTH + session.getCellCount());
+            try (FileChannel channel = FileChannel.open(getFile(session), StandardOpenOption.READ)){
+                while (buffer.hasRemaining() && channel.read(buffer) != -1)
+                    ; //Read until the buffer is full or the end of the file.
+            }
+            buffer.flip();
+            RESTORES.increment();
+            return MineField.readPacked(buffer);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("The game of the session " + session.getId() + " could not be restored", e);
+        } finally {
+            delete(session);
+        }
+    }
+
+    /**
+     * Returns the cleared buffer for the packed form of a given length.
+     */
+    private ByteBuffer getBuffer(int length){
+        if (buffer == null || buffer.capacity() < length)
+            buffer = ByteBuffer.allocateDirect(length);
+        buffer.clear().limit(length);
+        return buffer;
+    }
+
+    /**
+     * Deletes the file of a session, if any.
+     */
+    private void delete(GameSession session){
+        try {
+            Files.deleteIfExists(getFile(session));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the file of a spilled session.
+     */
+    private Path getFile(GameSession session){
+        return directory.resolve(session.getId() + FILE_SUFFIX);
+    }
+}
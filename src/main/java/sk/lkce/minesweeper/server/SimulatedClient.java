@@ -0,0 +1,210 @@
+package sk.lkce.minesweeper.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A client of the {@link GameServer} simulated by the {@link LoadTest}. The client plays
+ * games one after another until it is stopped, waiting for the think time between
+ * the moves. It keeps the visible state of the board from the deltas and plays by
+ * simple deductions: a numbered cell whose covered neighbours must all be mines
+ * gets one of them flagged, a numbered cell with all its mines flagged is chorded,
+ * and when nothing can be deduced, a random covered cell is revealed.
+ * <br><br>
+ * The time from sending a move to receiving its response is recorded in the shared
+ * latency histogram. A game answered by an error is given up.
+ */
+class SimulatedClient implements Runnable {
+
+    private static final int DECIDED_MASK = 0x80 | 0x20; //Revealed or flagged.
+    private static final int REVEALED = 0x80;
+    private static final int FLAG = 0x20;
+    private static final int NEARBY_MINES_MASK = 0x0F;
+    /** The status of a game given up after an error response. */
+    private static final byte STATUS_FAILED = -1;
+
+    private final InetSocketAddress address;
+    private final int columns, rows, mines;
+    private final long thinkMillis;
+    private final LoadTest.Results results;
+    private final Random random = new Random();
+    private volatile boolean running = true;
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private byte[] board;
+    private byte status;
+
+    /**
+     * Constructs a client.
+     * @param address the address of the server
+     * @param columns the number of columns of the games
+     * @param rows the number of rows of the games
+     * @param mines the number of mines of the games
+     * @param thinkMillis the time between the moves in milliseconds
+     * @param results the results the client records into
+     */
+    SimulatedClient(InetSocketAddress address, int columns, int rows, int mines, long thinkMillis,
+            LoadTest.Results results){
+        this.address = address;
+        this.columns = columns;
+        this.rows = rows;
+        this.mines = mines;
+        this.thinkMillis = thinkMillis;
+        this.results = results;
+    }
+
+    /**
+     * Stops playing after the current move. The connection is kept open, so the server
+     * keeps the session of the client until {@link #close()}.
+     */
+    void stop(){
+        running = false;
+    }
+
+    /**
+     * Closes the connection.
+     */
+    void close(){
+        try {
+            if (socket != null)
+                socket.close();
+        } catch (IOException e) {
+            //Closing anyway.
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (running)
+                playGame();
+        } catch (IOException e) {
+            if (running)
+                e.printStackTrace();
+        } catch (InterruptedException e) {
+            //Stopped.
+        }
+    }
+
+    /**
+     * Plays a single game until it is over or the client is stopped.
+     */
+    private void playGame() throws IOException, InterruptedException{
+        out.writeInt(13);
+        out.writeByte(Protocol.NEW_GAME);
+        out.writeInt(columns);
+        out.writeInt(rows);
+        out.writeInt(mines);
+        request();
+        board = new byte[columns * rows];
+        status = Protocol.STATUS_RUNNING;
+
+        move(Protocol.REVEAL, columns / 2 + rows / 2 * columns);
+        while (running && status == Protocol.STATUS_RUNNING){
+            if (thinkMillis > 0)
+                TimeUnit.MILLISECONDS.sleep(thinkMillis);
+            nextMove();
+        }
+
+        if (status == Protocol.STATUS_WON)
+            results.gamesWon.increment();
+        else if (status == Protocol.STATUS_LOST)
+            results.gamesLost.increment();
+    }
+
+    /**
+     * Finds and plays the next move.
+     */
+    private void nextMove() throws IOException{
+        for (int index = 0; index < board.length; index++){
+            if ((board[index] & REVEALED) == 0)
+                continue;
+            int nearbyMines = board[index] & NEARBY_MINES_MASK;
+            if (nearbyMines == 0)
+                continue;
+
+            int flagged = 0, covered = 0, coveredIndex = -1;
+            int x = index % columns, y = index / columns;
+            for (int ny = Math.max(0, y - 1); ny <= Math.min(rows - 1, y + 1); ny++){
+                for (int nx = Math.max(0, x - 1); nx <= Math.min(columns - 1, x + 1); nx++){
+                    int neighbour = ny * columns + nx;
+                    if ((board[neighbour] & FLAG) != 0){
+                        flagged++;
+                    } else if ((board[neighbour] & DECIDED_MASK) == 0){
+                        covered++;
+                        coveredIndex = neighbour;
+                    }
+                }
+            }
+            if (covered == 0)
+                continue;
+            if (flagged == nearbyMines){
+                move(Protocol.CHORD, index);
+                return;
+            }
+            if (covered == nearbyMines - flagged){
+                move(Protocol.FLAG, coveredIndex);
+                return;
+            }
+        }
+
+        int guess;
+        do {
+            guess = random.nextInt(board.length);
+        } while ((board[guess] & DECIDED_MASK) != 0);
+        move(Protocol.REVEAL, guess);
+    }
+
+    /**
+     * Sends a move on a cell with a given index and applies its response.
+     */
+    private void move(byte type, int index) throws IOException{
+        out.writeInt(9);
+        out.writeByte(type);
+        out.writeInt(index % columns);
+        out.writeInt(index / columns);
+        request();
+    }
+
+    /**
+     * Flushes a request, waits for its response and applies it.
+     */
+    private void request() throws IOException{
+        long start = System.nanoTime();
+        out.flush();
+        int length = in.readInt();
+        byte type = in.readByte();
+        results.latency.record(System.nanoTime() - start);
+        results.commands.increment();
+
+        if (type == Protocol.DELTA){
+            status = in.readByte();
+            in.readInt(); //Flags left.
+            in.readInt(); //Hit index.
+            int count = in.readInt();
+            for (int i = 0; i < count; i++){
+                int index = in.readInt();
+                board[index] = in.readByte();
+            }
+        } else {
+            if (type == Protocol.ERROR){
+                results.errors.increment();
+                status = STATUS_FAILED; //The same move would be tried again.
+            }
+            in.skipBytes(length - 1);
+        }
+    }
+}
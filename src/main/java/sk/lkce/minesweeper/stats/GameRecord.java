@@ -0,0 +1,154 @@
+package sk.lkce.minesweeper.stats;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * A finished game as recorded in the {@link GameStatistics}. The mine-field of the game
+ * can be recreated from the record: the mines are put by
+ * {@link MineField#putMines(Coordinate, Random)} with a generator of the seed and
+ * the first revealed cell.
+ * <br><br>
+ * A record is encoded in a fixed number of bytes, see {@link #LENGTH}, so the records
+ * can be appended and located in the log without any index.
+ */
+public final class GameRecord {
+
+    /** The length of an encoded record. */
+    static final int LENGTH = 8 + 1 + 1 + 3 * 4 + 8 + 4 + 8 + 4 + 4;
+    /** The offset of the time of the game in an encoded record. */
+    static final int MILLIS_OFFSET = 8 + 1 + 1 + 3 * 4 + 8 + 4;
+    /** The encoded difficulty of a game with a custom mine-field. */
+    private static final byte CUSTOM = -1;
+
+    private final long finishedAt;
+    private final Difficulty difficulty;
+    private final boolean won;
+    private final int columns, rows, mines;
+    private final long seed;
+    private final int firstClick;
+    private final long millis;
+    private final int boardValue;
+    private final int clicks;
+
+    /**
+     * Constructs a record.
+     * @param finishedAt the time the game finished, in milliseconds since the epoch
+     * @param difficulty the difficulty of the game or <code>null</code> for a custom mine-field
+     * @param won <code>true</code> if the game was won
+     * @param columns the number of columns of the mine-field
+     * @param rows the number of rows of the mine-field
+     * @param mines the number of mines
+     * @param seed the seed of the mines
+     * @param firstClick the index of the first revealed cell
+     * @param millis the time of the game in milliseconds
+     * @param boardValue the 3BV of the mine-field, see {@link MineField#getBoardValue()}
+     * @param clicks the number of clicks played
+     */
+    public GameRecord(long finishedAt, Difficulty difficulty, boolean won, int columns, int rows, int mines,
+            long seed, int firstClick, long millis, int boardValue, int clicks){
+        this.finishedAt = finishedAt;
+        this.difficulty = difficulty;
+        this.won = won;
+        this.columns = columns;
+        this.rows = rows;
+        this.mines = mines;
+        this.seed = seed;
+        this.firstClick = firstClick;
+        this.millis = millis;
+        this.boardValue = boardValue;
+        this.clicks = clicks;
+    }
+
+    public long getFinishedAt(){
+        return finishedAt;
+    }
+
+    /**
+     * Returns the difficulty of the game.
+     * @return the difficulty or <code>null</code> for a custom mine-field
+     */
+    public Difficulty getDifficulty(){
+        return difficulty;
+    }
+
+    public boolean isWon(){
+        return won;
+    }
+
+    public int getColumnCount(){
+        return columns;
+    }
+
+    public int getRowCount(){
+        return rows;
+    }
+
+    public int getMineCount(){
+        return mines;
+    }
+
+    public long getSeed(){
+        return seed;
+    }
+
+    public int getFirstClick(){
+        return firstClick;
+    }
+
+    public long getMillis(){
+        return millis;
+    }
+
+    public int getBoardValue(){
+        return boardValue;
+    }
+
+    public int getClicks(){
+        return clicks;
+    }
+
+    /**
+     * Writes the record to a buffer.
+     * @param buffer the buffer with at least {@link #LENGTH} bytes remaining
+     */
+    void writeTo(ByteBuffer buffer){
+        buffer.putLong(finishedAt);
+        buffer.put(difficulty != null ? (byte) difficulty.ordinal() : CUSTOM);
+        buffer.put((byte) (won ? 1 : 0));
+        buffer.putInt(columns).putInt(rows).putInt(mines);
+        buffer.putLong(seed);
+        buffer.putInt(firstClick);
+        buffer.putLong(millis);
+        buffer.putInt(boardValue);
+        buffer.putInt(clicks);
+    }
+
+    /**
+     * Reads a record written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer the buffer with at least {@link #LENGTH} bytes remaining
+     * @return the record
+     * @throws IllegalArgumentException if the difficulty is not valid
+     */
+    static GameRecord readFrom(ByteBuffer buffer){
+        long finishedAt = buffer.getLong();
+        int difficulty = buffer.get();
+        boolean won = buffer.get() != 0;
+        int columns = buffer.getInt();
+        int rows = buffer.getInt();
+        int mines = buffer.getInt();
+        long seed = buffer.getLong();
+        int firstClick = buffer.getInt();
+        long millis = buffer.getLong();
+        int boardValue = buffer.getInt();
+        int clicks = buffer.getInt();
+        if (difficulty < CUSTOM || difficulty >= Difficulty.values().length)
+            throw new IllegalArgumentException("Invalid difficulty: " + difficulty);
+        return new GameRecord(finishedAt, difficulty == CUSTOM ? null : Difficulty.values()[difficulty], won,
+                columns, rows, mines, seed, firstClick, millis, boardValue, clicks);
+    }
+}
@@ -0,0 +1,248 @@
+package sk.lkce.minesweeper.stats;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+
+/**
+ * The statistics of the finished games. Every finished game is appended to the
+ * {@link StatisticsLog} and included in the {@link StatisticsIndex}, both in the
+ * {@value #DEFAULT_DIRECTORY} directory in the user's home or in the directory given by
+ * the {@value #DIRECTORY_PROPERTY} system property.
+ * <br><br>
+ * The files are written by a single writer thread, so recording a game never waits
+ * for the disk. Recording takes a constant time: a sequential write of one record to
+ * the log and an update of the index in place. The best times and the totals are read
+ * from the index only, the log is read just to bring the index up to date when the
+ * statistics are opened.
+ * <br><br>
+ * The distributions of the times and the speeds are kept in the {@link HistoryStatistics},
+ * updated with every game as well and saved when the statistics are closed. When they are
+ * opened, the games recorded since the last save are summarized in parallel, a segment
+ * of the log per worker.
+ * <br><br>
+ * The statistics are opened by the writer thread when first used. If they cannot be
+ * opened, the games are not recorded and no statistics are shown.
+ */
+public class GameStatistics {
+
+    /** The system property with the directory of the statistics. */
+    public static final String DIRECTORY_PROPERTY = "minesweeper.statistics.directory";
+    /** The default directory of the statistics, relative to the user's home. */
+    public static final String DEFAULT_DIRECTORY = ".minesweeper/statistics";
+    private static final String INDEX_FILE = "index.dat";
+    private static final String HISTORY_FILE = "history.dat";
+
+    private static GameStatistics instance;
+
+    private final Path directory;
+    private final ExecutorService writer;
+    private final Future<?> opened;
+    private StatisticsLog log; //Accessed only by the writer thread.
+    private volatile StatisticsIndex index;
+    private volatile HistoryStatistics history;
+
+    /**
+     * Constructs the statistics in a given directory and starts opening them.
+     * @param directory the directory of the log and the index
+     */
+    public GameStatistics(Path directory){
+        this.directory = directory;
+        writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "statistics-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        opened = writer.submit(new Runnable(){
+
+            @Override
+            public void run() {
+                open();
+            }
+        });
+    }
+
+    /**
+     * Returns the statistics of the application, which are closed when the application exits.
+     * @return the statistics in the default directory
+     */
+    public static synchronized GameStatistics getInstance(){
+        if (instance == null){
+            String directory = System.getProperty(DIRECTORY_PROPERTY);
+            instance = new GameStatistics(directory != null ? Paths.get(directory)
+                    : Paths.get(System.getProperty("user.home"), DEFAULT_DIRECTORY));
+            final GameStatistics closed = instance;
+            Runtime.getRuntime().addShutdownHook(new Thread(new Runnable(){
+
+                @Override
+                public void run() {
+                    closed.close();
+                }
+            }, "statistics-close"));
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the log and the index, bringing the index up to date with the log.
+     */
+    private void open(){
+        try {
+            log = new StatisticsLog(directory);
+            StatisticsIndex index = new StatisticsIndex(directory.resolve(INDEX_FILE));
+            long from = index.getIndexedRecords();
+            if (!index.isValid() || from > log.getRecordCount()){
+                index.clear();
+                from = 0;
+            }
+            if (from < log.getRecordCount()){
+                final StatisticsIndex updated = index;
+                int corrupted = log.read(from, new StatisticsLog.Visitor(){
+
+                    @Override
+                    public void visit(GameRecord record) {
+                        updated.add(record);
+                    }
+                });
+                if (corrupted > 0)
+                    System.err.println("Skipped " + corrupted + " corrupted game records in " + directory);
+                index.setIndexedRecords(log.getRecordCount());
+            }
+            this.index = index;
+
+            int workers = Runtime.getRuntime().availableProcessors();
+            HistoryStatistics history = HistoryStatistics.load(directory.resolve(HISTORY_FILE));
+            if (history == null || history.getRecordCount() > log.getRecordCount())
+                history = HistoryStatistics.summarize(log, 0, workers);
+            else
+                history.merge(HistoryStatistics.summarize(log, history.getRecordCount(), workers));
+            this.history = history;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Records a finished game. The game is written by the writer thread.
+     * @param record the game
+     */
+    public void record(final GameRecord record){
+        try {
+            writer.execute(new Runnable(){
+
+                @Override
+                public void run() {
+                    StatisticsIndex index = GameStatistics.this.index;
+                    if (index == null)
+                        return;
+                    try {
+                        log.append(record);
+                        index.add(record);
+                        HistoryStatistics history = GameStatistics.this.history;
+                        if (history != null)
+                            history.add(record);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //Closed, the game is dropped.
+        }
+    }
+
+    /**
+     * Returns the best won games of a difficulty. Waits until the statistics are opened.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return the games ordered by their time, empty if the statistics could not be opened
+     */
+    public List<GameRecord> getBestTimes(Difficulty difficulty){
+        StatisticsIndex index = awaitIndex();
+        return index != null ? index.getBestTimes(difficulty) : Collections.<GameRecord>emptyList();
+    }
+
+    /**
+     * Returns the running totals of a difficulty. Waits until the statistics are opened.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return the totals, all zero if the statistics could not be opened
+     */
+    public GameTotals getTotals(Difficulty difficulty){
+        StatisticsIndex index = awaitIndex();
+        return index != null ? index.getTotals(difficulty) : new GameTotals(0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Returns the summary of the whole history of a difficulty, with the percentiles
+     * of the times. Waits until the statistics are opened.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return the summary, empty if the statistics could not be opened
+     */
+    public GameSummary getSummary(Difficulty difficulty){
+        awaitIndex();
+        HistoryStatistics history = this.history;
+        return history != null ? history.getSummary(difficulty) : new GameSummary();
+    }
+
+    /**
+     * Writes the recorded games and closes the statistics. Games recorded after closing are dropped.
+     */
+    public void close(){
+        if (writer.isShutdown())
+            return;
+        writer.execute(new Runnable(){
+
+            @Override
+            public void run() {
+                StatisticsIndex index = GameStatistics.this.index;
+                if (index == null)
+                    return;
+                GameStatistics.this.index = null;
+                try {
+                    log.close();
+                    index.close();
+                    if (history != null)
+                        history.save(directory.resolve(HISTORY_FILE));
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits until the statistics are opened and returns the index.
+     */
+    private StatisticsIndex awaitIndex(){
+        try {
+            opened.get();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return index;
+    }
+}
@@ -0,0 +1,139 @@
+package sk.lkce.minesweeper.stats;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The summary of the finished games of a difficulty: the win rate, the mean time
+ * and the 3BV per second of the won games, and the distributions of both kept in
+ * {@link QuantileSketch}es. A summary takes the same memory however many games
+ * it describes, and the summaries of parts of a history are merged into
+ * the summary of the whole history.
+ * <br><br>
+ * The summary is not thread-safe.
+ */
+public final class GameSummary {
+
+    private long played, won;
+    private long winMillis, winBoardValue;
+    private final QuantileSketch winTimes;
+    private final QuantileSketch speeds;
+
+    /**
+     * Constructs an empty summary.
+     */
+    public GameSummary(){
+        this(0, 0, 0, 0, new QuantileSketch(), new QuantileSketch());
+    }
+
+    private GameSummary(long played, long won, long winMillis, long winBoardValue,
+            QuantileSketch winTimes, QuantileSketch speeds){
+        this.played = played;
+        this.won = won;
+        this.winMillis = winMillis;
+        this.winBoardValue = winBoardValue;
+        this.winTimes = winTimes;
+        this.speeds = speeds;
+    }
+
+    /**
+     * Adds a finished game.
+     * @param record the game
+     */
+    public void add(GameRecord record){
+        played++;
+        if (!record.isWon())
+            return;
+        won++;
+        winMillis += record.getMillis();
+        winBoardValue += record.getBoardValue();
+        winTimes.add(record.getMillis());
+        if (record.getMillis() > 0)
+            speeds.add(record.getBoardValue() * 1000.0 / record.getMillis());
+    }
+
+    /**
+     * Merges another summary into this one. The other summary is not changed.
+     * @param other the other summary
+     */
+    public void merge(GameSummary other){
+        played += other.played;
+        won += other.won;
+        winMillis += other.winMillis;
+        winBoardValue += other.winBoardValue;
+        winTimes.merge(other.winTimes);
+        speeds.merge(other.speeds);
+    }
+
+    /**
+     * Returns a copy of the summary.
+     * @return the copy
+     */
+    public GameSummary copy(){
+        return new GameSummary(played, won, winMillis, winBoardValue, winTimes.copy(), speeds.copy());
+    }
+
+    public long getPlayed(){
+        return played;
+    }
+
+    public long getWon(){
+        return won;
+    }
+
+    /**
+     * Returns the share of the won games.
+     * @return the win rate between 0 and 1, 0 if no game has been played
+     */
+    public double getWinRate(){
+        return played > 0 ? (double) won / played : 0;
+    }
+
+    /**
+     * Returns the mean time of a won game.
+     * @return the mean time in milliseconds, NaN if no game has been won
+     */
+    public double getMeanMillis(){
+        return won > 0 ? (double) winMillis / won : Double.NaN;
+    }
+
+    /**
+     * Returns an approximate quantile of the times of the won games.
+     * @param quantile the quantile between 0 and 1, e.g. 0.5 for the median
+     * @return the time in milliseconds, NaN if no game has been won
+     */
+    public double getMillisQuantile(double quantile){
+        return winTimes.getQuantile(quantile);
+    }
+
+    /**
+     * Returns the 3BV solved per second over all the won games.
+     * @return the 3BV per second, NaN if no game has been won
+     */
+    public double getBoardValuePerSecond(){
+        return winMillis > 0 ? winBoardValue * 1000.0 / winMillis : Double.NaN;
+    }
+
+    /**
+     * Returns an approximate quantile of the 3BV per second of the won games.
+     * @param quantile the quantile between 0 and 1, e.g. 0.5 for the median
+     * @return the 3BV per second, NaN if no game has been won
+     */
+    public double getBoardValuePerSecondQuantile(double quantile){
+        return speeds.getQuantile(quantile);
+    }
+
+    int getEncodedLength(){
+        return 4 * 8 + winTimes.getEncodedLength() + speeds.getEncodedLength();
+    }
+
+    void writeTo(ByteBuffer buffer){
+        buffer.putLong(played).putLong(won).putLong(winMillis).putLong(winBoardValue);
+        winTimes.writeTo(buffer);
+        speeds.writeTo(buffer);
+    }
+
+    static GameSummary readFrom(ByteBuffer buffer){
+        return new GameSummary(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(),
+                QuantileSketch.readFrom(buffer), QuantileSketch.readFrom(buffer));
+    }
+}
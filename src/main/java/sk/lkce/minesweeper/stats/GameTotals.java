@@ -0,0 +1,59 @@
+package sk.lkce.minesweeper.stats;
+
+/**
+ * The running totals of the finished games of a difficulty, as kept in the index
+ * of the {@link GameStatistics}. The averages are computed over the won games only.
+ */
+public final class GameTotals {
+
+    private final long played, won;
+    private final long winMillis, winBoardValue, winClicks;
+
+    GameTotals(long played, long won, long winMillis, long winBoardValue, long winClicks){
+        this.played = played;
+        this.won = won;
+        this.winMillis = winMillis;
+        this.winBoardValue = winBoardValue;
+        this.winClicks = winClicks;
+    }
+
+    public long getPlayed(){
+        return played;
+    }
+
+    public long getWon(){
+        return won;
+    }
+
+    /**
+     * Returns the share of the won games.
+     * @return the win rate between 0 and 1, 0 if no game has been played
+     */
+    public double getWinRate(){
+        return played > 0 ? (double) won / played : 0;
+    }
+
+    /**
+     * Returns the average time of a won game.
+     * @return the average time in milliseconds, 0 if no game has been won
+     */
+    public double getAverageWinMillis(){
+        return won > 0 ? (double) winMillis / won : 0;
+    }
+
+    /**
+     * Returns the 3BV solved per second in the won games.
+     * @return the 3BV per second, 0 if no game has been won
+     */
+    public double getBoardValuePerSecond(){
+        return winMillis > 0 ? winBoardValue * 1000.0 / winMillis : 0;
+    }
+
+    /**
+     * Returns the 3BV of the won games per click, 1 for a game solved with the fewest clicks possible.
+     * @return the click efficiency, 0 if no game has been won
+     */
+    public double getEfficiency(){
+        return winClicks > 0 ? (double) winBoardValue / winClicks : 0;
+    }
+}
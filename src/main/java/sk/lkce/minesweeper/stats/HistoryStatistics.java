@@ -0,0 +1,274 @@
+package sk.lkce.minesweeper.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+
+/**
+ * The {@link GameSummary} of each difficulty, plus one for the custom mine-fields,
+ * over the whole history of the finished games. The summaries are updated with every
+ * recorded game, so the win rates and the percentiles of the times are available
+ * without reading the history.
+ * <br><br>
+ * The summaries of a log are built by {@link #summarize(StatisticsLog, long, int)}:
+ * each segment of the log is summarized by a worker of its own and the summaries of
+ * the segments are merged. They are saved to a file with the number of the log records
+ * covered, see {@link #save(Path)}, so only the records recorded since then are
+ * read when the statistics are opened again.
+ * <br><br>
+ * The statistics are thread-safe.
+ */
+public class HistoryStatistics {
+
+    /** The command line argument printing the statistics of a log. */
+    public static final String ARGUMENT = "--statistics";
+    private static final int MAGIC = 0x4D535348; //"MSSH"
+    private static final int VERSION = 1;
+    private static final int HEADER_LENGTH = 4 + 4 + 8 + 4;
+    private static final int SLOT_COUNT = Difficulty.values().length + 1;
+
+    private final GameSummary[] summaries = new GameSummary[SLOT_COUNT];
+    private long recordCount;
+
+    /**
+     * Constructs empty statistics.
+     */
+    public HistoryStatistics(){
+        for (int i = 0; i < SLOT_COUNT; i++)
+            summaries[i] = new GameSummary();
+    }
+
+    /**
+     * Adds a finished game.
+     * @param record the game
+     */
+    public synchronized void add(GameRecord record){
+        summaries[getSlot(record.getDifficulty())].add(record);
+        recordCount++;
+    }
+
+    /**
+     * Merges other statistics into these. The other statistics are not changed.
+     * @param other the other statistics
+     */
+    public void merge(HistoryStatistics other){
+        GameSummary[] merged = new GameSummary[SLOT_COUNT];
+        long mergedCount;
+        synchronized (other){
+            for (int i = 0; i < SLOT_COUNT; i++)
+                merged[i] = other.summaries[i].copy();
+            mergedCount = other.recordCount;
+        }
+        synchronized (this){
+            for (int i = 0; i < SLOT_COUNT; i++)
+                summaries[i].merge(merged[i]);
+            recordCount += mergedCount;
+        }
+    }
+
+    /**
+     * Returns the number of the log records covered, including the corrupted records
+     * skipped by {@link #summarize(StatisticsLog, long, int)}. The statistics of
+     * the following records start at this number.
+     * @return the number of the records
+     */
+    public synchronized long getRecordCount(){
+        return recordCount;
+    }
+
+    /**
+     * Returns the summary of a difficulty.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return a copy of the summary
+     */
+    public synchronized GameSummary getSummary(Difficulty difficulty){
+        return summaries[getSlot(difficulty)].copy();
+    }
+
+    private static int getSlot(Difficulty difficulty){
+        return difficulty != null ? difficulty.ordinal() : SLOT_COUNT - 1;
+    }
+
+    /**
+     * Summarizes the records of a log from a given one, each segment by a separate worker.
+     * No record may be appended to the log meanwhile.
+     * @param log the log
+     * @param from the number of the first record
+     * @param workerCount the number of the workers
+     * @return the statistics of the records
+     * @throws IOException if the log could not be read
+     */
+    static HistoryStatistics summarize(final StatisticsLog log, long from, int workerCount) throws IOException{
+        long to = log.getRecordCount();
+        HistoryStatistics result = new HistoryStatistics();
+        if (from >= to)
+            return result;
+
+        final AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "statistics-reader-" + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            List<Future<HistoryStatistics>> parts = new ArrayList<>();
+            long start = from;
+            while (start < to){
+                final long partFrom = start;
+                final long partTo = Math.min(to, (start / StatisticsLog.RECORDS_PER_SEGMENT + 1) * StatisticsLog.RECORDS_PER_SEGMENT);
+                start = partTo;
+                parts.add(workers.submit(new Callable<HistoryStatistics>(){
+
+                    @Override
+                    public HistoryStatistics call() throws IOException {
+                        final HistoryStatistics part = new HistoryStatistics();
+                        log.read(partFrom, partTo, new StatisticsLog.Visitor(){
+
+                            @Override
+                            public void visit(GameRecord record) {
+                                part.add(record);
+                            }
+                        });
+                        synchronized (part){
+                            part.recordCount = partTo - partFrom; //The skipped records are covered too.
+                        }
+                        return part;
+                    }
+                }));
+            }
+            for (Future<HistoryStatistics> part : parts)
+                result.merge(part.get());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the log", e);
+        } finally {
+            workers.shutdown();
+        }
+        return result;
+    }
+
+    /**
+     * Saves the statistics to a file.
+     * @param file the file
+     * @throws IOException if the file could not be written
+     */
+    synchronized void save(Path file) throws IOException{
+        int length = HEADER_LENGTH;
+        for (GameSummary summary : summaries)
+            length += summary.getEncodedLength();
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(recordCount).putInt(0);
+        for (GameSummary summary : summaries)
+            summary.writeTo(buffer);
+        buffer.putInt(16, calculateChecksum(buffer.array()));
+
+        Path saved = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(saved, buffer.array());
+        Files.move(saved, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Loads the statistics saved by {@link #save(Path)}.
+     * @param file the file
+     * @return the statistics or <code>null</code> if the file is missing or not valid
+     * @throws IOException if the file could not be read
+     */
+    static HistoryStatistics load(Path file) throws IOException{
+        if (!Files.exists(file))
+            return null;
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length < HEADER_LENGTH || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+            return null;
+        long recordCount = buffer.getLong();
+        if (buffer.getInt() != calculateChecksum(bytes))
+            return null;
+        try {
+            HistoryStatistics statistics = new HistoryStatistics();
+            for (int i = 0; i < SLOT_COUNT; i++)
+                statistics.summaries[i] = GameSummary.readFrom(buffer);
+            statistics.recordCount = recordCount;
+            return statistics;
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Calculates the checksum of the encoded statistics, without the checksum itself.
+     */
+    private static int calculateChecksum(byte[] bytes){
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, 0, HEADER_LENGTH - 4);
+        checksum.update(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Prints the statistics of a log, e.g. one written by bots, summarized by a worker per processor.
+     * The only optional argument is the directory of the log. The log is opened read-only,
+     * so it may be read while the game is recording to it.
+     * @param args the command line arguments following {@link #ARGUMENT}
+     */
+    public static void main(String[] args){
+        Path directory = args.length > 0 ? Paths.get(args[0])
+                : Paths.get(System.getProperty("user.home"), GameStatistics.DEFAULT_DIRECTORY);
+        if (!Files.isDirectory(directory)){
+            System.err.println("No statistics in " + directory);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            StatisticsLog log = new StatisticsLog(directory, true);
+            HistoryStatistics statistics = summarize(log, 0, Runtime.getRuntime().availableProcessors());
+            log.close();
+            System.out.printf(Locale.ROOT, "%d records in %s, summarized in %d ms%n", statistics.getRecordCount(),
+                    directory, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            for (int i = 0; i < SLOT_COUNT; i++){
+                GameSummary summary = statistics.summaries[i];
+                if (summary.getPlayed() == 0)
+                    continue;
+                System.out.printf(Locale.ROOT, "%-7s played %d, won %.1f %%", i < SLOT_COUNT - 1
+                        ? Difficulty.values()[i].name().toLowerCase(Locale.ROOT) : "custom",
+                        summary.getPlayed(), summary.getWinRate() * 100);
+                if (summary.getWon() > 0)
+                    System.out.printf(Locale.ROOT, ", time mean %.1f s, p50 %.1f s, p90 %.1f s, p99 %.1f s,"
+                            + " 3BV/s %.2f, p50 %.2f, p90 %.2f",
+                            summary.getMeanMillis() / 1000, summary.getMillisQuantile(0.5) / 1000,
+                            summary.getMillisQuantile(0.9) / 1000, summary.getMillisQuantile(0.99) / 1000,
+                            summary.getBoardValuePerSecond(), summary.getBoardValuePerSecondQuantile(0.5),
+                            summary.getBoardValuePerSecondQuantile(0.9));
+                System.out.println();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
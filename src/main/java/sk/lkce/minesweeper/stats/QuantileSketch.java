@@ -0,0 +1,306 @@
+package sk.lkce.minesweeper.stats;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+/**
+ * A mergeable sketch of the quantiles of a stream of values, after the KLL sketch
+ * of Karnin, Lang and Liberty. The sketch keeps a few hundred values in levels of
+ * compactors; a value at level <code>h</code> stands for <code>2^h</code> values of the stream.
+ * A full level is sorted and every other of its values, starting at random, is promoted
+ * to the next level. The capacities shrink geometrically from the top level down, so
+ * the sketch takes <code>O(k)</code> memory however many values are added, and the rank
+ * error of a quantile is about <code>1.7 / k</code> of the count.
+ * <br><br>
+ * Sketches of parts of a stream, e.g. built by parallel workers, are merged into
+ * a sketch of the whole stream. A quantile is found in the time proportional to
+ * the size of the sketch. The smallest and the largest value are kept exactly.
+ * <br><br>
+ * The sketch is not thread-safe.
+ */
+public final class QuantileSketch {
+
+    /** The default accuracy parameter, the capacity of the top level. */
+    public static final int DEFAULT_K = 200;
+    private static final int MIN_K = 8;
+    private static final double CAPACITY_DECAY = 2.0 / 3;
+
+    private final int k;
+    private final Random random = new Random();
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int levelCount = 1;
+    private int retained;
+    private int totalCapacity;
+    private long count;
+    private double min = Double.NaN, max = Double.NaN;
+
+    /**
+     * Constructs an empty sketch with the {@link #DEFAULT_K}.
+     */
+    public QuantileSketch(){
+        this(DEFAULT_K);
+    }
+
+    /**
+     * Constructs an empty sketch.
+     * @param k the accuracy parameter, the capacity of the top level
+     * @throws IllegalArgumentException if <code>k</code> is less than 8
+     */
+    public QuantileSketch(int k){
+        if (k < MIN_K)
+            throw new IllegalArgumentException("The accuracy parameter must be at least " + MIN_K + ": " + k);
+        this.k = k;
+        levels[0] = new double[k];
+        totalCapacity = capacity(0);
+    }
+
+    /**
+     * Adds a value to the sketch.
+     * @param value the value
+     * @throws IllegalArgumentException if the value is NaN
+     */
+    public void add(double value){
+        if (Double.isNaN(value))
+            throw new IllegalArgumentException("NaN cannot be added");
+        if (count == 0){
+            min = max = value;
+        } else {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        count++;
+        append(0, value);
+        retained++;
+        if (retained > totalCapacity)
+            compress();
+    }
+
+    /**
+     * Merges another sketch into this one. This sketch then describes the values of both.
+     * The other sketch is not changed.
+     * @param other the other sketch
+     */
+    public void merge(QuantileSketch other){
+        if (other.count == 0)
+            return;
+        if (count == 0){
+            min = other.min;
+            max = other.max;
+        } else {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+        while (levelCount < other.levelCount)
+            addLevel();
+        for (int level = 0; level < other.levelCount; level++)
+            for (int i = 0; i < other.sizes[level]; i++)
+                append(level, other.levels[level][i]);
+        count += other.count;
+        retained += other.retained;
+        while (retained > totalCapacity)
+            compress();
+    }
+
+    /**
+     * Returns a copy of the sketch.
+     * @return the copy
+     */
+    public QuantileSketch copy(){
+        QuantileSketch copy = new QuantileSketch(k);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Returns the number of values added to the sketch, including the merged sketches.
+     * @return the number of values
+     */
+    public long getCount(){
+        return count;
+    }
+
+    /**
+     * Returns the smallest value.
+     * @return the smallest value or NaN if the sketch is empty
+     */
+    public double getMin(){
+        return min;
+    }
+
+    /**
+     * Returns the largest value.
+     * @return the largest value or NaN if the sketch is empty
+     */
+    public double getMax(){
+        return max;
+    }
+
+    /**
+     * Returns the number of values kept by the sketch.
+     * @return the number of kept values
+     */
+    public int getRetained(){
+        return retained;
+    }
+
+    /**
+     * Returns an approximate quantile of the values.
+     * @param quantile the quantile between 0 and 1, e.g. 0.5 for the median
+     * @return the value or NaN if the sketch is empty
+     * @throws IllegalArgumentException if the quantile is out of the range
+     */
+    public double getQuantile(double quantile){
+        if (!(quantile >= 0 && quantile <= 1))
+            throw new IllegalArgumentException("The quantile must be between 0 and 1: " + quantile);
+        if (count == 0)
+            return Double.NaN;
+        if (quantile == 0)
+            return min;
+        if (quantile == 1)
+            return max;
+
+        final double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int item = 0;
+        for (int level = 0; level < levelCount; level++)
+            for (int i = 0; i < sizes[level]; i++){
+                values[item] = levels[level][i];
+                weights[item] = 1L << level;
+                order[item] = item;
+                item++;
+            }
+        Arrays.sort(order, new Comparator<Integer>(){
+
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return Double.compare(values[o1], values[o2]);
+            }
+        });
+
+        double rank = quantile * count;
+        long cumulative = 0;
+        for (Integer index : order){
+            cumulative += weights[index];
+            if (cumulative >= rank)
+                return values[index];
+        }
+        return max;
+    }
+
+    /**
+     * Returns the length of the sketch written by {@link #writeTo(ByteBuffer)}.
+     * @return the length in bytes
+     */
+    int getEncodedLength(){
+        return 4 + 8 + 8 + 8 + 4 + levelCount * 4 + retained * 8;
+    }
+
+    /**
+     * Writes the sketch to a buffer.
+     * @param buffer the buffer with at least {@link #getEncodedLength()} bytes remaining
+     */
+    void writeTo(ByteBuffer buffer){
+        buffer.putInt(k).putLong(count).putDouble(min).putDouble(max).putInt(levelCount);
+        for (int level = 0; level < levelCount; level++){
+            buffer.putInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++)
+                buffer.putDouble(levels[level][i]);
+        }
+    }
+
+    /**
+     * Reads a sketch written by {@link #writeTo(ByteBuffer)}.
+     * @param buffer the buffer
+     * @return the sketch
+     * @throws IllegalArgumentException if the encoded sketch is not valid
+     * @throws java.nio.BufferUnderflowException if the buffer ends before the sketch
+     */
+    static QuantileSketch readFrom(ByteBuffer buffer){
+        QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+        long count = buffer.getLong();
+        double min = buffer.getDouble();
+        double max = buffer.getDouble();
+        int levelCount = buffer.getInt();
+        if (count < 0 || levelCount < 1 || levelCount > Long.SIZE)
+            throw new IllegalArgumentException("Invalid sketch");
+        while (sketch.levelCount < levelCount)
+            sketch.addLevel();
+        long weight = 0;
+        for (int level = 0; level < levelCount; level++){
+            int size = buffer.getInt();
+            if (size < 0 || size > buffer.remaining() / 8)
+                throw new IllegalArgumentException("Invalid sketch level size: " + size);
+            for (int i = 0; i < size; i++)
+                sketch.append(level, buffer.getDouble());
+            sketch.retained += size;
+            weight += (long) size << level;
+        }
+        if (weight != count)
+            throw new IllegalArgumentException("Invalid sketch count: " + count);
+        sketch.count = count;
+        sketch.min = min;
+        sketch.max = max;
+        return sketch;
+    }
+
+    /**
+     * Compacts the lowest level at its capacity, adding a level on the top if needed.
+     */
+    private void compress(){
+        for (int level = 0; level < levelCount; level++){
+            if (sizes[level] >= capacity(level)){
+                if (level + 1 == levelCount)
+                    addLevel();
+                compact(level);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Promotes every other value of a sorted level to the next level. A value left
+     * over from an odd number stays on the level.
+     */
+    private void compact(int level){
+        double[] items = levels[level];
+        int size = sizes[level];
+        Arrays.sort(items, 0, size);
+        int even = size & ~1;
+        for (int i = random.nextBoolean() ? 1 : 0; i < even; i += 2)
+            append(level + 1, items[i]);
+        retained -= even / 2;
+        if (size != even)
+            items[0] = items[size - 1];
+        sizes[level] = size - even;
+    }
+
+    private void append(int level, double value){
+        double[] items = levels[level];
+        if (sizes[level] == items.length)
+            levels[level] = items = Arrays.copyOf(items, Math.max(MIN_K, items.length * 2));
+        items[sizes[level]++] = value;
+    }
+
+    private void addLevel(){
+        if (levelCount == levels.length){
+            levels = Arrays.copyOf(levels, levelCount * 2);
+            sizes = Arrays.copyOf(sizes, levelCount * 2);
+        }
+        levels[levelCount] = new double[MIN_K];
+        levelCount++;
+        totalCapacity = 0;
+        for (int level = 0; level < levelCount; level++)
+            totalCapacity += capacity(level);
+    }
+
+    /**
+     * Returns the capacity of a level, which shrinks with the distance from the top level.
+     */
+    private int capacity(int level){
+        return Math.max(2, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, levelCount - 1 - level)));
+    }
+}
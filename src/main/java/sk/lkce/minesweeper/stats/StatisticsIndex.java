@@ -0,0 +1,217 @@
+package sk.lkce.minesweeper.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+
+/**
+ * The index of the {@link StatisticsLog}: the running totals and the {@link #BEST_TIMES}
+ * best won games of each difficulty, plus one slot for the custom mine-fields. The index
+ * is a small memory-mapped file of a fixed layout, updated in place with every record,
+ * so it is read without scanning the log.
+ * <br><br>
+ * The header holds the number of the log records included in the index and the CRC32
+ * of that number and the slots. An index behind the log is brought up to date from
+ * the missing records; an index with a wrong checksum, or ahead of the log, is rebuilt
+ * from the whole log.
+ * <br><br>
+ * The index is thread-safe; it is updated by the writer thread and read by any thread.
+ */
+class StatisticsIndex {
+
+    /** The number of the best games kept for each difficulty. */
+    static final int BEST_TIMES = 10;
+
+    private static final int MAGIC = 0x4D535358; //"MSSX"
+    private static final int VERSION = 1;
+    /* The header: int magic, int version, long indexed records, int checksum, int reserved */
+    private static final int RECORDS_OFFSET = 8;
+    private static final int CHECKSUM_OFFSET = 16;
+    private static final int HEADER_LENGTH = 24;
+    /* A slot: long played, long won, long win millis, long win 3BV, long win clicks, int best count, int reserved */
+    private static final int PLAYED = 0, WON = 8, WIN_MILLIS = 16, WIN_BOARD_VALUE = 24, WIN_CLICKS = 32, BEST_COUNT = 40;
+    private static final int TOTALS_LENGTH = 48;
+    private static final int SLOT_LENGTH = TOTALS_LENGTH + BEST_TIMES * GameRecord.LENGTH;
+    private static final int SLOT_COUNT = Difficulty.values().length + 1;
+    private static final int LENGTH = HEADER_LENGTH + SLOT_COUNT * SLOT_LENGTH;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final CRC32 checksum = new CRC32();
+
+    /**
+     * Opens the index file, creating it if missing.
+     * @param file the index file
+     * @throws IOException if the file could not be opened or mapped
+     */
+    StatisticsIndex(Path file) throws IOException{
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean created = channel.size() != LENGTH;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, LENGTH);
+        if (created)
+            clear();
+    }
+
+    /**
+     * Checks the header and the checksum of the index.
+     * @return <code>true</code> if the index is valid
+     */
+    synchronized boolean isValid(){
+        return buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION
+                && buffer.getInt(CHECKSUM_OFFSET) == calculateChecksum();
+    }
+
+    /**
+     * Returns the number of the log records included in the index.
+     * @return the number of the records
+     */
+    synchronized long getIndexedRecords(){
+        return buffer.getLong(RECORDS_OFFSET);
+    }
+
+    /**
+     * Sets the number of the log records included in the index, after the records
+     * of the log have been replayed. The corrupted records skipped by the replay count
+     * as included, so that they are not replayed again when the index is opened.
+     * @param records the number of the records
+     */
+    synchronized void setIndexedRecords(long records){
+        buffer.putLong(RECORDS_OFFSET, records);
+        buffer.putInt(CHECKSUM_OFFSET, calculateChecksum());
+    }
+
+    /**
+     * Clears the index, no record is included.
+     */
+    synchronized void clear(){
+        for (int i = 0; i < LENGTH; i++)
+            buffer.put(i, (byte) 0);
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(CHECKSUM_OFFSET, calculateChecksum());
+    }
+
+    /**
+     * Includes a record in the index. Takes a constant time regardless of the size of the log.
+     * @param record the record
+     */
+    synchronized void add(GameRecord record){
+        int slot = getSlotOffset(record.getDifficulty());
+        increment(slot + PLAYED, 1);
+        if (record.isWon()){
+            increment(slot + WON, 1);
+            increment(slot + WIN_MILLIS, record.getMillis());
+            increment(slot + WIN_BOARD_VALUE, record.getBoardValue());
+            increment(slot + WIN_CLICKS, record.getClicks());
+            addBestTime(slot, record);
+        }
+        buffer.putLong(RECORDS_OFFSET, buffer.getLong(RECORDS_OFFSET) + 1);
+        buffer.putInt(CHECKSUM_OFFSET, calculateChecksum());
+    }
+
+    /**
+     * Returns the running totals of a difficulty.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return the totals
+     */
+    synchronized GameTotals getTotals(Difficulty difficulty){
+        int slot = getSlotOffset(difficulty);
+        return new GameTotals(buffer.getLong(slot + PLAYED), buffer.getLong(slot + WON),
+                buffer.getLong(slot + WIN_MILLIS), buffer.getLong(slot + WIN_BOARD_VALUE),
+                buffer.getLong(slot + WIN_CLICKS));
+    }
+
+    /**
+     * Returns the best won games of a difficulty.
+     * @param difficulty the difficulty or <code>null</code> for the custom mine-fields
+     * @return the games ordered by their time, at most {@link #BEST_TIMES}
+     */
+    synchronized List<GameRecord> getBestTimes(Difficulty difficulty){
+        int slot = getSlotOffset(difficulty);
+        int count = buffer.getInt(slot + BEST_COUNT);
+        List<GameRecord> result = new ArrayList<>(count);
+        ByteBuffer records = buffer.duplicate();
+        for (int i = 0; i < count; i++){
+            records.position(getBestTimeOffset(slot, i));
+            result.add(GameRecord.readFrom(records));
+        }
+        return result;
+    }
+
+    /**
+     * Forces the index to the disk and closes it.
+     * @throws IOException if the index could not be closed
+     */
+    synchronized void close() throws IOException{
+        buffer.force();
+        channel.close();
+    }
+
+    /**
+     * Inserts a won game among the best times of a slot if it is fast enough.
+     */
+    private void addBestTime(int slot, GameRecord record){
+        int count = buffer.getInt(slot + BEST_COUNT);
+        int position = count;
+        while (position > 0 && getBestMillis(slot, position - 1) > record.getMillis())
+            position--;
+        if (position == BEST_TIMES)
+            return;
+
+        int moved = Math.min(count, BEST_TIMES - 1) - position;
+        if (moved > 0){
+            ByteBuffer source = buffer.duplicate();
+            source.position(getBestTimeOffset(slot, position)).limit(getBestTimeOffset(slot, position + moved));
+            ByteBuffer copy = ByteBuffer.allocate(source.remaining()).put(source);
+            copy.flip();
+            ByteBuffer target = buffer.duplicate();
+            target.position(getBestTimeOffset(slot, position + 1));
+            target.put(copy);
+        }
+        ByteBuffer target = buffer.duplicate();
+        target.position(getBestTimeOffset(slot, position));
+        record.writeTo(target);
+        buffer.putInt(slot + BEST_COUNT, Math.min(count + 1, BEST_TIMES));
+    }
+
+    /**
+     * Returns the time of a best game of a slot, read right from the encoded record.
+     */
+    private long getBestMillis(int slot, int index){
+        return buffer.getLong(getBestTimeOffset(slot, index) + GameRecord.MILLIS_OFFSET);
+    }
+
+    private void increment(int offset, long amount){
+        buffer.putLong(offset, buffer.getLong(offset) + amount);
+    }
+
+    private static int getSlotOffset(Difficulty difficulty){
+        int slot = difficulty != null ? difficulty.ordinal() : SLOT_COUNT - 1;
+        return HEADER_LENGTH + slot * SLOT_LENGTH;
+    }
+
+    private static int getBestTimeOffset(int slot, int index){
+        return slot + TOTALS_LENGTH + index * GameRecord.LENGTH;
+    }
+
+    /**
+     * Calculates the checksum of the number of the indexed records and of the slots.
+     */
+    private int calculateChecksum(){
+        checksum.reset();
+        ByteBuffer covered = buffer.duplicate();
+        covered.position(RECORDS_OFFSET).limit(RECORDS_OFFSET + 8);
+        checksum.update(covered);
+        covered.limit(LENGTH).position(HEADER_LENGTH);
+        checksum.update(covered);
+        return (int) checksum.getValue();
+    }
+}
@@ -0,0 +1,246 @@
+package sk.lkce.minesweeper.stats;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The append-only log of the finished games. Every record takes the same number
+ * of bytes, {@link GameRecord#LENGTH} followed by the CRC32 of the record, so appending
+ * a record is a single sequential write and the position of the n-th record is known
+ * without reading the log.
+ * <br><br>
+ * The log is split into segments of {@link #RECORDS_PER_SEGMENT} records, files named
+ * by the number of the segment. A full segment is never written again. A record torn by
+ * a crash can be only at the end of the last segment; it is cut off when the log is opened.
+ * A corrupted record found when reading the log is skipped.
+ * <br><br>
+ * The log is not thread-safe, it is used by the writer thread of the {@link GameStatistics}.
+ * Only the ranges of records may be read by several threads at once, see {@link #read(long, long, Visitor)}.
+ * <br><br>
+ * A log opened read-only, e.g. for a report while the game is running, is never changed:
+ * a torn record at its end is just not counted.
+ */
+class StatisticsLog {
+
+    /** The number of records in a segment. */
+    static final int RECORDS_PER_SEGMENT = 1 << 14;
+    /** The length of a record in the log, including its checksum. */
+    static final int RECORD_LENGTH = GameRecord.LENGTH + 4;
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    /**
+     * A visitor of the records read from the log.
+     */
+    interface Visitor {
+
+        /**
+         * Visits a record.
+         * @param record the record
+         */
+        void visit(GameRecord record);
+    }
+
+    private final Path directory;
+    private final boolean readOnly;
+    private final ByteBuffer buffer = ByteBuffer.allocate(RECORD_LENGTH);
+    private final CRC32 checksum = new CRC32();
+    private FileChannel segment;
+    private long recordCount;
+
+    /**
+     * Opens the log in a given directory, cutting off a torn record at its end.
+     * @param directory the directory of the segments, created if missing
+     * @throws IOException if the log could not be opened
+     */
+    StatisticsLog(Path directory) throws IOException{
+        this(directory, false);
+    }
+
+    /**
+     * Opens the log in a given directory.
+     * @param directory the directory of the segments, created if missing unless read-only
+     * @param readOnly <code>true</code> if no record will be appended and the files must not be changed
+     * @throws IOException if the log could not be opened, e.g. the directory of a read-only log is missing
+     */
+    StatisticsLog(Path directory, boolean readOnly) throws IOException{
+        this.directory = directory;
+        this.readOnly = readOnly;
+        if (!readOnly)
+            Files.createDirectories(directory);
+
+        long lastSegment = -1;
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)){
+            for (Path path : segments){
+                String name = path.getFileName().toString();
+                try {
+                    lastSegment = Math.max(lastSegment,
+                            Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    //Not a segment.
+                }
+            }
+        }
+        if (lastSegment == -1 && readOnly)
+            return;
+        if (lastSegment == -1)
+            lastSegment = 0;
+
+        segment = openSegment(lastSegment);
+        long records = segment.size() / RECORD_LENGTH;
+        while (records > 0 && !isValid(segment, (records - 1) * RECORD_LENGTH))
+            records--;
+        if (!readOnly){
+            segment.truncate(records * RECORD_LENGTH);
+            segment.position(records * RECORD_LENGTH);
+        }
+        recordCount = lastSegment * RECORDS_PER_SEGMENT + records;
+    }
+
+    /**
+     * Returns the number of records in the log.
+     * @return the number of records
+     */
+    long getRecordCount(){
+        return recordCount;
+    }
+
+    /**
+     * Appends a record to the log. The record is written to the file but not forced
+     * to the disk.
+     * @param record the record
+     * @throws IOException if the record could not be written
+     * @throws IllegalStateException if the log is read-only
+     */
+    void append(GameRecord record) throws IOException{
+        if (readOnly)
+            throw new IllegalStateException("The log is read-only");
+        if (recordCount > 0 && recordCount % RECORDS_PER_SEGMENT == 0){
+            segment.close();
+            segment = openSegment(recordCount / RECORDS_PER_SEGMENT);
+        }
+
+        buffer.clear();
+        record.writeTo(buffer);
+        checksum.reset();
+        checksum.update(buffer.array(), 0, GameRecord.LENGTH);
+        buffer.putInt((int) checksum.getValue());
+        buffer.flip();
+        while (buffer.hasRemaining())
+            segment.write(buffer);
+        recordCount++;
+    }
+
+    /**
+     * Reads the records from a given one to the end of the log.
+     * @param from the number of the first record read
+     * @param visitor the visitor of the records
+     * @return the number of the corrupted records skipped
+     * @throws IOException if the log could not be read
+     */
+    int read(long from, Visitor visitor) throws IOException{
+        return read(from, recordCount, visitor);
+    }
+
+    /**
+     * Reads a range of the records. Separate ranges may be read by several threads at once,
+     * as long as no record is appended meanwhile.
+     * @param from the number of the first record read
+     * @param to the number of the record after the last one read
+     * @param visitor the visitor of the records
+     * @return the number of the corrupted records skipped
+     * @throws IOException if the log could not be read
+     */
+    int read(long from, long to, Visitor visitor) throws IOException{
+        to = Math.min(to, recordCount);
+        int corrupted = 0;
+        CRC32 checksum = new CRC32();
+        ByteBuffer records = ByteBuffer.allocate(RECORD_LENGTH * 256);
+        for (long number = from / RECORDS_PER_SEGMENT; number * RECORDS_PER_SEGMENT < to; number++){
+            Path path = getSegmentPath(number);
+            if (!Files.exists(path))
+                continue;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+                long position = number == from / RECORDS_PER_SEGMENT ? from % RECORDS_PER_SEGMENT * RECORD_LENGTH : 0;
+                long end = Math.min(channel.size(), Math.min(RECORDS_PER_SEGMENT, to - number * RECORDS_PER_SEGMENT) * RECORD_LENGTH);
+                while (position < end){
+                    records.clear();
+                    records.limit((int) Math.min(records.capacity(), end - position));
+                    readFully(channel, records, position);
+                    records.flip();
+                    if (records.limit() == 0)
+                        break;
+                    position += records.limit();
+                    while (records.remaining() >= RECORD_LENGTH){
+                        int start = records.position();
+                        checksum.reset();
+                        checksum.update(records.array(), start, GameRecord.LENGTH);
+                        int expected = records.getInt(start + GameRecord.LENGTH);
+                        try {
+                            if ((int) checksum.getValue() != expected)
+                                throw new IllegalArgumentException("Checksum mismatch");
+                            visitor.visit(GameRecord.readFrom(records));
+                        } catch (IllegalArgumentException e) {
+                            corrupted++;
+                        }
+                        records.position(start + RECORD_LENGTH);
+                    }
+                }
+            }
+        }
+        return corrupted;
+    }
+
+    /**
+     * Forces the written records to the disk and closes the log.
+     * @throws IOException if the log could not be closed
+     */
+    void close() throws IOException{
+        if (segment == null)
+            return;
+        if (!readOnly)
+            segment.force(false);
+        segment.close();
+    }
+
+    /**
+     * Checks the checksum of a record at a given position of a segment.
+     */
+    private boolean isValid(FileChannel channel, long position) throws IOException{
+        buffer.clear();
+        if (!readFully(channel, buffer, position))
+            return false;
+        checksum.reset();
+        checksum.update(buffer.array(), 0, GameRecord.LENGTH);
+        return (int) checksum.getValue() == buffer.getInt(GameRecord.LENGTH);
+    }
+
+    /**
+     * Reads from a given position of a channel until the buffer is full or the end of the channel.
+     * Returns <code>true</code> if the buffer has been filled.
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException{
+        int start = buffer.position();
+        while (buffer.hasRemaining()){
+            if (channel.read(buffer, position + buffer.position() - start) <= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private FileChannel openSegment(long number) throws IOException{
+        if (readOnly)
+            return FileChannel.open(getSegmentPath(number), StandardOpenOption.READ);
+        return FileChannel.open(getSegmentPath(number), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private Path getSegmentPath(long number){
+        return directory.resolve(String.format("%016d", number) + SEGMENT_SUFFIX);
+    }
+}
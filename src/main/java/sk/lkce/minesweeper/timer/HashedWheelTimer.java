@@ -0,0 +1,238 @@
+package sk.lkce.minesweeper.timer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import sk.lkce.minesweeper.metrics.Gauge;
+import sk.lkce.minesweeper.metrics.MetricsRegistry;
+
+/**
+ * A timer driving the clocks, time limits and idle timeouts of all the games, local
+ * and hosted by the server, with a single thread. The timeouts are kept in a wheel of
+ * {@link #WHEEL_SIZE} slots, each covering {@link #TICK_MILLIS} milliseconds; a timeout
+ * further away than one revolution of the wheel waits in its slot for the remaining rounds.
+ * Scheduling and cancelling therefore take constant time regardless of the number of
+ * timeouts, at the cost of a precision of one tick.
+ * <br><br>
+ * New and cancelled timeouts are handed over to the timer thread through lock-free
+ * queues, so they can be scheduled and cancelled from any thread. The tasks are not run
+ * by the timer thread but by the executor they were scheduled with, e.g. the event
+ * dispatch thread or a selector loop of the server. The timeouts of a slot expiring for
+ * the same executor are handed over to it as one batch, so a second in which thousands
+ * of game clocks tick costs each executor a single hand-over. A batch rejected by its
+ * executor, e.g. one which has been shut down, is cancelled and the timer goes on.
+ */
+public class HashedWheelTimer {
+
+    /** The duration of a tick of the wheel in milliseconds. */
+    public static final long TICK_MILLIS = 10;
+    /** The number of slots of the wheel. */
+    public static final int WHEEL_SIZE = 512;
+    /** The largest number of new timeouts put into the wheel in a single tick. */
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+    private static final HashedWheelTimer instance = new HashedWheelTimer();
+
+    private final long tickNanos = TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    private final Timeout.Slot[] wheel = new Timeout.Slot[WHEEL_SIZE];
+    private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startTime = System.nanoTime();
+    private long tick; //Accessed only by the timer thread.
+    private Thread thread;
+
+    /**
+     * Private constructor as is singleton.
+     */
+    private HashedWheelTimer(){
+        for (int i = 0; i < wheel.length; i++)
+            wheel[i] = new Timeout.Slot();
+
+        MetricsRegistry.getInstance().gauge("timer.pendingTimeouts", new Gauge(){
+
+            @Override
+            public long getValue() {
+                return pending.get();
+            }
+        });
+    }
+
+    /**
+     * Returns the singleton instance.
+     * @return the instance
+     */
+    public static HashedWheelTimer getInstance(){
+        return instance;
+    }
+
+    /**
+     * Schedules a task to be run after a given delay. The timer thread is started
+     * with the first scheduled task.
+     * @param task the task
+     * @param delay the delay
+     * @param unit the unit of the delay
+     * @param executor the executor running the task
+     * @return the timeout of the task, which can be cancelled
+     */
+    public Timeout schedule(TimeoutTask task, long delay, TimeUnit unit, Executor executor){
+        startThread();
+        long deadline = System.nanoTime() - startTime + unit.toNanos(Math.max(delay, 0));
+        Timeout timeout = new Timeout(this, task, executor, deadline);
+        pending.incrementAndGet();
+        scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the number of timeouts which have been neither run nor cancelled.
+     * @return the number of pending timeouts
+     */
+    public int getPendingCount(){
+        return pending.get();
+    }
+
+    /**
+     * Notifies the timer that a timeout has been cancelled.
+     */
+    void cancelled(Timeout timeout){
+        pending.decrementAndGet();
+        cancelled.add(timeout);
+    }
+
+    /**
+     * Notifies the timer that the task of a timeout is being run.
+     */
+    void expired(){
+        pending.decrementAndGet();
+    }
+
+    /**
+     * Starts the timer thread, unless it is running.
+     */
+    private synchronized void startThread(){
+        if (thread != null)
+            return;
+        thread = new Thread(new Runnable(){
+
+            @Override
+            public void run() {
+                runWheel();
+            }
+        }, "game-timer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The loop of the timer thread. Turns the wheel a slot per tick.
+     */
+    private void runWheel(){
+        try {
+            while (true){
+                long deadline = waitForNextTick();
+                removeCancelled();
+                transferScheduled();
+                expire(wheel[(int) (tick & (WHEEL_SIZE - 1))], deadline);
+                tick++;
+            }
+        } catch (InterruptedException e) {
+            //Stopped.
+        }
+    }
+
+    /**
+     * Sleeps until the end of the current tick.
+     * @return the end of the tick in nanoseconds since the start of the timer
+     */
+    private long waitForNextTick() throws InterruptedException{
+        long deadline = tickNanos * (tick + 1);
+        long sleepNanos = deadline - (System.nanoTime() - startTime);
+        if (sleepNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+        return deadline;
+    }
+
+    /**
+     * Removes the cancelled timeouts from the wheel.
+     */
+    private void removeCancelled(){
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null)
+            if (timeout.slot != null)
+                timeout.slot.remove(timeout);
+    }
+
+    /**
+     * Puts the newly scheduled timeouts into the slots of their deadlines. A timeout
+     * whose deadline has already passed is put into the current slot.
+     */
+    private void transferScheduled(){
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++){
+            Timeout timeout = scheduled.poll();
+            if (timeout == null)
+                return;
+            if (timeout.isCancelled())
+                continue;
+
+            long ticks = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (ticks - tick) / WHEEL_SIZE;
+            wheel[(int) (Math.max(ticks, tick) & (WHEEL_SIZE - 1))].add(timeout);
+        }
+    }
+
+    /**
+     * Expires the timeouts of a slot whose deadline is within the current tick and
+     * hands them over to their executors, in one batch per executor.
+     */
+    private void expire(Timeout.Slot slot, long deadline){
+        Map<Executor, List<Timeout>> batches = null;
+        Timeout timeout = slot.getHead();
+        while (timeout != null){
+            if (timeout.remainingRounds > 0 || timeout.deadline > deadline){
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+                continue;
+            }
+
+            Timeout expired = timeout;
+            timeout = slot.remove(expired);
+            if (expired.isCancelled())
+                continue;
+            if (batches == null)
+                batches = new IdentityHashMap<>();
+            List<Timeout> batch = batches.get(expired.getExecutor());
+            if (batch == null){
+                batch = new ArrayList<>();
+                batches.put(expired.getExecutor(), batch);
+            }
+            batch.add(expired);
+        }
+
+        if (batches == null)
+            return;
+        for (Map.Entry<Executor, List<Timeout>> entry : batches.entrySet()){
+            final List<Timeout> batch = entry.getValue();
+            try {
+                entry.getKey().execute(new Runnable(){
+
+                    @Override
+                    public void run() {
+                        for (Timeout timeout : batch)
+                            timeout.expire();
+                    }
+                });
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                for (Timeout rejected : batch)
+                    rejected.cancel();
+            }
+        }
+    }
+}
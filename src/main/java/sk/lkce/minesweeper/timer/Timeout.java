@@ -0,0 +1,134 @@
+package sk.lkce.minesweeper.timer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A task scheduled in a {@link HashedWheelTimer}. The timeout is a node of the
+ * doubly linked list of its wheel slot, so it is added to the wheel and removed
+ * from it in constant time.
+ * <br><br>
+ * The task runs only if the timeout is still pending when the task gets its turn on
+ * the executor. A timeout cancelled on the thread of its executor, e.g. on the event
+ * dispatch thread, therefore never runs afterwards, even if it has already expired.
+ */
+public final class Timeout {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final HashedWheelTimer timer;
+    private final TimeoutTask task;
+    private final Executor executor;
+    private final AtomicInteger state = new AtomicInteger(PENDING);
+
+    /* Accessed only by the thread of the timer */
+    final long deadline;
+    long remainingRounds;
+    Timeout next, previous;
+    Slot slot;
+
+    /**
+     * Constructs a timeout.
+     * @param timer the timer
+     * @param task the task
+     * @param executor the executor running the task
+     * @param deadline the deadline in nanoseconds since the start of the timer
+     */
+    Timeout(HashedWheelTimer timer, TimeoutTask task, Executor executor, long deadline){
+        this.timer = timer;
+        this.task = task;
+        this.executor = executor;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Cancels the timeout. Has no effect if the task has already run.
+     * @return <code>true</code> if the timeout was pending and has been cancelled
+     */
+    public boolean cancel(){
+        if (!state.compareAndSet(PENDING, CANCELLED))
+            return false;
+        timer.cancelled(this);
+        return true;
+    }
+
+    /**
+     * Determines whether the timeout has been cancelled.
+     * @return <code>true</code> if the timeout has been cancelled
+     */
+    public boolean isCancelled(){
+        return state.get() == CANCELLED;
+    }
+
+    /**
+     * Determines whether the timeout has expired and its task has run or is running.
+     * @return <code>true</code> if the timeout has expired
+     */
+    public boolean isExpired(){
+        return state.get() == EXPIRED;
+    }
+
+    Executor getExecutor(){
+        return executor;
+    }
+
+    /**
+     * Runs the task unless the timeout has been cancelled. Invoked by the executor.
+     */
+    void expire(){
+        if (!state.compareAndSet(PENDING, EXPIRED))
+            return;
+        timer.expired();
+        try {
+            task.run(this);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The doubly linked list of the timeouts in a slot of the wheel.
+     */
+    static final class Slot {
+
+        private Timeout head, tail;
+
+        /**
+         * Adds a timeout to the end of the slot.
+         */
+        void add(Timeout timeout){
+            timeout.slot = this;
+            if (head == null){
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * Removes a timeout from the slot and returns the timeout following it.
+         */
+        Timeout remove(Timeout timeout){
+            Timeout next = timeout.next;
+            if (timeout.previous != null)
+                timeout.previous.next = next;
+            if (next != null)
+                next.previous = timeout.previous;
+            if (timeout == head)
+                head = next;
+            if (timeout == tail)
+                tail = timeout.previous;
+            timeout.previous = timeout.next = null;
+            timeout.slot = null;
+            return next;
+        }
+
+        Timeout getHead(){
+            return head;
+        }
+    }
+}
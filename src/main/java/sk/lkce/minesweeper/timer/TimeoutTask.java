@@ -0,0 +1,13 @@
+package sk.lkce.minesweeper.timer;
+
+/**
+ * A task run when a {@link Timeout} of the {@link HashedWheelTimer} expires.
+ */
+public interface TimeoutTask {
+
+    /**
+     * Runs the task on the executor it was scheduled with.
+     * @param timeout the expired timeout
+     */
+    void run(Timeout timeout);
+}
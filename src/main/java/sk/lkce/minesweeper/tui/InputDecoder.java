@@ -0,0 +1,126 @@
+package sk.lkce.minesweeper.tui;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import sk.lkce.minesweeper.tui.TerminalInput.Kind;
+
+/**
+ * Decodes the bytes read from a terminal in the raw mode into {@link TerminalInput}s.
+ * Understands the letter keys, the cursor keys and the mouse reports in the SGR format
+ * (<code>ESC [ &lt; button ; column ; row M</code>). Only the mouse presses are
+ * decoded, the releases are ignored.
+ * <br><br>
+ * The keys are:
+ * <ul>
+ *  <li>arrows or <code>h j k l</code> - move the cursor</li>
+ *  <li>space or enter - reveal the cell under the cursor (chord on a revealed cell)</li>
+ *  <li><code>f</code> - flag or unflag the cell under the cursor</li>
+ *  <li><code>c</code> - chord on the cell under the cursor</li>
+ *  <li><code>n</code> - start a new game</li>
+ *  <li><code>q</code> or Ctrl+C - quit</li>
+ * </ul>
+ */
+class InputDecoder {
+
+    private static final int ESC = 27;
+    private static final int CTRL_C = 3;
+
+    private final InputStream in;
+
+    /**
+     * Constructs a decoder of a given stream.
+     * @param in the stream of the terminal input
+     */
+    InputDecoder(InputStream in){
+        this.in = in;
+    }
+
+    /**
+     * Reads the next input, blocking until there is one.
+     * @return the input or <code>null</code> if the stream has ended
+     * @throws IOException if the reading failed
+     */
+    TerminalInput read() throws IOException{
+        while (true){
+            int b = in.read();
+            if (b == -1)
+                return null;
+            TerminalInput input = b == ESC ? readEscape() : decodeKey(b);
+            if (input != null)
+                return input;
+        }
+    }
+
+    /**
+     * Decodes a single byte key, returns <code>null</code> for an unknown key.
+     */
+    private static TerminalInput decodeKey(int b){
+        switch (b){
+        case 'k': return new TerminalInput(Kind.UP);
+        case 'j': return new TerminalInput(Kind.DOWN);
+        case 'h': return new TerminalInput(Kind.LEFT);
+        case 'l': return new TerminalInput(Kind.RIGHT);
+        case ' ':
+        case '\r':
+        case '\n': return new TerminalInput(Kind.REVEAL);
+        case 'f': return new TerminalInput(Kind.FLAG);
+        case 'c': return new TerminalInput(Kind.CHORD);
+        case 'n': return new TerminalInput(Kind.NEW_GAME);
+        case 'q':
+        case CTRL_C: return new TerminalInput(Kind.QUIT);
+        default: return null;
+        }
+    }
+
+    /**
+     * Decodes an escape sequence, returns <code>null</code> for an unknown sequence.
+     */
+    private TerminalInput readEscape() throws IOException{
+        int b = in.read();
+        if (b != '[' && b != 'O')
+            return b == -1 ? null : decodeKey(b);
+
+        b = in.read();
+        switch (b){
+        case 'A': return new TerminalInput(Kind.UP);
+        case 'B': return new TerminalInput(Kind.DOWN);
+        case 'C': return new TerminalInput(Kind.RIGHT);
+        case 'D': return new TerminalInput(Kind.LEFT);
+        case '<': return readMouse();
+        default:
+            //Other CSI sequences, e.g. page up (ESC [ 5 ~) and page down (ESC [ 6 ~).
+            int parameter = 0;
+            while (b >= '0' && b <= '9'){
+                parameter = parameter * 10 + b - '0';
+                b = in.read();
+            }
+            if (b == '~' && parameter == 5)
+                return new TerminalInput(Kind.PAGE_UP);
+            if (b == '~' && parameter == 6)
+                return new TerminalInput(Kind.PAGE_DOWN);
+            return null;
+        }
+    }
+
+    /**
+     * Decodes the rest of an SGR mouse report after <code>ESC [ &lt;</code>.
+     */
+    private TerminalInput readMouse() throws IOException{
+        int[] parameters = new int[3];
+        int index = 0;
+        int b;
+        while ((b = in.read()) != -1){
+            if (b >= '0' && b <= '9')
+                parameters[index] = parameters[index] * 10 + b - '0';
+            else if (b == ';' && index < parameters.length - 1)
+                index++;
+            else
+                break;
+        }
+        if (b != 'M') //A release or a broken report.
+            return null;
+        int button = parameters[0] & ~0x1C; //Ignore the modifier keys.
+        return new TerminalInput(Kind.MOUSE, button, parameters[2] - 1, parameters[1] - 1);
+    }
+}
@@ -0,0 +1,118 @@
+package sk.lkce.minesweeper.tui;
+
+import java.util.Arrays;
+
+/**
+ * A double-buffered character screen. A frame is drawn into the back buffer and
+ * {@link #flush(StringBuilder)} produces the escape sequences turning the previous
+ * frame into the new one: only the characters which differ are written, the cursor
+ * is moved only where the changed characters are not adjacent and the colours are
+ * switched only when they change. Moving around a large mine-field or opening a few
+ * cells therefore costs a few bytes rather than a full screen, which keeps the game
+ * fluid over slow connections.
+ * <br><br>
+ * Each character on the screen is stored as an <code>int</code> holding the character
+ * in the low 16 bits and the style in the high bits.
+ */
+class Screen {
+
+    private static final int CHAR_MASK = 0xFFFF;
+    private static final int STYLE_SHIFT = 16;
+    /** A value which never matches a drawn character, forcing a redraw. */
+    private static final int INVALID = -1;
+
+    private final String[] styleSequences;
+    private int rows, columns;
+    private int[] front = new int[0];
+    private int[] back = new int[0];
+
+    /**
+     * Constructs a screen.
+     * @param styleSequences the SGR escape sequences of the styles, indexed by style
+     */
+    Screen(String[] styleSequences){
+        this.styleSequences = styleSequences;
+    }
+
+    /**
+     * Resizes the screen. The whole screen is redrawn with the next flush.
+     * @param rows the number of rows
+     * @param columns the number of columns
+     */
+    void resize(int rows, int columns){
+        this.rows = rows;
+        this.columns = columns;
+        front = new int[rows * columns];
+        back = new int[rows * columns];
+        Arrays.fill(front, INVALID);
+    }
+
+    int getRows(){
+        return rows;
+    }
+
+    int getColumns(){
+        return columns;
+    }
+
+    /**
+     * Fills the back buffer with spaces of a given style.
+     * @param style the style
+     */
+    void clear(int style){
+        Arrays.fill(back, style << STYLE_SHIFT | ' ');
+    }
+
+    /**
+     * Puts a character into the back buffer. Positions outside the screen are ignored.
+     * @param row the row
+     * @param column the column
+     * @param c the character
+     * @param style the style
+     */
+    void put(int row, int column, char c, int style){
+        if (row >= 0 && row < rows && column >= 0 && column < columns)
+            back[row * columns + column] = style << STYLE_SHIFT | c;
+    }
+
+    /**
+     * Puts a text into the back buffer, clipped by the right edge of the screen.
+     * @param row the row
+     * @param column the column of the first character
+     * @param text the text
+     * @param style the style
+     */
+    void put(int row, int column, String text, int style){
+        for (int i = 0; i < text.length(); i++)
+            put(row, column + i, text.charAt(i), style);
+    }
+
+    /**
+     * Appends the escape sequences drawing the differences between the back
+     * buffer and the last flushed frame to a given builder, and makes the back
+     * buffer the last flushed frame.
+     * @param out the builder the sequences are appended to
+     */
+    void flush(StringBuilder out){
+        int cursor = -1; //The position of the terminal cursor, if known.
+        int style = -1;
+        for (int position = 0; position < back.length; position++){
+            int value = back[position];
+            if (value == front[position])
+                continue;
+
+            if (position != cursor)
+                out.append("\033[").append(position / columns + 1).append(';').append(position % columns + 1).append('H');
+            int valueStyle = value >>> STYLE_SHIFT;
+            if (valueStyle != style){
+                out.append(styleSequences[valueStyle]);
+                style = valueStyle;
+            }
+            out.append((char) (value & CHAR_MASK));
+
+            front[position] = value;
+            //The terminal cursor wraps at the end of a row only lazily, so do not rely on it.
+            cursor = (position + 1) % columns == 0 ? -1 : position + 1;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package sk.lkce.minesweeper.tui;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The terminal the game runs in. Switches the terminal to the raw mode, where the
+ * keys are delivered immediately and are not echoed, and to the alternate screen
+ * with mouse reporting turned on. {@link #restore()} puts everything back.
+ * <br><br>
+ * The terminal modes are changed with the <code>stty</code> command on
+ * <code>/dev/tty</code>, so the terminal works on Unix-like systems only.
+ */
+class Terminal {
+
+    private static final String ENTER_SEQUENCE =
+            "\033[?1049h" //Alternate screen.
+            + "\033[?25l" //Hide the cursor.
+            + "\033[?1000h" //Report mouse buttons.
+            + "\033[?1006h" //Report the mouse in the SGR format.
+            + "\033[2J";
+    private static final String EXIT_SEQUENCE = "\033[0m\033[?1006l\033[?1000l\033[?25h\033[?1049l";
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in = new FileInputStream(FileDescriptor.in);
+    private final OutputStream out = new BufferedOutputStream(new FileOutputStream(FileDescriptor.out), OUTPUT_BUFFER_SIZE);
+    private String savedSettings;
+    private int rows, columns;
+
+    /**
+     * Switches the terminal to the raw mode and the alternate screen.
+     * @throws IOException if the terminal could not be set up
+     */
+    void enter() throws IOException{
+        savedSettings = stty("-g").trim();
+        stty("raw -echo");
+        write(ENTER_SEQUENCE);
+        updateSize();
+    }
+
+    /**
+     * Restores the terminal to the state before {@link #enter()}.
+     */
+    void restore(){
+        try {
+            write(EXIT_SEQUENCE);
+            if (savedSettings != null)
+                stty(savedSettings);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Reads the size of the terminal.
+     * @return <code>true</code> if the size has changed since the last reading
+     * @throws IOException if the size could not be read
+     */
+    boolean updateSize() throws IOException{
+        String[] size = stty("size").trim().split("\\s+");
+        int newRows = Integer.parseInt(size[0]);
+        int newColumns = Integer.parseInt(size[1]);
+        boolean changed = newRows != rows || newColumns != columns;
+        rows = newRows;
+        columns = newColumns;
+        return changed;
+    }
+
+    /**
+     * Returns the number of rows of the terminal.
+     * @return the number of rows
+     */
+    int getRows(){
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns of the terminal.
+     * @return the number of columns
+     */
+    int getColumns(){
+        return columns;
+    }
+
+    /**
+     * Returns the stream of the keys and mouse reports of the terminal.
+     * @return the input stream
+     */
+    InputStream getInput(){
+        return in;
+    }
+
+    /**
+     * Writes a text to the terminal and flushes it, so that a frame reaches
+     * the terminal in as few writes as possible.
+     * @param text the text
+     * @throws IOException if the writing failed
+     */
+    void write(CharSequence text) throws IOException{
+        out.write(text.toString().getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Runs <code>stty</code> with given arguments on the controlling terminal and returns its output.
+     */
+    private static String stty(String arguments) throws IOException{
+        Process process = new ProcessBuilder("sh", "-c", "stty " + arguments + " < /dev/tty")
+                .redirectErrorStream(true).start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream stream = process.getInputStream()) {
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+                output.write(buffer, 0, read);
+        }
+        try {
+            if (process.waitFor() != 0)
+                throw new IOException("stty " + arguments + " failed: " + output);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while running stty", e);
+        }
+        return output.toString("UTF-8");
+    }
+}
@@ -0,0 +1,405 @@
+package sk.lkce.minesweeper.tui;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import sk.lkce.minesweeper.gui.GameOptions.Difficulty;
+import sk.lkce.minesweeper.model.CellInfo;
+import sk.lkce.minesweeper.model.Coordinate;
+import sk.lkce.minesweeper.model.GameInfo;
+import sk.lkce.minesweeper.model.MineField;
+
+/**
+ * A terminal front-end of the game, an alternative to the Swing one which needs
+ * no graphical environment and no AWT at all. The mine-field is displayed with ANSI
+ * escape sequences and played with the keyboard or the mouse, see {@link InputDecoder}.
+ * <br><br>
+ * Only the part of the mine-field which fits the terminal is drawn; the view follows
+ * the cursor. Every frame is drawn in full into a {@link Screen}, which sends only
+ * the characters changed since the previous frame to the terminal. All the inputs
+ * which arrived while a frame was being drawn are handled before the next frame,
+ * so a burst of key repeats over a slow link results in a single redraw.
+ */
+public class TerminalGame {
+
+    /** The command line argument starting the terminal front-end. */
+    public static final String ARGUMENT = "--tui";
+
+    /* Styles */
+    private static final int STYLE_DEFAULT = 0;
+    private static final int STYLE_COVERED = 1;
+    private static final int STYLE_REVEALED = 2;
+    private static final int STYLE_FLAG = 3;
+    private static final int STYLE_MINE = 4;
+    private static final int STYLE_HIT = 5;
+    private static final int STYLE_STATUS = 6;
+    private static final int STYLE_NUMBER = 7; //Styles of the numbers 1 - 8 follow.
+    private static final String[] STYLE_SEQUENCES = {
+        "\033[0m",
+        "\033[0;37;100m",
+        "\033[0;47m",
+        "\033[0;1;31;100m",
+        "\033[0;1;30;47m",
+        "\033[0;1;30;41m",
+        "\033[0;30;46m",
+        "\033[0;1;34;47m", "\033[0;32;47m", "\033[0;1;31;47m", "\033[0;34;47m",
+        "\033[0;31;47m", "\033[0;36;47m", "\033[0;30;47m", "\033[0;1;30;47m",
+    };
+    /** The SGR attribute of the cell under the cursor. */
+    private static final int CURSOR_ATTRIBUTE = 7;
+
+    /** The screen columns of a cell, so that the cells are roughly square. */
+    private static final int CELL_WIDTH = 2;
+    /** The rows above the mine-field. */
+    private static final int STATUS_ROWS = 1;
+    /** The time after which an idle frame is redrawn, e.g. to update the game time. */
+    private static final long IDLE_REDRAW_MILLIS = 250;
+    /** The number of idle frames after which the terminal size is checked. */
+    private static final int SIZE_CHECK_FRAMES = 4;
+
+    private final int columnCount, rowCount, mineCount;
+    private final Terminal terminal = new Terminal();
+    private final Screen screen;
+    private final BlockingQueue<TerminalInput> inputs = new LinkedBlockingQueue<>();
+    private MineField field;
+    private GameInfo gameInfo;
+    private int cursorX, cursorY;
+    private int viewX, viewY;
+    private boolean quit;
+
+    /**
+     * Constructs a terminal game with a mine-field of a given size.
+     * @param columnCount number of columns of the mine-field
+     * @param rowCount number of rows of the mine-field
+     * @param mineCount number of mines
+     */
+    public TerminalGame(int columnCount, int rowCount, int mineCount){
+        this.columnCount = columnCount;
+        this.rowCount = rowCount;
+        this.mineCount = mineCount;
+
+        //The cursor style is each of the styles with the reverse attribute added.
+        String[] styleSequences = new String[STYLE_SEQUENCES.length * 2];
+        for (int i = 0; i < STYLE_SEQUENCES.length; i++){
+            styleSequences[i] = STYLE_SEQUENCES[i];
+            styleSequences[STYLE_SEQUENCES.length + i] = STYLE_SEQUENCES[i].replace("m", ";" + CURSOR_ATTRIBUTE + "m");
+        }
+        screen = new Screen(styleSequences);
+    }
+
+    /**
+     * Runs the game until the player quits. The terminal is restored on return.
+     * @throws IOException if the terminal could not be used
+     */
+    public void run() throws IOException{
+        terminal.enter();
+        Thread restoreHook = new Thread(new Runnable(){
+
+            @Override
+            public void run() {
+                terminal.restore();
+            }
+        });
+        Runtime.getRuntime().addShutdownHook(restoreHook);
+
+        try {
+            startInputThread();
+            newGame();
+            loop();
+        } finally {
+            terminal.restore();
+            Runtime.getRuntime().removeShutdownHook(restoreHook);
+        }
+    }
+
+    /**
+     * Starts the thread reading and decoding the terminal input into the input queue.
+     */
+    private void startInputThread(){
+        final InputDecoder decoder = new InputDecoder(terminal.getInput());
+        Thread thread = new Thread(new Runnable(){
+
+            @Override
+            public void run() {
+                try {
+                    TerminalInput input;
+                    while ((input = decoder.read()) != null)
+                        inputs.add(input);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                inputs.add(new TerminalInput(TerminalInput.Kind.QUIT));
+            }
+        }, "terminal-input");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The game loop. Handles all the pending inputs and draws a frame, waiting
+     * for an input at most {@link #IDLE_REDRAW_MILLIS}.
+     */
+    private void loop() throws IOException{
+        StringBuilder frame = new StringBuilder();
+        int idleFrames = 0;
+        while (!quit){
+            if (screen.getRows() != terminal.getRows() || screen.getColumns() != terminal.getColumns())
+                screen.resize(terminal.getRows(), terminal.getColumns());
+
+            draw();
+            frame.setLength(0);
+            screen.flush(frame);
+            if (frame.length() > 0)
+                terminal.write(frame);
+
+            TerminalInput input;
+            try {
+                input = inputs.poll(IDLE_REDRAW_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            if (input == null){
+                if (++idleFrames % SIZE_CHECK_FRAMES == 0)
+                    terminal.updateSize();
+                continue;
+            }
+            do
+                handle(input);
+            while ((input = inputs.poll()) != null);
+        }
+    }
+
+    /**
+     * Starts a new game.
+     */
+    private void newGame(){
+        field = new MineField(columnCount, rowCount, mineCount);
+        gameInfo = field.getGameInfo();
+        cursorX = columnCount / 2;
+        cursorY = rowCount / 2;
+    }
+
+    /**
+     * Determines whether the current game has been won or lost.
+     */
+    private boolean isGameOver(){
+        return field.wasMineHit() || field.isGameWon();
+    }
+
+    /**
+     * Handles a single input.
+     */
+    private void handle(TerminalInput input){
+        switch (input.getKind()){
+        case UP: moveCursor(0, -1); break;
+        case DOWN: moveCursor(0, 1); break;
+        case LEFT: moveCursor(-1, 0); break;
+        case RIGHT: moveCursor(1, 0); break;
+        case PAGE_UP: moveCursor(0, -getViewRows()); break;
+        case PAGE_DOWN: moveCursor(0, getViewRows()); break;
+        case REVEAL: reveal(); break;
+        case FLAG: toggleFlag(); break;
+        case CHORD: chord(); break;
+        case NEW_GAME: newGame(); break;
+        case QUIT: quit = true; break;
+        case MOUSE: handleMouse(input); break;
+        }
+    }
+
+    /**
+     * Handles a mouse press: moves the cursor to the pressed cell and acts on it.
+     */
+    private void handleMouse(TerminalInput input){
+        if (input.getButton() == TerminalInput.WHEEL_UP){
+            moveCursor(0, -3);
+            return;
+        }
+        if (input.getButton() == TerminalInput.WHEEL_DOWN){
+            moveCursor(0, 3);
+            return;
+        }
+
+        int x = viewX + input.getColumn() / CELL_WIDTH;
+        int y = viewY + input.getRow() - STATUS_ROWS;
+        if (input.getRow() < STATUS_ROWS || x >= columnCount || y >= rowCount)
+            return;
+        cursorX = x;
+        cursorY = y;
+
+        if (input.getButton() == TerminalInput.BUTTON_LEFT)
+            reveal();
+        else if (input.getButton() == TerminalInput.BUTTON_RIGHT)
+            toggleFlag();
+        else if (input.getButton() == TerminalInput.BUTTON_MIDDLE)
+            chord();
+    }
+
+    /**
+     * Moves the cursor by a given offset, within the mine-field.
+     */
+    private void moveCursor(int dx, int dy){
+        cursorX = Math.min(Math.max(cursorX + dx, 0), columnCount - 1);
+        cursorY = Math.min(Math.max(cursorY + dy, 0), rowCount - 1);
+    }
+
+    /**
+     * Reveals the cell under the cursor, or chords on it if it is revealed.
+     */
+    private void reveal(){
+        if (isGameOver())
+            return;
+        CellInfo info = gameInfo.getCellInfo(cursorX, cursorY);
+        if (info.hasFlag())
+            return;
+        if (info.isRevealed()){
+            chord();
+            return;
+        }
+
+        Coordinate coordinate = new Coordinate(cursorX, cursorY);
+        if (!field.areMinesSet())
+            field.putMines(coordinate);
+        field.revealCell(coordinate);
+    }
+
+    /**
+     * Chords on the cell under the cursor.
+     */
+    private void chord(){
+        if (!isGameOver())
+            field.chordCell(new Coordinate(cursorX, cursorY));
+    }
+
+    /**
+     * Sets or removes the flag of the cell under the cursor.
+     */
+    private void toggleFlag(){
+        if (isGameOver())
+            return;
+        CellInfo info = gameInfo.getCellInfo(cursorX, cursorY);
+        if (info.isRevealed())
+            return;
+        field.toggleFlag(new Coordinate(cursorX, cursorY));
+    }
+
+    /**
+     * Returns the number of rows of the mine-field which fit the screen.
+     */
+    private int getViewRows(){
+        return Math.max(screen.getRows() - STATUS_ROWS, 1);
+    }
+
+    /**
+     * Scrolls the view so that the cursor is visible.
+     */
+    private void scrollToCursor(){
+        int viewColumns = Math.max(screen.getColumns() / CELL_WIDTH, 1);
+        int viewRows = getViewRows();
+        if (cursorX < viewX)
+            viewX = cursorX;
+        else if (cursorX >= viewX + viewColumns)
+            viewX = cursorX - viewColumns + 1;
+        if (cursorY < viewY)
+            viewY = cursorY;
+        else if (cursorY >= viewY + viewRows)
+            viewY = cursorY - viewRows + 1;
+        viewX = Math.max(0, Math.min(viewX, columnCount - viewColumns));
+        viewY = Math.max(0, Math.min(viewY, rowCount - viewRows));
+    }
+
+    /**
+     * Draws the status line and the visible part of the mine-field into the screen.
+     */
+    private void draw(){
+        scrollToCursor();
+        screen.clear(STYLE_DEFAULT);
+
+        String state = field.wasMineHit() ? "  GAME OVER" : field.isGameWon() ? "  YOU WON" : "";
+        String status = String.format(" Mines: %d  Time: %d%s  [%d,%d]   arrows/mouse, space reveal, f flag, c chord, n new, q quit",
+                field.getLeftFlagsCount(), field.getClock().getElapsedMillis() / 1000, state, cursorX, cursorY);
+        for (int column = 0; column < screen.getColumns(); column++)
+            screen.put(0, column, column < status.length() ? status.charAt(column) : ' ', STYLE_STATUS);
+
+        int lastX = Math.min(columnCount, viewX + screen.getColumns() / CELL_WIDTH);
+        int lastY = Math.min(rowCount, viewY + getViewRows());
+        for (int y = viewY; y < lastY; y++)
+            for (int x = viewX; x < lastX; x++)
+                drawCell(gameInfo.getCellInfo(x, y), STATUS_ROWS + y - viewY, (x - viewX) * CELL_WIDTH,
+                        x == cursorX && y == cursorY);
+    }
+
+    /**
+     * Draws a single cell at a given screen position.
+     */
+    private void drawCell(CellInfo info, int row, int column, boolean cursor){
+        char c;
+        int style;
+        if (info.isRevealed() && info.hasMine()){
+            c = info.hasFlag() ? 'F' : '*';
+            style = info.wasMineHit() ? STYLE_HIT : STYLE_MINE;
+        }else if (info.isRevealed()){
+            int count = info.getsetNearbyMinesCount();
+            c = count == 0 ? ' ' : (char) ('0' + count);
+            style = count == 0 ? STYLE_REVEALED : STYLE_NUMBER + count - 1;
+        }else if (info.hasFlag()){
+            c = 'F';
+            style = STYLE_FLAG;
+        }else{
+            c = info.hasQuestionMark() ? '?' : '.';
+            style = STYLE_COVERED;
+        }
+
+        if (cursor)
+            style += STYLE_SEQUENCES.length;
+        screen.put(row, column, c, style);
+        screen.put(row, column + 1, ' ', style);
+    }
+
+    /**
+     * Runs the terminal game. The arguments are described in {@link #fromArguments(String[])}.
+     * Running this class directly rather than through the main class of the application
+     * does not load any AWT classes at all.
+     * @param args the command line arguments
+     */
+    public static void main(String[] args){
+        //The terminal front-end needs no graphical environment.
+        System.setProperty("java.awt.headless", "true");
+        try {
+            fromArguments(args).run();
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates a terminal game from the command line arguments following {@link #ARGUMENT}:
+     * either a difficulty (<code>easy</code>, <code>medium</code>, <code>hard</code>) or
+     * the size and the number of mines as <code>columns rows mines</code>. The default is medium.
+     * @param args the arguments following {@link #ARGUMENT}
+     * @return the game
+     * @throws IllegalArgumentException if the arguments are not valid
+     */
+    public static TerminalGame fromArguments(String[] args){
+        if (args.length <= 1){
+            Difficulty difficulty = args.length == 0 ? Difficulty.MEDIUM
+                    : Difficulty.valueOf(args[0].toUpperCase(Locale.ROOT));
+            return new TerminalGame(difficulty.getColumnCount(), difficulty.getRowCount(), difficulty.getMineCount());
+        }
+        if (args.length == 3){
+            int columns = Integer.parseInt(args[0]);
+            int rows = Integer.parseInt(args[1]);
+            int mines = Integer.parseInt(args[2]);
+            if (columns <= 0 || rows <= 0 || mines < 0 || mines >= columns * rows)
+                throw new IllegalArgumentException("Invalid mine-field: " + columns + "x" + rows + ", " + mines + " mines");
+            return new TerminalGame(columns, rows, mines);
+        }
+        throw new IllegalArgumentException("Usage: " + ARGUMENT + " [easy|medium|hard|<columns> <rows> <mines>]");
+    }
+}
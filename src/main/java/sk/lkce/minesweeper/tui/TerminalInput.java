@@ -0,0 +1,70 @@
+package sk.lkce.minesweeper.tui;
+
+/**
+ * A single input of the player decoded from the terminal, either a key command
+ * or a mouse action at a position of the screen.
+ */
+class TerminalInput {
+
+    /**
+     * The kinds of the inputs.
+     */
+    enum Kind {
+        UP, DOWN, LEFT, RIGHT, PAGE_UP, PAGE_DOWN, REVEAL, FLAG, CHORD, NEW_GAME, QUIT,
+        /** A mouse action, with the screen position and the button. */
+        MOUSE
+    }
+
+    /** The left mouse button. */
+    static final int BUTTON_LEFT = 0;
+    /** The middle mouse button. */
+    static final int BUTTON_MIDDLE = 1;
+    /** The right mouse button. */
+    static final int BUTTON_RIGHT = 2;
+    /** The mouse wheel rolled up. */
+    static final int WHEEL_UP = 64;
+    /** The mouse wheel rolled down. */
+    static final int WHEEL_DOWN = 65;
+
+    private final Kind kind;
+    private final int button;
+    private final int row, column;
+
+    /**
+     * Constructs a key input.
+     * @param kind the kind of the input
+     */
+    TerminalInput(Kind kind){
+        this(kind, -1, -1, -1);
+    }
+
+    /**
+     * Constructs an input.
+     * @param kind the kind of the input
+     * @param button the mouse button
+     * @param row the zero based screen row of the mouse
+     * @param column the zero based screen column of the mouse
+     */
+    TerminalInput(Kind kind, int button, int row, int column){
+        this.kind = kind;
+        this.button = button;
+        this.row = row;
+        this.column = column;
+    }
+
+    Kind getKind(){
+        return kind;
+    }
+
+    int getButton(){
+        return button;
+    }
+
+    int getRow(){
+        return row;
+    }
+
+    int getColumn(){
+        return column;
+    }
+}
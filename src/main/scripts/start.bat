@@ -1 +1 @@
-start javaw -cp lib/jmf-2.1.1e.jar;minesweeper-1.0.jar  bbc.juniperus.minesweeper.Main
+start javaw -cp minesweeper-1.0.jar  bbc.juniperus.minesweeper.Main